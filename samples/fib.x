@@ -0,0 +1,10 @@
+program {int n
+  int fib(int k) {
+      if (k < 2) then
+         { return k }
+      else
+         { return fib(k-1) + fib(k-2) }
+  }
+  n = read()
+  n = write(fib(n))
+}
@@ -0,0 +1,11 @@
+program {int a int b
+  a = read()
+  b = read()
+  while (a != b) {
+      if (a > b) then
+         { a = a - b }
+      else
+         { b = b - a }
+  }
+  a = write(a)
+}
@@ -0,0 +1,21 @@
+program {int n int count int k
+  boolean isPrime(int p) {
+      int d
+      d = 2
+      while ((d * d <= p) & (p / d * d != p)) {
+          d = d + 1
+      }
+      return (p > 1) & (d * d > p)
+  }
+  n = read()
+  count = 0
+  k = 2
+  while (k <= n) {
+      if (isPrime(k)) then
+         { k = write(k) }
+      else
+         { count = count + 1 }
+      k = k + 1
+  }
+  count = write(count)
+}
@@ -0,0 +1,10 @@
+program {int n int i int s
+  n = read()
+  i = 0
+  s = 0
+  while (i < n) {
+      i = i + 1
+      s = s + i
+  }
+  s = write(s)
+}
@@ -3,6 +3,7 @@ package debugger;
 
 import debugger.ui.UserInterface;
 import interpreter.*;
+import interpreter.bytecode.CallCode;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
@@ -220,6 +221,10 @@ public class DebugVirtualMachine extends VirtualMachine {
                 rollback();
                 break; 
                 
+            case "where":
+                displayCallStack();
+                break;
+                
             case "help":
             case "?":
                 displayAvailableActions();
@@ -554,6 +559,8 @@ public class DebugVirtualMachine extends VirtualMachine {
         print("Rolls back execution of the current function\n");
         printLeftAligned("dcf");
         print("Displays current function\n");
+        printLeftAligned("where");
+        print("Displays the active function calls, innermost first\n");
         printLeftAligned("cont");
         print("Continues execution\n");               
         printLeftAligned("vars");
@@ -567,6 +574,27 @@ public class DebugVirtualMachine extends VirtualMachine {
         
     }
     
+    /*
+     * Walks the VirtualMachine's call stack from the innermost call outward,
+     * printing the function called, the address of its CALL and the start of
+     * its frame on the runtime stack.
+     */
+    public void displayCallStack() {
+        CallStack.View calls = getCallStack();
+        if (calls.size() == 0) {
+            print("No function calls are active.\n");
+            return;
+        }
+        int i;
+        for (i = calls.size() - 1; i >= 0; i--) {
+            int callAddress = calls.getReturnAddress(i);
+            ByteCode bc = getProgram().getCode(callAddress);
+            String name = bc instanceof CallCode ? ((CallCode) bc).getLabel() : "?";
+            print("#" + (calls.size() - 1 - i) + "  " + name + " called at address "
+                    + callAddress + ", frame starts at " + calls.getFrameStart(i) + "\n");
+        }
+    }
+    
     public String promptUser() {
         print("\nType ? for help\n>> ");
         // The UserInterface is called upon to get the next action from the user
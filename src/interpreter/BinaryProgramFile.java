@@ -0,0 +1,337 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * BinaryProgramFile reads and writes the compiled binary form of a .cod file.
+ * ByteCodeLoader writes it next to the .cod file after parsing the text, and
+ * on later runs memory-maps it instead of parsing the text again, as long as
+ * the checksum recorded in it still matches the .cod file.  The addresses in
+ * the binary form are already resolved, so Program.resolveAddresses() is not
+ * needed either.  A second checksum covers the rest of the file, so a file
+ * that has been damaged since it was written is parsed again instead.
+ *
+ * Layout of the file (all numbers big-endian):
+ *   int     magic number "XCOD"
+ *   short   format version
+ *   long    CRC-32 checksum of the .cod text the file was compiled from
+ *   long    CRC-32 checksum of the body, which is all that follows
+ *   int     number of strings, then each string as an int length and its
+ *           UTF-8 bytes; labels, variable names and BOP operators live here
+ *   int     number of byte codes, then one record per byte code:
+ *           byte opcode, int operand, int second operand, int string index
+ *   int[]   jump table: the resolved address of each byte code, or -1
+ */
+
+public class BinaryProgramFile {
+
+    public static final short VERSION = 2;
+
+    private static final int MAGIC = 0x58434F44; // "XCOD"
+    private static final int RECORD_SIZE = 13;
+    private static final int NONE = -1;
+
+    /**
+     * Returns the name of the binary file kept next to the given .cod file.
+     *
+     * @param codFile the path of the .cod file
+     * @return the path of its binary form
+     */
+    public static Path binaryFileFor(String codFile) {
+        return Path.of(codFile + "b");
+    }
+
+    /**
+     * Reads a Program from its binary form.
+     *
+     * @param file the binary file
+     * @param checksum the checksum of the current .cod text
+     * @param codeTable the table that creates the byte code instances
+     * @return the Program with resolved addresses, or null if the file is
+     * missing, stale, of another version or damaged
+     */
+    public static Program read(Path file, long checksum, CodeTable codeTable) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION
+                    || buffer.getLong() != checksum) {
+                return null;
+            }
+            long bodyChecksum = buffer.getLong();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice());
+            if (crc.getValue() != bodyChecksum) {
+                return null;
+            }
+            String[] strings = new String[buffer.getInt()];
+            int i;
+            for (i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int count = buffer.getInt();
+            int jumpTable = buffer.position() + count * RECORD_SIZE;
+            Program program = new Program();
+            for (i = 0; i < count; i++) {
+                int opcode = buffer.get();
+                int operand = buffer.getInt();
+                int secondOperand = buffer.getInt();
+                int stringIndex = buffer.getInt();
+                String string = stringIndex == NONE ? null : strings[stringIndex];
+                int jump = buffer.getInt(jumpTable + 4 * i);
+                program.addCode(decode(codeTable.create(opcode), opcode, operand,
+                        secondOperand, string, jump));
+            }
+            return program;
+        } catch (IOException | RuntimeException e) {
+            // a damaged file is ignored; the caller parses the text instead
+            return null;
+        }
+    }
+
+    /**
+     * Writes a Program whose addresses have been resolved in binary form.  The
+     * file is written to a new temporary file in the same directory and then
+     * moved into place atomically, so a concurrent reader never sees a
+     * partial file, and concurrent writers never share the temporary file.
+     *
+     * @param program the loaded Program
+     * @param file the binary file
+     * @param checksum the checksum of the .cod text the Program was loaded from
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Program program, Path file, long checksum)
+            throws IOException {
+        ArrayList<String> strings = new ArrayList<>();
+        HashMap<String, Integer> stringIndexes = new HashMap<>();
+        int count = program.getSize();
+        byte[] opcodes = new byte[count];
+        int[] operands = new int[count];
+        int[] secondOperands = new int[count];
+        int[] stringRefs = new int[count];
+        int[] jumps = new int[count];
+        int i;
+        for (i = 0; i < count; i++) {
+            ByteCode bc = program.getCode(i);
+            int opcode = CodeTable.opcodeOf(bc);
+            if (opcode < 0 || opcode > CodeTable.FORMAL) {
+                throw new IOException("Byte code " + bc.getClass().getName()
+                        + " has no binary form");
+            }
+            int operand = 0, secondOperand = 0, jump = NONE;
+            String string = null;
+            switch (opcode) {
+                case CodeTable.POP:
+                    operand = ((PopCode) bc).getNumberOfLevels();
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    string = ((FalseBranchCode) bc).getLabel();
+                    jump = ((FalseBranchCode) bc).getTarget();
+                    break;
+                case CodeTable.GOTO:
+                    string = ((GoToCode) bc).getLabel();
+                    jump = ((GoToCode) bc).getTarget();
+                    break;
+                case CodeTable.STORE:
+                    operand = ((StoreCode) bc).getOffset();
+                    string = ((StoreCode) bc).getName();
+                    break;
+                case CodeTable.LOAD:
+                    operand = ((LoadCode) bc).getOffset();
+                    string = ((LoadCode) bc).getName();
+                    break;
+                case CodeTable.LIT:
+                    operand = ((LitCode) bc).getValue();
+                    string = ((LitCode) bc).getName();
+                    break;
+                case CodeTable.ARGS:
+                    operand = ((ArgsCode) bc).getNumberArgs();
+                    break;
+                case CodeTable.CALL:
+                    string = ((CallCode) bc).getLabel();
+                    jump = ((CallCode) bc).getTarget();
+                    break;
+                case CodeTable.RETURN:
+                    // a labelled RETURN holds the address of its label
+                    string = ((ReturnCode) bc).getLabel();
+                    if (string != null) {
+                        jump = ((ReturnCode) bc).getLabelAddress();
+                    }
+                    break;
+                case CodeTable.BOP:
+                    string = ((BopCode) bc).getOperator().getSymbol();
+                    break;
+                case CodeTable.LABEL:
+                    string = ((LabelCode) bc).getLabel();
+                    break;
+                case CodeTable.DUMP:
+                    operand = ((DumpCode) bc).getDumpState();
+                    break;
+                case CodeTable.LINE:
+                    operand = ((LineCode) bc).getLineNumber();
+                    break;
+                case CodeTable.FUNCTION:
+                    string = ((FunctionCode) bc).getName();
+                    operand = ((FunctionCode) bc).getStartLine();
+                    secondOperand = ((FunctionCode) bc).getEndLine();
+                    break;
+                case CodeTable.FORMAL:
+                    string = ((FormalCode) bc).getVarName();
+                    operand = ((FormalCode) bc).getOffset();
+                    break;
+                default:
+                    // HALT, READ and WRITE have no operands
+                    break;
+            }
+            int stringIndex = NONE;
+            if (string != null) {
+                Integer index = stringIndexes.get(string);
+                if (index == null) {
+                    index = strings.size();
+                    strings.add(string);
+                    stringIndexes.put(string, index);
+                }
+                stringIndex = index;
+            }
+            opcodes[i] = (byte) opcode;
+            operands[i] = operand;
+            secondOperands[i] = secondOperand;
+            stringRefs[i] = stringIndex;
+            jumps[i] = jump;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(count);
+            for (i = 0; i < count; i++) {
+                out.writeByte(opcodes[i]);
+                out.writeInt(operands[i]);
+                out.writeInt(secondOperands[i]);
+                out.writeInt(stringRefs[i]);
+            }
+            for (i = 0; i < count; i++) {
+                out.writeInt(jumps[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.toByteArray());
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (OutputStream stream = Files.newOutputStream(temp);
+                    DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(checksum);
+                out.writeLong(crc.getValue());
+                body.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /*
+     * Sets the operands of one record on a new byte code; the concrete class
+     * comes from the CodeTable, so the debugger's byte codes are used in
+     * debugger mode.
+     */
+    private static ByteCode decode(ByteCode bc, int opcode, int operand,
+            int secondOperand, String string, int jump) {
+        switch (opcode) {
+            case CodeTable.POP:
+                ((PopCode) bc).setNumberOfLevels(operand);
+                break;
+            case CodeTable.FALSEBRANCH:
+                ((FalseBranchCode) bc).setLabel(string);
+                ((FalseBranchCode) bc).setTarget(jump);
+                break;
+            case CodeTable.GOTO:
+                ((GoToCode) bc).setLabel(string);
+                ((GoToCode) bc).setTarget(jump);
+                break;
+            case CodeTable.STORE:
+                ((StoreCode) bc).setOffset(operand);
+                ((StoreCode) bc).setName(string);
+                break;
+            case CodeTable.LOAD:
+                ((LoadCode) bc).setOffset(operand);
+                ((LoadCode) bc).setName(string);
+                break;
+            case CodeTable.LIT:
+                ((LitCode) bc).setValue(operand);
+                ((LitCode) bc).setName(string);
+                break;
+            case CodeTable.ARGS:
+                ((ArgsCode) bc).setNumberArgs(operand);
+                break;
+            case CodeTable.CALL:
+                ((CallCode) bc).setLabel(string);
+                ((CallCode) bc).setTarget(jump);
+                break;
+            case CodeTable.RETURN:
+                ((ReturnCode) bc).setLabel(string);
+                if (string != null) {
+                    ((ReturnCode) bc).setLabelAddress(jump);
+                }
+                break;
+            case CodeTable.BOP:
+                ((BopCode) bc).setOperator(Operator.fromSymbol(string));
+                return ((BopCode) bc).forFamily();
+            case CodeTable.LABEL:
+                ((LabelCode) bc).setLabel(string);
+                break;
+            case CodeTable.DUMP:
+                ((DumpCode) bc).setDumpState(operand);
+                break;
+            case CodeTable.LINE:
+                ((LineCode) bc).setLineNumber(operand);
+                break;
+            case CodeTable.FUNCTION:
+                ((FunctionCode) bc).setFunctionInfo(string, operand, secondOperand);
+                break;
+            case CodeTable.FORMAL:
+                ((FormalCode) bc).setVarName(string);
+                ((FormalCode) bc).setOffset(operand);
+                break;
+            default:
+                // HALT, READ and WRITE have no operands
+                break;
+        }
+        return bc;
+    }
+
+}
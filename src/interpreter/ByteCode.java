@@ -10,9 +10,16 @@ import java.util.ArrayList;
  * their arguments when ByteCodeLoader executes.
  * Each method below is implemented by the concrete classes.
  * The byte codes are an example of the concept of polymorphism.
+ *
+ * A byte code holds only its arguments and resolved addresses; whatever it
+ * produces while running is kept by the VirtualMachine.  Once the Program it
+ * belongs to is frozen its setters throw, so any number of VirtualMachines
+ * may execute it at the same time.
  */
 
 public abstract class ByteCode {
+    private boolean frozen = false;
+    
     // Initializes the arguments of the particular bytecode from an ArrayList
     public abstract void init(ArrayList<String> args);
     /* Requests that the VM carrry out the instructions of that bytecode
@@ -20,4 +27,17 @@ public abstract class ByteCode {
     public abstract void execute(VirtualMachine vm);
     // Prints the bytecode appropriately if DUMP is ON
     public abstract void print(VirtualMachine vm);   
+    
+    // Called by Program.freeze()
+    final void freeze() {
+        frozen = true;
+    }
+    
+    // The setters of the concrete classes call this first
+    protected final void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException(getClass().getSimpleName()
+                    + " belongs to a frozen Program");
+        }
+    }
 }
@@ -1,11 +1,19 @@
 
 package interpreter;
 
+import interpreter.bytecode.*;
+import interpreter.ir.ControlFlowGraph;
+
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.StringTokenizer;
+import java.util.zip.CRC32;
 
 /**
  * ByteCodeLoader class does the following:
@@ -15,11 +23,40 @@ import java.util.StringTokenizer;
  * 4. Initializes each bytecode instance by passing the ArrayList for processing
  * by the individual bytecode
  * 5. Resolves the symbolic addresses in the Program instance
+ *
+ * After parsing, the loader writes the resolved Program in binary form next to
+ * the bytecode file (see BinaryProgramFile).  When the bytecode file has not
+ * changed since, later loads memory-map the binary form and skip steps 3 to 5.
+ *
+ * The Verifier then checks the byte codes as they appear in the file, if
+ * verification has been turned on or the preparation below needs it.  With
+ * verification on, a Program it rejects is not run, and a Program it accepts
+ * is marked as verified.
+ *
+ * In interpreter mode the loaded Program is then prepared for execution: the
+ * Inliner replaces the calls of small functions by their bodies; the
+ * PeepholeOptimizer runs if it has been turned on; if it has and the program
+ * does not turn DUMP on, the code that can never run is removed (see
+ * ir.ControlFlowGraph); the TailCallEliminator replaces the calls in tail
+ * position, and the SuperinstructionSelector fuses common sequences of byte
+ * codes.  The binary form always holds the byte codes as they appear in the
+ * file.  A prepared Program that the Verifier accepted is verified once more,
+ * and the frame sizes it finds are kept with the Program; should the prepared
+ * Program be rejected, the byte codes as they appear in the file are run
+ * instead.  A Program that has not been verified is loaded without the frame
+ * sizes.
+ * The Program returned is frozen, and may be shared between threads.
  */
 
 public class ByteCodeLoader {
 
     private String filename = null;
+    // creates the byte code instances for interpreter or debugger mode
+    private CodeTable codeTable = CodeTable.INTERPRETER;
+    private boolean optimize = false;
+    private boolean verify = false;
+    private int inlineBudget = Inliner.DEFAULT_BUDGET;
+    private long checksum; // of the bytecode file last loaded
 
     public ByteCodeLoader() {
     }
@@ -28,60 +65,174 @@ public class ByteCodeLoader {
         filename = file;
     }
 
+    public ByteCodeLoader(String file, CodeTable table) throws IOException {
+        filename = file;
+        codeTable = table;
+    }
+
+    // The CRC-32 checksum of the text of the bytecode file last loaded
+    public long getChecksum() {
+        return checksum;
+    }
+
+    // Turns the PeepholeOptimizer on or off for interpreter mode
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    // Turns the Verifier on or off
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    // Sets the budget of the Inliner for interpreter mode; 0 turns it off
+    public void setInlineBudget(int budget) {
+        inlineBudget = budget;
+    }
+
     /**
      * This method reads the bytecode file, creates appropriate instances of the
      * concrete bytecode classes, and initializes those bytecode instances by
      * passing an ArrayList containing the arguments to those instances for
      * processing.  The particular bytecode instance handles processing of
      * the arguments during initialization of the instance.
+     * If an up-to-date binary form of the file exists, the Program is read
+     * from it instead.
      *
      * @return Program instance populated with concrete bytecode class instances
+     * @throws ProgramLoadException if the file cannot be read, holds an
+     * invalid byte code or an undefined label, or is rejected by the Verifier
      */
     public Program loadCodes() {
-        Program program = new Program();
-        BufferedReader reader = null;
+        byte[] source;
         try {
-            reader = createReader(filename);
-        } catch (Exception e) {
+            source = Files.readAllBytes(Path.of(filename));
+        } catch (IOException e) {
+            throw new ProgramLoadException("**** " + e, e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(source);
+        checksum = crc.getValue();
+        Path binaryFile = BinaryProgramFile.binaryFileFor(filename);
+
+        Program program = BinaryProgramFile.read(binaryFile, checksum, codeTable);
+        if (program == null) {
+            program = parseCodes(source);
+            try {
+                BinaryProgramFile.write(program, binaryFile, checksum);
+            } catch (IOException e) {
+                // the binary form is only a cache; the next run parses the text again
+            }
+        }
+        // the Inliner and the PeepholeOptimizer need the Verifier's findings
+        boolean interpreting = codeTable == CodeTable.INTERPRETER;
+        Verifier verifier = null;
+        if (verify || (interpreting && (optimize || inlineBudget > 0))) {
+            verifier = new Verifier();
+            try {
+                verifier.verify(program);
+            } catch (ProgramLoadException e) {
+                if (verify) {
+                    throw new ProgramLoadException("Error in " + filename + " at "
+                            + e.getMessage(), e);
+                }
+                verifier = null;
+            }
+        }
+        Program prepared = prepare(program, verifier);
+        if (verifier != null && prepared != program) {
+            // the frame sizes are those of the Program that runs
+            Verifier again = new Verifier();
+            try {
+                again.verify(prepared);
+                verifier = again;
+            } catch (ProgramLoadException e) {
+                // a preparation went wrong; the byte codes as they appear in the
+                // file are run instead, and the Program above shares some of them
+                prepared = parseCodes(source);
+            }
+        }
+        program = prepared;
+        if (verifier != null) {
+            program.setFrameSizes(verifier.getFrameSizes(), verifier.getMaxStackSize());
+        }
+        // the debugger's byte codes do more than the ones the Verifier follows
+        if (verify && codeTable == CodeTable.INTERPRETER) {
+            program.markVerified();
+        }
+        program.freeze();
+        return program;
+    } // end loadCodes method
+
+    /*
+     * Rewrites a Program for interpreter mode, given the Verifier that has
+     * accepted it or null; the debugger runs the byte codes exactly as they
+     * appear in the file.
+     */
+    private Program prepare(Program program, Verifier verifier) {
+        if (codeTable != CodeTable.INTERPRETER) {
+            return program;
+        }
+        // the Inliner takes the depths of the calls from the Verifier
+        program = new Inliner(inlineBudget).inline(program, verifier);
+        if (optimize) {
+            program = new PeepholeOptimizer().optimize(program, verifier != null);
+        }
+        // a program that turns DUMP on keeps its addresses, which a trace records
+        if (optimize && !usesDump(program)) {
+            // this also drops the functions whose calls have all been inlined
+            ControlFlowGraph graph = ControlFlowGraph.build(program);
+            if (graph.removeUnreachableBlocks() > 0) {
+                program = graph.toProgram();
+            }
+        }
+        program = new TailCallEliminator().eliminate(program);
+        return new SuperinstructionSelector().select(program);
+    }
+
+    // Tells whether a Program turns DUMP on
+    private static boolean usesDump(Program program) {
+        int i;
+        for (i = 0; i < program.getSize(); i++) {
+            ByteCode bc = program.getCode(i);
+            if (bc instanceof DumpCode && ((DumpCode) bc).getDumpState() == 1) {
+                return true;
+            }
         }
-        ByteCode bc = null;
+        return false;
+    }
+
+    /*
+     * Parses the text of the bytecode file into a Program and resolves its
+     * symbolic addresses.
+     */
+    private Program parseCodes(byte[] source) {
+        Program program = new Program();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(source), StandardCharsets.UTF_8));
+        ByteCode bc;
         StringTokenizer st;
         // args ArrayList holds the bytecode's arguments
         ArrayList<String> args = new ArrayList<>();
         String nextLine = null;
         String nextToken;
-        String nextClass;
-        int i = 1;
+        int lineNumber = 0;
         while (true) {
-            System.out.println("i is " + i);
-            i++;
             try {
                 nextLine = reader.readLine();
-            } catch (Exception e) {
-                System.exit(1);
+            } catch (IOException e) {
+                throw new ProgramLoadException("**** " + e, e);
             }
             if (nextLine == null) break;
+            lineNumber++;
             st = new StringTokenizer(nextLine);
+            if (!st.hasMoreTokens()) continue; // skip blank lines
             nextToken = st.nextToken();
-            // use CodeTable to get the text of the bytecode's class name
-            nextClass = CodeTable.get(nextToken);
-            // use reflection to create new instances of the bytecodes
-            try {
-                bc = (ByteCode) (Class.forName("interpreter.bytecode." + nextClass).newInstance());
-            } catch (ClassNotFoundException | InstantiationException |
-                    IllegalAccessException e) {
-                System.out.println("Got here");
-            }
-
-            Class Cl;
-            try {
-                Cl = bc.getClass();
-            } catch (NullPointerException npe) {
-                System.out.println("Null pointer exception!!!!!");
-                System.out.println(npe.getMessage());
-                System.out.println(System.getProperty("user.dir"));
+            bc = codeTable.create(nextToken);
+            if (bc == null) {
+                throw new ProgramLoadException("Error in " + filename + " at line "
+                        + lineNumber + ": unknown byte code " + nextToken);
             }
-            //Class cl = bc.getClass();
             while (st.hasMoreTokens()) {
                 nextToken = st.nextToken();
                 args.add(nextToken);
@@ -89,8 +240,18 @@ public class ByteCodeLoader {
             /* Pass the ArrayList args, now populated with the bytecode's 
              * arguments, to the bytecode instance so that the bytecode
              * instance can do the processing of the arguments.
+             * Invalid arguments, such as an unknown BOP operator, are
+             * reported here, before the program runs.
              */
-            bc.init(args);
+            try {
+                bc.init(args);
+            } catch (IllegalArgumentException e) {
+                throw new ProgramLoadException("Error in " + filename + " at line "
+                        + lineNumber + ": " + e.getMessage(), e);
+            }
+            if (bc instanceof BopCode) {
+                bc = ((BopCode) bc).forFamily();
+            }
 
             // Place the now-initialized bytecode instance into Program instance
             program.addCode(bc);
@@ -102,15 +263,13 @@ public class ByteCodeLoader {
      * The Program instance iterates through the bytecodes and resolves 
      * symbolic addresses into particular numeric addresses.
      */
-        program.resolveAddresses();
+        try {
+            program.resolveAddresses();
+        } catch (ProgramLoadException e) {
+            throw new ProgramLoadException("Error in " + filename + " at "
+                    + e.getMessage(), e);
+        }
         return program;
-    } // end loadCodes method
-
-    private BufferedReader createReader(String codefile) throws IOException {
-        BufferedReader reader = null;
-        reader = new BufferedReader(new FileReader(codefile));
-        return reader;
-    }
-
+    } // end parseCodes method
 
 } 
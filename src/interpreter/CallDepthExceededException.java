@@ -0,0 +1,21 @@
+package interpreter;
+
+/**
+ * CallDepthExceededException is thrown when a program nests more function
+ * calls than the maximum call depth allows, usually because of a recursion
+ * that never ends.
+ */
+
+public class CallDepthExceededException extends InterpreterException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CallDepthExceededException(int maxDepth) {
+        super("Call stack overflow: more than " + maxDepth + " nested calls");
+    }
+
+    public CallDepthExceededException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,144 @@
+package interpreter;
+
+import java.util.Arrays;
+
+/**
+ * CallStack holds the return address of each function call in progress,
+ * together with the start of the callee's frame on the RunTimeStack, in
+ * primitive arrays.  It is not synchronized; each VirtualMachine has its own.
+ *
+ * The depth of the stack is limited: a call beyond the maximum depth throws a
+ * CallDepthExceededException, so runaway recursion ends the program with a
+ * clear message rather than exhausting the memory.
+ * Other classes, such as the DebugVirtualMachine, walk the stack through its
+ * read-only View.
+ */
+
+public class CallStack {
+
+    public static final int DEFAULT_MAX_DEPTH = 1 << 20;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * View is a read-only view of a CallStack.  Entries are numbered from 0,
+     * the outermost call, to size() - 1, the call in progress.
+     */
+    public interface View {
+
+        int size();
+
+        // The address of the CALL byte code that made the call
+        int getReturnAddress(int index);
+
+        // The start of the callee's frame on the RunTimeStack
+        int getFrameStart(int index);
+    }
+
+    private int[] returnAddresses = new int[INITIAL_CAPACITY];
+    private int[] frameStarts = new int[INITIAL_CAPACITY];
+    private int size = 0;
+    private int maxDepth;
+    private final View view = new View() {
+        public int size() {
+            return size;
+        }
+
+        public int getReturnAddress(int index) {
+            checkIndex(index);
+            return returnAddresses[index];
+        }
+
+        public int getFrameStart(int index) {
+            checkIndex(index);
+            return frameStarts[index];
+        }
+    };
+
+    public CallStack() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    public CallStack(int maxDepth) {
+        setMaxDepth(maxDepth);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int newMaxDepth) {
+        if (newMaxDepth < 1) {
+            throw new IllegalArgumentException("The maximum call depth must be positive");
+        }
+        maxDepth = newMaxDepth;
+    }
+
+    public View view() {
+        return view;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param returnAddress the address of the CALL byte code
+     * @param frameStart the start of the callee's frame
+     * @throws CallDepthExceededException if the maximum depth is reached
+     */
+    public void push(int returnAddress, int frameStart) {
+        if (size >= maxDepth) {
+            throw new CallDepthExceededException(maxDepth);
+        }
+        if (size == returnAddresses.length) {
+            int capacity = (int) Math.min((long) size << 1, maxDepth);
+            returnAddresses = Arrays.copyOf(returnAddresses, capacity);
+            frameStarts = Arrays.copyOf(frameStarts, capacity);
+        }
+        returnAddresses[size] = returnAddress;
+        frameStarts[size] = frameStart;
+        size++;
+    }
+
+    // Removes all the calls
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Removes the call in progress.
+     *
+     * @return the return address of the call
+     * @throws RunTimeStackException if no call is in progress, as when a
+     * program returns outside a function
+     */
+    public int pop() {
+        if (size == 0) {
+            callStackEmpty();
+        }
+        return returnAddresses[--size];
+    }
+
+    public int peekReturnAddress() {
+        if (size == 0) {
+            callStackEmpty();
+        }
+        return returnAddresses[size - 1];
+    }
+
+    // The error of a RETURN with no call to return from, like those of IntRunTimeStack
+    static void callStackEmpty() {
+        throw new RunTimeStackException("Error! The call stack is empty.");
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Call stack index " + index
+                    + " out of bounds for depth " + size);
+        }
+    }
+
+}
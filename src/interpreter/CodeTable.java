@@ -4,53 +4,159 @@
  */
 package interpreter;
 
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
 /**
- * CodeTable class creates and populates a HashMap with all possible bytecode
- * types and names.
- * The Map, via the get() method here, is used by ByteCodeLoader class to look up 
- * a name from the bytecode file and retrieve the text of the name of the 
- * corresponding class in order to make a new instance of that class.
+ * CodeTable class holds a registry of factories for all possible bytecode
+ * types, keyed by numeric opcode, together with the names of the byte codes.
+ * ByteCodeLoader class uses a CodeTable to look up a name from the bytecode
+ * file and create a new instance of the corresponding class.
  * 
+ * There are two immutable tables: INTERPRETER creates the plain byte codes,
+ * and DEBUGGER creates the debugger's versions of LIT, POP, ARGS, CALL and
+ * RETURN.  Both can be used at the same time, since neither is ever changed.
  */
-public class CodeTable {
-    private String key;
-    private String value;
-    private static String[] codeNames = {"HALT", "POP", "FALSEBRANCH", "GOTO", "STORE",
+public final class CodeTable {
+    private static final String[] codeNames = {"HALT", "POP", "FALSEBRANCH", "GOTO", "STORE",
         "LOAD", "LIT", "ARGS", "CALL", "RETURN", "BOP", "READ", "WRITE", "LABEL", 
         "DUMP", "LINE", "FUNCTION", "FORMAL"};
-    private static String[] classNames = {"HaltCode", "PopCode", "FalseBranchCode", 
-        "GoToCode", "StoreCode", "LoadCode", "LitCode", "ArgsCode", "CallCode", 
-        "ReturnCode", "BopCode", "ReadCode", "WriteCode", "LabelCode", 
-        "DumpCode", "LineCode", "FunctionCode", "FormalCode"};
     
-    private static java.util.HashMap<String, String> codes = new java.util.HashMap<>();
+    /* Numeric opcodes, one per entry of codeNames and in the same order.
+     * They are used wherever a program is lowered to a compact form.
+     */
+    public static final int HALT = 0, POP = 1, FALSEBRANCH = 2, GOTO = 3,
+        STORE = 4, LOAD = 5, LIT = 6, ARGS = 7, CALL = 8, RETURN = 9, BOP = 10,
+        READ = 11, WRITE = 12, LABEL = 13, DUMP = 14, LINE = 15, FUNCTION = 16,
+        FORMAL = 17;
+    
+    /* Opcodes of the byte codes that the optimizer, the TailCallEliminator
+     * and the SuperinstructionSelector create; they have no name and never
+     * appear in a bytecode file.
+     */
+    public static final int BOP_FALSEBRANCH = 18, LOAD_LIT_BOP = 19,
+        LOAD_LOAD_BOP = 20, LIT_STORE = 21, TAILCALL = 22;
+    
+    // for messages, the byte codes each of those replaces, in their order
+    private static final String[] fusedNames = {"BOP FALSEBRANCH", "LOAD LIT BOP",
+        "LOAD LOAD BOP", "LIT STORE", "ARGS CALL"};
+    
+    // maps the code names from the file to their opcodes
+    private static final Map<String, Integer> opcodes = opcodesByName();
     
-    /* populates the HashMap with keys (code names from the file) and 
-     * values (the text of the corresponding concrete class names)
+    // The table of byte codes used in interpreter mode
+    public static final CodeTable INTERPRETER = new CodeTable(List.of(
+        HaltCode::new, PopCode::new, FalseBranchCode::new, GoToCode::new,
+        StoreCode::new, LoadCode::new, LitCode::new, ArgsCode::new,
+        CallCode::new, ReturnCode::new, BopCode::new, ReadCode::new,
+        WriteCode::new, LabelCode::new, DumpCode::new, LineCode::new,
+        FunctionCode::new, FormalCode::new));
+    
+    /* The table of byte codes used in debugger mode, which maps the
+     * indicated byte codes to the debugger's concrete classes
      */
-    public static void init() {
+    public static final CodeTable DEBUGGER = INTERPRETER.replacing(Map.of(
+        LIT, DebugLitCode::new,
+        POP, DebugPopCode::new,
+        ARGS, DebugArgsCode::new,
+        CALL, DebugCallCode::new,
+        RETURN, DebugReturnCode::new));
+    
+    // the factory of each byte code, indexed by opcode
+    private final List<Supplier<ByteCode>> factories;
+    
+    private CodeTable(List<Supplier<ByteCode>> factories) {
+        this.factories = factories;
+    }
+    
+    private static Map<String, Integer> opcodesByName() {
+        HashMap<String, Integer> map = new HashMap<>();
         int i;
-        String codeName, className;
-        for (i=0; i<codeNames.length; i++){
-            codeName = codeNames[i];
-            className = classNames[i];
-            codes.put(codeName, className);
+        for (i = 0; i < codeNames.length; i++) {
+            map.put(codeNames[i], i);
+        }
+        return Map.copyOf(map);
+    }
+    
+    // Returns a copy of this table in which some of the factories are replaced
+    private CodeTable replacing(Map<Integer, Supplier<ByteCode>> replacements) {
+        ArrayList<Supplier<ByteCode>> copy = new ArrayList<>(factories);
+        for (Map.Entry<Integer, Supplier<ByteCode>> entry : replacements.entrySet()) {
+            copy.set(entry.getKey(), entry.getValue());
+        }
+        return new CodeTable(List.copyOf(copy));
+    }
+    
+    /**
+     * Creates a new instance of the byte code with the given opcode.
+     * @param opcode one of the opcode constants of this class
+     * @return a new, uninitialized byte code
+     */
+    public ByteCode create(int opcode) {
+        return factories.get(opcode).get();
+    }
+    
+    /**
+     * Creates a new instance of the byte code with the given name.
+     * @param codeName the name of the byte code as written in the bytecode file
+     * @return a new, uninitialized byte code, or null if the name is unknown
+     */
+    public ByteCode create(String codeName) {
+        Integer opcode = opcodes.get(codeName);
+        return opcode == null ? null : create(opcode);
+    }
+    
+    // Returns the opcode of the byte code with the given name, or -1
+    public static int opcodeOf(String codeName) {
+        Integer opcode = opcodes.get(codeName);
+        return opcode == null ? -1 : opcode;
+    }
+    
+    /* Returns the name of the byte code with the given numeric opcode; for a
+     * fused byte code, the names of the byte codes it replaces
+     */
+    public static String nameOf(int opcode) {
+        if (opcode >= codeNames.length) {
+            return fusedNames[opcode - codeNames.length];
         }
+        return codeNames[opcode];
     }
     
-    /*
-     * When in debugger mode, this method is called to map the indicated
-     * byte codes to the appropriate concrete class names
+    /**
+     * Returns the numeric opcode of a byte code instance; the debugger's
+     * byte codes have the opcode of the byte code they extend.
+     * @param bc the byte code
+     * @return its opcode, or -1 if it is not a byte code known to this table
      */
-    public static void initDebugCodes() {
-        codes.put("LIT", "DebugLitCode");
-        codes.put("POP", "DebugPopCode");
-        codes.put("ARGS", "DebugArgsCode");
-        codes.put("CALL","DebugCallCode");
-        codes.put("RETURN", "DebugReturnCode");
-    }
-   
-    public static String get(String key) {
-        return codes.get(key);
+    public static int opcodeOf(ByteCode bc) {
+        if (bc instanceof LitCode) return LIT;
+        if (bc instanceof LoadCode) return LOAD;
+        if (bc instanceof StoreCode) return STORE;
+        if (bc instanceof BopCode) return BOP;
+        if (bc instanceof FalseBranchCode) return FALSEBRANCH;
+        if (bc instanceof GoToCode) return GOTO;
+        if (bc instanceof ArgsCode) return ARGS;
+        if (bc instanceof CallCode) return CALL;
+        if (bc instanceof ReturnCode) return RETURN;
+        if (bc instanceof PopCode) return POP;
+        if (bc instanceof ReadCode) return READ;
+        if (bc instanceof WriteCode) return WRITE;
+        if (bc instanceof HaltCode) return HALT;
+        if (bc instanceof DumpCode) return DUMP;
+        if (bc instanceof LabelCode) return LABEL;
+        if (bc instanceof LineCode) return LINE;
+        if (bc instanceof FunctionCode) return FUNCTION;
+        if (bc instanceof FormalCode) return FORMAL;
+        if (bc instanceof BopFalseBranchCode) return BOP_FALSEBRANCH;
+        if (bc instanceof LoadLitBopCode) return LOAD_LIT_BOP;
+        if (bc instanceof LoadLoadBopCode) return LOAD_LOAD_BOP;
+        if (bc instanceof LitStoreCode) return LIT_STORE;
+        if (bc instanceof TailCallCode) return TAILCALL;
+        return -1;
     }
 }
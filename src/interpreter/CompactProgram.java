@@ -0,0 +1,151 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+/**
+ * CompactProgram is a Program lowered into two parallel int arrays: one holds
+ * the numeric opcode of each byte code (see the constants in CodeTable) and the
+ * other holds its single integer operand, with symbolic addresses already
+ * resolved.  The FastVirtualMachine executes this form directly instead of
+ * calling execute() on each ByteCode instance.
+ *
+ * Operands by opcode:
+ * LIT value, LOAD offset, STORE offset, POP levels, ARGS count,
+ * GOTO/FALSEBRANCH/CALL target address, BOP operator ordinal (see Operator),
+ * DUMP state; every other byte code has no operand.
+ * The fused byte codes also use a second and a third operand array:
+ * BOP_FALSEBRANCH target address, operator ordinal;
+ * LOAD_LIT_BOP offset, literal value, operator ordinal;
+ * LOAD_LOAD_BOP first offset, second offset, operator ordinal;
+ * LIT_STORE literal value, offset;
+ * TAILCALL target address, number of arguments.
+ */
+
+public class CompactProgram {
+
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int[] secondOperands;
+    private final int[] thirdOperands;
+    private final boolean usesDump;
+
+    private CompactProgram(int[] opcodes, int[] operands, int[] secondOperands,
+            int[] thirdOperands, boolean usesDump) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.secondOperands = secondOperands;
+        this.thirdOperands = thirdOperands;
+        this.usesDump = usesDump;
+    }
+
+    /**
+     * Lowers a Program whose addresses have been resolved into opcode and
+     * operand arrays.
+     *
+     * @param program the loaded Program
+     * @return the compact form of the Program
+     */
+    public static CompactProgram lower(Program program) {
+        int size = program.getSize();
+        int[] opcodes = new int[size];
+        int[] operands = new int[size];
+        int[] secondOperands = new int[size];
+        int[] thirdOperands = new int[size];
+        boolean usesDump = false;
+        int i;
+        for (i = 0; i < size; i++) {
+            ByteCode bc = program.getCode(i);
+            int opcode = CodeTable.opcodeOf(bc);
+            int operand = 0, secondOperand = 0, thirdOperand = 0;
+            switch (opcode) {
+                case CodeTable.LIT:
+                    operand = ((LitCode) bc).getValue();
+                    break;
+                case CodeTable.LOAD:
+                    operand = ((LoadCode) bc).getOffset();
+                    break;
+                case CodeTable.STORE:
+                    operand = ((StoreCode) bc).getOffset();
+                    break;
+                case CodeTable.BOP:
+                    operand = ((BopCode) bc).getOperator().ordinal();
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    operand = ((FalseBranchCode) bc).getTarget();
+                    break;
+                case CodeTable.GOTO:
+                    operand = ((GoToCode) bc).getTarget();
+                    break;
+                case CodeTable.ARGS:
+                    operand = ((ArgsCode) bc).getNumberArgs();
+                    break;
+                case CodeTable.CALL:
+                    operand = ((CallCode) bc).getTarget();
+                    break;
+                case CodeTable.POP:
+                    operand = ((PopCode) bc).getNumberOfLevels();
+                    break;
+                case CodeTable.DUMP:
+                    operand = ((DumpCode) bc).getDumpState();
+                    usesDump |= operand == 1;
+                    break;
+                case CodeTable.BOP_FALSEBRANCH:
+                    operand = ((BopFalseBranchCode) bc).getTarget();
+                    secondOperand = ((BopFalseBranchCode) bc).getOperator().ordinal();
+                    break;
+                case CodeTable.LOAD_LIT_BOP:
+                    operand = ((LoadLitBopCode) bc).getOffset();
+                    secondOperand = ((LoadLitBopCode) bc).getValue();
+                    thirdOperand = ((LoadLitBopCode) bc).getOperator().ordinal();
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    operand = ((LoadLoadBopCode) bc).getFirstOffset();
+                    secondOperand = ((LoadLoadBopCode) bc).getSecondOffset();
+                    thirdOperand = ((LoadLoadBopCode) bc).getOperator().ordinal();
+                    break;
+                case CodeTable.LIT_STORE:
+                    operand = ((LitStoreCode) bc).getValue();
+                    secondOperand = ((LitStoreCode) bc).getOffset();
+                    break;
+                case CodeTable.TAILCALL:
+                    operand = ((TailCallCode) bc).getTarget();
+                    secondOperand = ((TailCallCode) bc).getNumberArgs();
+                    break;
+                case -1:
+                    throw new IllegalArgumentException("Cannot lower byte code "
+                            + bc.getClass().getName() + " at address " + i);
+                default:
+                    // the remaining byte codes have no operand
+                    break;
+            }
+            opcodes[i] = opcode;
+            operands[i] = operand;
+            secondOperands[i] = secondOperand;
+            thirdOperands[i] = thirdOperand;
+        }
+        return new CompactProgram(opcodes, operands, secondOperands,
+                thirdOperands, usesDump);
+    }
+
+    public int[] getOpcodes() {
+        return opcodes;
+    }
+
+    public int[] getOperands() {
+        return operands;
+    }
+
+    public int[] getSecondOperands() {
+        return secondOperands;
+    }
+
+    public int[] getThirdOperands() {
+        return thirdOperands;
+    }
+
+    // Whether the program turns dumping on anywhere
+    public boolean usesDump() {
+        return usesDump;
+    }
+
+}
@@ -0,0 +1,371 @@
+package interpreter;
+
+import java.util.Arrays;
+
+/**
+ * FastVirtualMachine is an alternative execution engine for interpreter mode.
+ * The Program is lowered into a CompactProgram when the machine is created,
+ * and executeProgram() runs a single switch loop over the opcode array with the
+ * program counter, the stack top and the current frame pointer held in local
+ * variables.  The operand stack, the frame pointers and the return addresses
+ * are plain int arrays private to that loop.
+ *
+ * The output is identical to that of the VirtualMachine.  Dumping needs the
+ * ByteCode instances and the RunTimeStack, so a program that turns DUMP on is
+ * handed to the VirtualMachine's own loop instead.
+ *
+ * Between slices of executeSlice() the loop's registers are kept in fields;
+ * within a slice they live in local variables as before.
+ */
+
+public class FastVirtualMachine extends VirtualMachine {
+
+    private final CompactProgram compact;
+    // The state of the loop between slices; the arrays are kept by reset()
+    private boolean begun = false;
+    private int[] stack;
+    private int[] frames;
+    private int[] returns;
+    private int sp, frameCount, fp, rsp, pc;
+
+    public FastVirtualMachine(Program p) {
+        super(p);
+        compact = CompactProgram.lower(p);
+    }
+
+    @Override
+    public void executeProgram() {
+        if (compact.usesDump()) {
+            super.executeProgram();
+            return;
+        }
+        begun = false;
+        run(Long.MAX_VALUE);
+    }
+
+    @Override
+    public boolean executeSlice(long budget) {
+        if (compact.usesDump()) {
+            return super.executeSlice(budget);
+        }
+        if (begun && !getIsRunning()) {
+            return false;
+        }
+        run(budget);
+        return getIsRunning();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        begun = false;
+    }
+
+    // Runs the switch loop until the program halts or the budget is used up
+    private void run(long budget) {
+        if (!begun) {
+            if (stack == null) {
+                int capacity = getProgram().getMaxStackSize();
+                stack = new int[capacity > 0 ? capacity : 64];
+                frames = new int[16];
+                returns = new int[16];
+            }
+            sp = frameCount = rsp = pc = 0;
+            fp = -1;
+            setIsRunning(true);
+            begun = true;
+            forgetPendingCalls();
+        }
+        final int[] opcodes = compact.getOpcodes();
+        final int[] operands = compact.getOperands();
+        final int[] secondOperands = compact.getSecondOperands();
+        final int[] thirdOperands = compact.getThirdOperands();
+        final int maxCallDepth = getMaxCallDepth();
+        final MemoCache memo = getMemoCache();
+        int[] stack = this.stack;
+        int[] frames = this.frames;
+        int[] returns = this.returns;
+        int sp = this.sp;                 // number of elements on the stack
+        int frameCount = this.frameCount; // number of frame pointers
+        int fp = this.fp;                 // start of the current frame, -1 if there is none
+        int rsp = this.rsp;               // number of return addresses
+        int pc = this.pc;
+        int value, first, second, index;
+        long remaining = budget;
+
+        try {
+        while (remaining > 0) {
+            remaining--;
+            switch (opcodes[pc]) {
+                case CodeTable.LIT:
+                    value = operands[pc];
+                    break;
+                case CodeTable.LOAD:
+                    if (fp < 0) {
+                        frameStackEmpty();
+                    }
+                    index = fp + operands[pc];
+                    if (index < 0 || index >= sp) {
+                        outsideStack(index);
+                    }
+                    value = stack[index];
+                    break;
+                case CodeTable.STORE:
+                    if (sp == 0) {
+                        stackEmpty();
+                    }
+                    value = stack[--sp];
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    if (fp < 0) {
+                        frameStackEmpty();
+                    }
+                    index = fp + operands[pc];
+                    if (index < 0 || index >= sp) {
+                        outsideStack(index);
+                    }
+                    stack[index] = value;
+                    pc++;
+                    continue;
+                case CodeTable.BOP:
+                    if (sp < 2) {
+                        stackEmpty();
+                    }
+                    first = stack[--sp];
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    second = stack[--sp];
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    value = Operator.fromOrdinal(operands[pc]).apply(first, second);
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    if (sp == 0) {
+                        stackEmpty();
+                    }
+                    value = stack[--sp];
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    pc = value == 0 ? operands[pc] : pc + 1;
+                    continue;
+                case CodeTable.BOP_FALSEBRANCH:
+                    if (sp < 2) {
+                        stackEmpty();
+                    }
+                    first = stack[--sp];
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    second = stack[--sp];
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    value = Operator.fromOrdinal(secondOperands[pc]).apply(first, second);
+                    pc = value == 0 ? operands[pc] : pc + 1;
+                    continue;
+                case CodeTable.LOAD_LIT_BOP:
+                    if (fp < 0) {
+                        frameStackEmpty();
+                    }
+                    index = fp + operands[pc];
+                    if (index < 0 || index >= sp) {
+                        outsideStack(index);
+                    }
+                    value = Operator.fromOrdinal(thirdOperands[pc])
+                            .apply(secondOperands[pc], stack[index]);
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    if (fp < 0) {
+                        frameStackEmpty();
+                    }
+                    index = fp + operands[pc];
+                    if (index < 0 || index >= sp) {
+                        outsideStack(index);
+                    }
+                    second = stack[index];
+                    // the second LOAD may reach the value the first one pushed
+                    index = fp + secondOperands[pc];
+                    if (index < 0 || index > sp) {
+                        outsideStack(index);
+                    }
+                    first = index == sp ? second : stack[index];
+                    value = Operator.fromOrdinal(thirdOperands[pc]).apply(first, second);
+                    break;
+                case CodeTable.LIT_STORE:
+                    // pushing and popping the literal drops an empty frame
+                    if (sp == fp) {
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    if (fp < 0) {
+                        frameStackEmpty();
+                    }
+                    index = fp + secondOperands[pc];
+                    if (index < 0 || index >= sp) {
+                        outsideStack(index);
+                    }
+                    stack[index] = operands[pc];
+                    pc++;
+                    continue;
+                case CodeTable.GOTO:
+                    pc = operands[pc];
+                    continue;
+                case CodeTable.ARGS:
+                    if (frameCount == frames.length) {
+                        frames = Arrays.copyOf(frames, frameCount << 1);
+                    }
+                    fp = frames[frameCount++] = sp - operands[pc];
+                    pc++;
+                    continue;
+                case CodeTable.CALL:
+                    if (memo != null && (first = memo.argumentsAt(pc)) >= 0) {
+                        Integer result = memo.lookup(new MemoCache.Key(operands[pc],
+                                Arrays.copyOfRange(stack, fp, fp + first)), rsp + 1);
+                        if (result != null) {
+                            // the frame holds at least the result when a pure function returns
+                            sp = fp;
+                            fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                            value = result;
+                            break;
+                        }
+                    }
+                    if (rsp == maxCallDepth) {
+                        throw new CallDepthExceededException(maxCallDepth);
+                    }
+                    if (rsp == returns.length) {
+                        returns = Arrays.copyOf(returns, rsp << 1);
+                    }
+                    returns[rsp++] = pc;
+                    pc = operands[pc];
+                    continue;
+                case CodeTable.TAILCALL:
+                    first = secondOperands[pc];
+                    if (rsp > 0 && fp >= 0 && first <= sp - fp) {
+                        // the arguments replace the current frame
+                        System.arraycopy(stack, sp - first, stack, fp, first);
+                        sp = fp + first;
+                        pc = operands[pc];
+                        continue;
+                    }
+                    // an ordinary ARGS and CALL; the RETURN after them returns
+                    if (frameCount == frames.length) {
+                        frames = Arrays.copyOf(frames, frameCount << 1);
+                    }
+                    fp = frames[frameCount++] = sp - first;
+                    if (rsp == maxCallDepth) {
+                        throw new CallDepthExceededException(maxCallDepth);
+                    }
+                    if (rsp == returns.length) {
+                        returns = Arrays.copyOf(returns, rsp << 1);
+                    }
+                    returns[rsp++] = pc;
+                    pc = operands[pc];
+                    continue;
+                case CodeTable.RETURN:
+                    // in the order of VirtualMachine.returnAfterCall()
+                    if (rsp == 0) {
+                        CallStack.callStackEmpty();
+                    }
+                    if (sp == 0) {
+                        stackEmpty();
+                    }
+                    value = stack[sp - 1];
+                    if (fp < 0) {
+                        frameStackEmpty();
+                    }
+                    if (sp > fp) {
+                        sp = fp;
+                        fp = --frameCount > 0 ? frames[frameCount - 1] : -1;
+                    }
+                    if (memo != null) {
+                        memo.returned(rsp, value);
+                    }
+                    pc = returns[--rsp];
+                    break;
+                case CodeTable.POP:
+                    value = sp - operands[pc]; // the new stack top
+                    if (value < 0) {
+                        stackEmpty();
+                    }
+                    first = sp;
+                    while (frameCount > 0) {
+                        second = frames[frameCount - 1];
+                        if (second < value || second >= first) {
+                            break;
+                        }
+                        frameCount--;
+                        first = second;
+                    }
+                    fp = frameCount > 0 ? frames[frameCount - 1] : -1;
+                    sp = value;
+                    pc++;
+                    continue;
+                case CodeTable.READ:
+                    value = readInput();
+                    break;
+                case CodeTable.WRITE:
+                    if (sp == 0) {
+                        stackEmpty();
+                    }
+                    writeValue(stack[sp - 1]);
+                    pc++;
+                    continue;
+                case CodeTable.HALT:
+                    setIsRunning(false);
+                    return;
+                default:
+                    // LABEL, LINE, FUNCTION, FORMAL and DUMP OFF do nothing here
+                    pc++;
+                    continue;
+            }
+            // push the value produced by the byte code
+            if (sp == 0 && frameCount == 0) {
+                fp = frames[frameCount++] = 0;
+            }
+            if (sp == stack.length) {
+                stack = Arrays.copyOf(stack, sp << 1);
+            }
+            stack[sp++] = value;
+            pc++;
+        }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            forgetPendingCalls();
+            // every access to the stacks is checked, so only the opcodes get here
+            if (pc == opcodes.length) {
+                VirtualMachine.pastEnd();
+            }
+            throw e;
+        } catch (RuntimeException | Error e) {
+            forgetPendingCalls();
+            throw e;
+        } finally {
+            addInstructionCount(budget - remaining);
+            this.stack = stack;
+            this.frames = frames;
+            this.returns = returns;
+            this.sp = sp;
+            this.frameCount = frameCount;
+            this.fp = fp;
+            this.rsp = rsp;
+            this.pc = pc;
+        }
+    }
+
+    // The errors of IntRunTimeStack
+    private static void outsideStack(int index) {
+        throw new RunTimeStackException("RunTimeStack error! Index " + index
+                + " is outside the stack.");
+    }
+
+    private static void stackEmpty() {
+        throw new RunTimeStackException("RunTimeStack error! Stack is empty.");
+    }
+
+    private static void frameStackEmpty() {
+        throw new RunTimeStackException("Error! The framePointers stack is empty.");
+    }
+
+}
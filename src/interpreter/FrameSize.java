@@ -0,0 +1,62 @@
+package interpreter;
+
+/**
+ * FrameSize holds the figures the Verifier finds for the frame of the main
+ * program or of a function, in the manner of the max_locals and max_stack of
+ * a JVM method:
+ *   - the number of arguments it is called with;
+ *   - the number of locals, which are its FORMALs and the LITs that declare
+ *     a variable (LIT 0 name);
+ *   - the most values its frame ever holds, arguments and locals included.
+ * The figures are those of the Program that runs: in interpreter mode, of the
+ * byte codes as ByteCodeLoader has prepared them, and the entry is an address
+ * in the prepared Program.
+ */
+
+public final class FrameSize {
+
+    private final String name;
+    private final int entry;
+    private final int argumentCount;
+    private final int locals;
+    private final int maxDepth;
+
+    FrameSize(String name, int entry, int argumentCount, int locals, int maxDepth) {
+        this.name = name;
+        this.entry = entry;
+        this.argumentCount = argumentCount;
+        this.locals = locals;
+        this.maxDepth = maxDepth;
+    }
+
+    /*
+     * The name of the first FUNCTION byte code it reaches; failing that the
+     * label at its entry, or "main" for the main program
+     */
+    public String getName() {
+        return name;
+    }
+
+    // The address the function is called at; 0 for the main program
+    public int getEntry() {
+        return entry;
+    }
+
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    public int getLocals() {
+        return locals;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    // The most values on the frame beyond its arguments and locals
+    public int getMaxOperandDepth() {
+        return Math.max(maxDepth - Math.max(locals, argumentCount), 0);
+    }
+
+}
@@ -0,0 +1,248 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inliner replaces each ARGS n, CALL f by a copy of the body of f, when f is
+ * a small leaf function: from its label to its RETURN, f must run straight
+ * through, with no jumps, calls or HALT, and hold at most the budget of byte
+ * codes that do something at run time.  Such a function cannot call itself,
+ * and has the one RETURN.  ByteCodeLoader runs it on every Program loaded in
+ * interpreter mode, first of all; the debugger never inlines,
+ * so its breakpoints and its FUNCTION and LINE information stay exact.
+ *
+ * The arguments are left where ARGS would have started the frame of f, so the
+ * copy works on the slots the frame of f would have had: each LOAD and STORE
+ * offset is moved up by the depth of the caller's frame at the start of the
+ * arguments, which the Verifier provides.  The RETURN becomes a STORE of the
+ * result into the first of those slots and a POP of the rest, which leaves
+ * the stack as the RETURN would have.  LABEL, LINE, FUNCTION and FORMAL are
+ * not copied.
+ *
+ * A Program that the Verifier rejects, or that turns DUMP on, is returned
+ * unchanged.  The functions themselves are kept, for their other callers.
+ */
+
+public class Inliner {
+
+    // The default budget: the most byte codes a function may run to be inlined
+    public static final int DEFAULT_BUDGET = 12;
+
+    private final int budget;
+    private final Map<Long, List<ByteCode>> bodies = new HashMap<>();
+    private final Map<Long, Integer> returnDepths = new HashMap<>();
+
+    /**
+     * Creates an Inliner.
+     *
+     * @param budget the most byte codes, not counting the RETURN, that a
+     * function may run to be inlined; 0 turns inlining off
+     */
+    public Inliner(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Inlines the calls of the small leaf functions of a Program whose
+     * addresses have been resolved.  The codes that are not replaced are
+     * shared with the new Program and their addresses are moved to the new
+     * positions, so the given Program must not be run afterwards.
+     *
+     * @param program the loaded Program
+     * @param verifier the Verifier whose last verify() accepted the Program,
+     * or null if it rejected it
+     * @return the Program with the calls inlined
+     */
+    public Program inline(Program program, Verifier verifier) {
+        if (budget <= 0 || verifier == null) {
+            return program;
+        }
+        int size = program.getSize();
+        boolean[] targets = new boolean[size + 1];
+        int i;
+        for (i = 0; i < size; i++) {
+            ByteCode bc = program.getCode(i);
+            if (bc instanceof DumpCode && ((DumpCode) bc).getDumpState() == 1) {
+                return program;
+            }
+            if (bc instanceof JumpCode) {
+                targets[((JumpCode) bc).getTarget()] = true;
+            }
+        }
+
+        Program result = new Program();
+        int[] newAddress = new int[size + 1];
+        boolean inlined = false;
+        i = 0;
+        while (i < size) {
+            newAddress[i] = result.getSize();
+            int base = inlinableCall(program, verifier, targets, i);
+            if (base >= 0) {
+                newAddress[i + 1] = result.getSize();
+                ArgsCode args = (ArgsCode) program.getCode(i);
+                CallCode call = (CallCode) program.getCode(i + 1);
+                copyBody(result, key(call.getTarget(), args.getNumberArgs()), base);
+                inlined = true;
+                i += 2;
+            } else {
+                result.addCode(program.getCode(i));
+                i++;
+            }
+        }
+        newAddress[size] = result.getSize();
+        if (!inlined) {
+            return program;
+        }
+
+        // move the resolved addresses to the new positions
+        for (i = 0; i < result.getSize(); i++) {
+            ByteCode bc = result.getCode(i);
+            if (bc instanceof JumpCode) {
+                JumpCode jump = (JumpCode) bc;
+                jump.setTarget(newAddress[jump.getTarget()]);
+            }
+            if (bc instanceof ReturnCode && ((ReturnCode) bc).getLabel() != null) {
+                ReturnCode rcode = (ReturnCode) bc;
+                rcode.setLabelAddress(newAddress[rcode.getLabelAddress()]);
+            }
+        }
+        return result;
+    }
+
+    private static long key(int entry, int argc) {
+        return ((long) entry << 32) | argc;
+    }
+
+    /*
+     * Tells where the frame of the function called by the ARGS, CALL at the
+     * address would start, or -1 if the call is not inlined.
+     */
+    private int inlinableCall(Program program, Verifier verifier, boolean[] targets,
+            int address) {
+        if (address + 1 >= program.getSize() || targets[address + 1]
+                || !(program.getCode(address) instanceof ArgsCode)
+                || !(program.getCode(address + 1) instanceof CallCode)) {
+            return -1;
+        }
+        int depth = verifier.getCallDepth(address + 1);
+        int argc = ((ArgsCode) program.getCode(address)).getNumberArgs();
+        int entry = ((CallCode) program.getCode(address + 1)).getTarget();
+        if (depth < 0 || body(program, entry, argc) == null) {
+            return -1;
+        }
+        return depth - argc;
+    }
+
+    /*
+     * Finds the codes a function runs from its entry to its RETURN, and the
+     * depth of its frame at the RETURN, or null if it is not a small leaf
+     * function.
+     */
+    private List<ByteCode> body(Program program, int entry, int argc) {
+        long key = key(entry, argc);
+        if (bodies.containsKey(key)) {
+            return bodies.get(key);
+        }
+        List<ByteCode> body = new ArrayList<>();
+        int depth = argc;
+        int address;
+        for (address = entry; address < program.getSize(); address++) {
+            ByteCode bc = program.getCode(address);
+            int opcode = CodeTable.opcodeOf(bc);
+            if (opcode == CodeTable.RETURN) {
+                break;
+            }
+            switch (opcode) {
+                case CodeTable.LABEL:
+                case CodeTable.LINE:
+                case CodeTable.FUNCTION:
+                case CodeTable.FORMAL:
+                    continue;
+                case CodeTable.LIT:
+                case CodeTable.READ:
+                    depth++;
+                    break;
+                case CodeTable.LOAD:
+                    depth = ((LoadCode) bc).getOffset() < depth ? depth + 1 : -1;
+                    break;
+                case CodeTable.STORE:
+                    depth = ((StoreCode) bc).getOffset() < depth - 1 ? depth - 1 : -1;
+                    break;
+                case CodeTable.BOP:
+                    depth--;
+                    break;
+                case CodeTable.POP:
+                    depth -= ((PopCode) bc).getNumberOfLevels();
+                    break;
+                case CodeTable.WRITE:
+                    break;
+                default:
+                    depth = -1;
+            }
+            // the function's frame must never be popped to its start
+            if (depth < 1) {
+                body = null;
+                break;
+            }
+            body.add(bc);
+        }
+        if (body != null && (address == program.getSize() || body.size() > budget)) {
+            body = null;
+        }
+        bodies.put(key, body);
+        if (body != null) {
+            returnDepths.put(key, depth);
+        }
+        return body;
+    }
+
+    // Adds a copy of a function's body working on the frame slots from base on
+    private void copyBody(Program result, long key, int base) {
+        List<ByteCode> body = bodies.get(key);
+        int depth = returnDepths.get(key);
+        // a function that returns its only argument, as Write does, can leave it in place
+        int last = body.size() - 1;
+        while (last >= 0 && body.get(last) instanceof WriteCode) {
+            last--;
+        }
+        boolean returnsFirst = depth == 2 && last >= 0 && body.get(last) instanceof LoadCode
+                && ((LoadCode) body.get(last)).getOffset() == 0;
+        int i;
+        for (i = 0; i < body.size(); i++) {
+            ByteCode bc = body.get(i);
+            if (returnsFirst && i == last) {
+                continue;
+            }
+            if (bc instanceof LoadCode) {
+                LoadCode load = new LoadCode();
+                load.setOffset(base + ((LoadCode) bc).getOffset());
+                load.setName(((LoadCode) bc).getName());
+                result.addCode(load);
+            } else if (bc instanceof StoreCode) {
+                StoreCode store = new StoreCode();
+                store.setOffset(base + ((StoreCode) bc).getOffset());
+                store.setName(((StoreCode) bc).getName());
+                result.addCode(store);
+            } else {
+                result.addCode(bc);
+            }
+        }
+        // the RETURN: the result goes to the start of the frame, the rest is popped
+        if (depth > 1 && !returnsFirst) {
+            StoreCode store = new StoreCode();
+            store.setOffset(base);
+            result.addCode(store);
+        }
+        if (depth > 2) {
+            PopCode pop = new PopCode();
+            pop.setNumberOfLevels(depth - 2);
+            result.addCode(pop);
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package interpreter;
+
+/**
+ * InstructionLimitExceededException is thrown when a program has executed as
+ * many byte codes as it is allowed to and has not finished, usually because
+ * it is stuck in a loop that never ends.
+ */
+
+public class InstructionLimitExceededException extends InterpreterException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InstructionLimitExceededException(long limit) {
+        super("Instruction limit exceeded: the limit of " + limit + " byte codes was reached");
+    }
+
+}
@@ -0,0 +1,283 @@
+package interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * IntRunTimeStack is a primitive-specialized RunTimeStack.  The values are kept
+ * in a growable int array and the frame pointers in a second int array, so
+ * pushing and popping never boxes an Integer.
+ * Popping a frame, popping several levels and clearing the current frame only
+ * move the top index instead of removing elements one at a time.
+ * The public methods behave exactly like those of ListRunTimeStack, including the
+ * way a frame pointer is dropped when the stack is popped down to the start
+ * of that frame.
+ */
+
+public class IntRunTimeStack extends RunTimeStack {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_FRAMES = 16;
+
+    // package-private for UncheckedRunTimeStack
+    int[] values;
+    int top; // number of elements on the stack
+    int[] framePointers;
+    int frameCount; // number of entries in framePointers
+
+    public IntRunTimeStack() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates a stack with room for the given number of values, such as the
+     * maximum stack size of a Program; it still grows if it needs to.
+     *
+     * @param capacity the number of values, or 0 or less for the default
+     */
+    public IntRunTimeStack(int capacity) {
+        values = new int[capacity > 0 ? capacity : INITIAL_CAPACITY];
+        framePointers = new int[INITIAL_FRAMES];
+    }
+
+    @Override
+    public void reuseFrame(int count) {
+        int start = peekFrameStack();
+        System.arraycopy(values, top - count, values, start, count);
+        top = start + count;
+    }
+
+    // Keeps the arrays, so a stack that is reused does not grow again
+    @Override
+    public void clear() {
+        top = 0;
+        frameCount = 0;
+    }
+
+    /**
+     * Outputs the contents of the stack frame by frame, in the same format as
+     * ListRunTimeStack.dump(), without copying the frame pointers.
+     */
+    @Override
+    public void dump() {
+        if (top == 0) {
+            System.out.println("[]");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        int i, j;
+        // every frame below the top one ends where the next frame starts
+        for (i = 0; i < frameCount - 1; i++) {
+            int startIndex = framePointers[i];
+            int endIndex = framePointers[i + 1] - 1;
+            sb.append('[');
+            for (j = startIndex; j <= endIndex; j++) {
+                sb.append(values[j]);
+                if (j != endIndex) {
+                    sb.append(',');
+                }
+            }
+            sb.append("] ");
+        }
+        // print last frame (may be the only frame)
+        int lastStart = frameCount > 0 ? framePointers[frameCount - 1] : 0;
+        sb.append('[');
+        for (j = lastStart; j < top; j++) {
+            sb.append(values[j]);
+            if (j != top - 1) {
+                sb.append(',');
+            }
+        }
+        sb.append("] ");
+        System.out.println(sb);
+    }
+
+    @Override
+    public int peek() {
+        if (top == 0) {
+            stackEmpty();
+        }
+        return values[top - 1];
+    }
+
+    @Override
+    public int pop() {
+        if (top == 0) {
+            stackEmpty();
+        }
+        int removedItem = values[--top];
+        if (frameCount > 0 && top == framePointers[frameCount - 1]) {
+            frameCount--;
+        }
+        return removedItem;
+    }
+
+    @Override
+    public int push(int pushItem) {
+        if (top == 0 && frameCount == 0) {
+            newFrameAt(0);
+        }
+        if (top == values.length) {
+            values = Arrays.copyOf(values, top << 1);
+        }
+        values[top++] = pushItem;
+        return pushItem;
+    }
+
+    /**
+     * Pushes an element without creating the initial frame, as
+     * ListRunTimeStack.push(Integer) does; used when a frame is restored on
+     * rollback.
+     */
+    @Override
+    public Integer push(Integer i) {
+        if (top == values.length) {
+            values = Arrays.copyOf(values, top << 1);
+        }
+        values[top++] = i;
+        return peek();
+    }
+
+    /**
+     * Saves the top item of the stack, drops the top frame by moving the top
+     * index back to the start of the frame, and places the saved item atop the
+     * next frame.
+     *
+     * @return the top of the stack prior to popping the frame
+     */
+    @Override
+    public int popFrame() {
+        int topOfStack = peek();
+        int stopAtIndex = peekFrameStack();
+        if (top > stopAtIndex) {
+            top = stopAtIndex;
+            frameCount--;
+        }
+        return push(topOfStack);
+    }
+
+    /**
+     * Pops the given number of levels off the stack.  Every frame whose start
+     * is passed on the way down is dropped, as if the levels had been popped
+     * one at a time.
+     *
+     * @param levels the number of items to pop from the stack
+     */
+    @Override
+    public void popLevels(int levels) {
+        if (levels > top) {
+            stackEmpty();
+        }
+        int newTop = top - levels;
+        int previous = top;
+        while (frameCount > 0) {
+            int start = framePointers[frameCount - 1];
+            if (start < newTop || start >= previous) {
+                break;
+            }
+            frameCount--;
+            previous = start;
+        }
+        top = newTop;
+    }
+
+    @Override
+    public int store(int offset) {
+        int returnValue = pop(); // removes top item of the stack
+        setValueAt(peekFrameStack() + offset, returnValue);
+        return returnValue;
+    }
+
+    @Override
+    public int getValueAt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    @Override
+    public void setValueAt(int offset, int newValue) {
+        checkIndex(offset);
+        values[offset] = newValue;
+    }
+
+    @Override
+    public int load(int offset) {
+        return push(getValueAt(peekFrameStack() + offset));
+    }
+
+    @Override
+    public int sizeOfRunStack() {
+        return top;
+    }
+
+    @Override
+    public ArrayList<Integer> topFrameElements() {
+        ArrayList<Integer> topFrameElements = new ArrayList<>();
+        int i;
+        for (i = peekFrameStack(); i < top; i++) {
+            topFrameElements.add(values[i]);
+        }
+        return topFrameElements;
+    }
+
+    /**
+     * Clears the elements from the current frame (for use during rollback)
+     */
+    @Override
+    public void clearCurrentFrameElements() {
+        top = peekFrameStack();
+    }
+
+    @Override
+    public String topFrameAsString() {
+        StringBuilder sb = new StringBuilder("(");
+        int i;
+        for (i = peekFrameStack(); i < top; i++) {
+            sb.append(values[i]);
+            if (i != top - 1) {
+                sb.append(',');
+            }
+        }
+        return sb.append(')').toString();
+    }
+
+    @Override
+    public int popFrameStack() {
+        if (frameCount == 0) {
+            frameStackEmpty();
+        }
+        return framePointers[--frameCount];
+    }
+
+    @Override
+    public int peekFrameStack() {
+        if (frameCount == 0) {
+            frameStackEmpty();
+        }
+        return framePointers[frameCount - 1];
+    }
+
+    @Override
+    public void newFrameAt(int startIndex) {
+        if (frameCount == framePointers.length) {
+            framePointers = Arrays.copyOf(framePointers, frameCount << 1);
+        }
+        framePointers[frameCount++] = startIndex;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= top) {
+            throw new RunTimeStackException("RunTimeStack error! Index " + index
+                    + " is outside the stack.");
+        }
+    }
+
+    private void stackEmpty() {
+        throw new RunTimeStackException("RunTimeStack error! Stack is empty.");
+    }
+
+    private void frameStackEmpty() {
+        throw new RunTimeStackException("Error! The framePointers stack is empty.");
+    }
+
+} // end class
@@ -1,77 +1,415 @@
 package interpreter;
 
 import debugger.DebugVirtualMachine;
+import interpreter.compiler.CompiledVirtualMachine;
+import interpreter.compiler.TieredVirtualMachine;
+import interpreter.io.EndOfInputException;
+import interpreter.io.InputSource;
+import interpreter.io.MappedBinaryInputSource;
+import interpreter.io.BinaryOutputSink;
+import interpreter.io.MappedTextInputSource;
+import interpreter.io.OutputSink;
+import interpreter.io.StreamInputSource;
+import interpreter.io.TextOutputSink;
+import interpreter.register.RegisterVirtualMachine;
+import interpreter.service.BatchRunner;
+import interpreter.trace.TraceWriter;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  *  The interpreter defined by this class performs all initializations, loads the bytecodes, and runs the VM.
  */
 public class Interpreter {
 
+    // The execution engines that can run a program in interpreter mode
+    enum Engine {
+        STANDARD, // VirtualMachine, which calls execute() on each ByteCode
+        FAST,     // FastVirtualMachine, a switch loop over a CompactProgram
+        COMPILED, // CompiledVirtualMachine, which runs the program as JVM bytecode
+        TIERED,   // TieredVirtualMachine, which compiles the hot functions and loops
+        REGISTER  // RegisterVirtualMachine, which runs the program as three-address code
+    }
+
     ByteCodeLoader bcl;
+    Engine engine = Engine.STANDARD;
+    boolean optimize = false; // run the PeepholeOptimizer before execution
+    boolean verify = false; // check the program with the Verifier before execution
+    int inlineBudget = Inliner.DEFAULT_BUDGET; // of the Inliner, 0 to turn it off
+    int tierThreshold = TieredVirtualMachine.DEFAULT_THRESHOLD;
+    int maxCallDepth = CallStack.DEFAULT_MAX_DEPTH;
+    boolean batch = false;   // READ and WRITE without prompts, buffered
+    String inputFile = null; // batch input file, standard input if null
+    boolean binaryInput = false; // the input file holds little-endian int32s
+    boolean binaryOutput = false; // the output file gets little-endian int32s
+    String outputFile = null; // batch output file, standard output if null
+    String traceFile = null; // binary trace in place of the dump, if set
+    int readsPerRun = 0; // if positive, one run per that many integers, in parallel
+    int memoSize = 0; // if positive, the capacity of the MemoCache of each VM
+    PurityAnalysis purity; // of the program, if calls are memoized
 
     // constructor for interpreter mode
     public Interpreter(String xCodFile) {
-	try {
-		CodeTable.init();
-		bcl = new ByteCodeLoader(xCodFile);
-	} catch (IOException e) {
-		System.out.println("**** " + e);
-       	}
+        this(xCodFile, CodeTable.INTERPRETER);
     }
     
     // constructor for debugger mode
     public Interpreter(String xCodFile, boolean isDebugMode) {
-        this(xCodFile); 
-        CodeTable.initDebugCodes();
+        this(xCodFile, isDebugMode ? CodeTable.DEBUGGER : CodeTable.INTERPRETER);
+    }
+    
+    private Interpreter(String xCodFile, CodeTable codeTable) {
+	try {
+		bcl = new ByteCodeLoader(xCodFile, codeTable);
+	} catch (IOException e) {
+		System.out.println("**** " + e);
+       	}
     }
 
     // Overloaded run method for interpreter mode   
     void run() {
+        bcl.setOptimize(optimize);
+        bcl.setVerify(verify);
+        bcl.setInlineBudget(inlineBudget);
 	Program program = bcl.loadCodes();
-        VirtualMachine vm = new VirtualMachine(program);
-	vm.executeProgram();
+        if (memoSize > 0) {
+            purity = new PurityAnalysis(program);
+        }
+        if (readsPerRun > 0) {
+            executeInParallel(program);
+            return;
+        }
+        VirtualMachine vm = createVirtualMachine(program);
+        if (traceFile == null) {
+            execute(vm);
+            return;
+        }
+        try (TraceWriter trace = new TraceWriter(program, Path.of(traceFile),
+                bcl.getChecksum())) {
+            vm.setTracer(trace);
+            execute(vm);
+        } catch (IOException e) {
+            System.out.println("**** " + e);
+            System.exit(1);
+        }
+    }
+    
+    // Runs the program with console or batch I/O
+    private void execute(VirtualMachine vm) {
+        if (!batch) {
+            runToEnd(vm);
+            return;
+        }
+        // closing the output flushes it, however the program ends
+        try (InputSource input = openInputSource();
+                OutputSink output = openOutputSink()) {
+            vm.setInputSource(input);
+            vm.setOutputSink(output);
+            runToEnd(vm);
+        } catch (IOException e) {
+            System.out.println("**** " + e);
+            System.exit(1);
+        }
+    }
+    
+    // Runs the program once for each record of the batch input
+    private void executeInParallel(Program program) {
+        BatchRunner runner = new BatchRunner(program, readsPerRun, ForkJoinPool.commonPool(),
+                this::createVirtualMachine);
+        try (InputSource input = openInputSource();
+                OutputSink output = openOutputSink()) {
+            runner.run(input, output);
+        } catch (IOException e) {
+            System.out.println("**** " + e);
+            System.exit(1);
+        }
+    }
+    
+    // Runs the program until it halts or its input ends
+    private static void runToEnd(VirtualMachine vm) {
+        try {
+            vm.executeProgram();
+        } catch (EndOfInputException e) {
+            // the program ends with its input
+        }
+    }
+    
+    // Standard input is read as a stream; an input file is memory-mapped
+    private InputSource openInputSource() throws IOException {
+        if (inputFile == null) {
+            return new StreamInputSource(System.in, false);
+        }
+        if (binaryInput) {
+            return new MappedBinaryInputSource(Path.of(inputFile));
+        }
+        return new MappedTextInputSource(Path.of(inputFile));
+    }
+    
+    // Standard output is shared with the dump, so it is never closed
+    private OutputSink openOutputSink() throws IOException {
+        if (outputFile == null) {
+            return new TextOutputSink(System.out, false);
+        }
+        if (binaryOutput) {
+            return new BinaryOutputSink(Path.of(outputFile));
+        }
+        return new TextOutputSink(new FileOutputStream(outputFile), true);
+    }
+    
+    // Creates and sets up the virtual machine of the selected engine for interpreter mode
+    private VirtualMachine createVirtualMachine(Program program) {
+        VirtualMachine vm;
+        switch (engine) {
+            case FAST:
+                vm = new FastVirtualMachine(program);
+                break;
+            case COMPILED:
+                vm = new CompiledVirtualMachine(program);
+                break;
+            case TIERED:
+                vm = new TieredVirtualMachine(program, tierThreshold);
+                break;
+            case REGISTER:
+                vm = new RegisterVirtualMachine(program);
+                break;
+            default:
+                vm = new VirtualMachine(program);
+        }
+        vm.setMaxCallDepth(maxCallDepth);
+        if (purity != null) {
+            vm.setMemoCache(new MemoCache(purity, memoSize));
+        }
+        return vm;
     }
     
     // Overloaded run method for debugger mode
     void run(String sourceFile) {
         Program program = bcl.loadCodes();
         VirtualMachine vm = new DebugVirtualMachine(program, sourceFile);
-        vm.executeProgram();
+        runToEnd(vm);
     }
 
     // This main method is the driver of the interpreter in either mode.
     public static void main(String args[]) {
         
-        if (args.length == 0) {
-            System.out.println("***Incorrect command.");
-                        System.out.println("For debugger mode, enter java -jar "
-                                + "Interpreter.jar -d <filename>");
-                        System.out.println("For interpreter mode, enter java -jar "
-                                + "Interpreter.jar <filemame>.x <filename>.x.cod");
-                        System.exit(1);
+        // separate the options from the file arguments
+        Engine engine = Engine.STANDARD;
+        boolean optimize = false;
+        boolean verify = false;
+        int inlineBudget = Inliner.DEFAULT_BUDGET;
+        int tierThreshold = TieredVirtualMachine.DEFAULT_THRESHOLD;
+        int maxCallDepth = CallStack.DEFAULT_MAX_DEPTH;
+        boolean batch = false;
+        String inputFile = null, outputFile = null;
+        boolean binaryInput = false, binaryOutput = false;
+        String traceFile = null;
+        int readsPerRun = 0;
+        int memoSize = 0;
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                try {
+                    engine = Engine.valueOf(arg.substring("--engine=".length())
+                            .toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Unknown engine: " + arg);
+                    printUsageAndExit();
+                }
+            }
+            else if (arg.equals("--optimize")) {
+                optimize = true;
+            }
+            else if (arg.equals("--verify")) {
+                verify = true;
+            }
+            else if (arg.startsWith("--inline-budget=")) {
+                try {
+                    inlineBudget = Integer.parseInt(
+                            arg.substring("--inline-budget=".length()));
+                } catch (NumberFormatException e) {
+                    inlineBudget = -1;
+                }
+                if (inlineBudget < 0) {
+                    System.out.println("Invalid inline budget: " + arg);
+                    printUsageAndExit();
+                }
+            }
+            else if (arg.startsWith("--tier-threshold=")) {
+                try {
+                    tierThreshold = Integer.parseInt(
+                            arg.substring("--tier-threshold=".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid threshold: " + arg);
+                    printUsageAndExit();
+                }
+            }
+            else if (arg.startsWith("--max-call-depth=")) {
+                try {
+                    maxCallDepth = Integer.parseInt(
+                            arg.substring("--max-call-depth=".length()));
+                } catch (NumberFormatException e) {
+                    maxCallDepth = 0;
+                }
+                if (maxCallDepth < 1) {
+                    System.out.println("Invalid maximum call depth: " + arg);
+                    printUsageAndExit();
+                }
+            }
+            else if (arg.startsWith("--memoize=")) {
+                try {
+                    memoSize = Integer.parseInt(arg.substring("--memoize=".length()));
+                } catch (NumberFormatException e) {
+                    memoSize = 0;
+                }
+                if (memoSize < 1) {
+                    System.out.println("Invalid memo cache size: " + arg);
+                    printUsageAndExit();
+                }
+            }
+            else if (arg.startsWith("--trace=")) {
+                traceFile = arg.substring("--trace=".length());
+            }
+            else if (arg.equals("--batch")) {
+                batch = true;
+            }
+            else if (arg.startsWith("--input=")) {
+                batch = true;
+                inputFile = arg.substring("--input=".length());
+            }
+            else if (arg.startsWith("--input-format=")) {
+                String format = arg.substring("--input-format=".length());
+                if (!format.equals("text") && !format.equals("binary")) {
+                    System.out.println("Unknown input format: " + arg);
+                    printUsageAndExit();
+                }
+                binaryInput = format.equals("binary");
+            }
+            else if (arg.startsWith("--output-format=")) {
+                String format = arg.substring("--output-format=".length());
+                if (!format.equals("text") && !format.equals("binary")) {
+                    System.out.println("Unknown output format: " + arg);
+                    printUsageAndExit();
+                }
+                binaryOutput = format.equals("binary");
+            }
+            else if (arg.startsWith("--parallel=")) {
+                batch = true;
+                try {
+                    readsPerRun = Integer.parseInt(arg.substring("--parallel=".length()));
+                } catch (NumberFormatException e) {
+                    readsPerRun = 0;
+                }
+                if (readsPerRun < 1) {
+                    System.out.println("Invalid number of reads per run: " + arg);
+                    printUsageAndExit();
+                }
+            }
+            else if (arg.startsWith("--output=")) {
+                batch = true;
+                outputFile = arg.substring("--output=".length());
+            }
+            else {
+                files.add(arg);
+            }
+        }
+        if (files.size() < 2) {
+            printUsageAndExit();
+        }
+        if (binaryInput && inputFile == null) {
+            System.out.println("Binary input must be read from an --input file.");
+            printUsageAndExit();
+        }
+        if (binaryOutput && outputFile == null) {
+            System.out.println("Binary output must be written to an --output file.");
+            printUsageAndExit();
+        }
+        if (readsPerRun > 0 && traceFile != null) {
+            System.out.println("A trace cannot be recorded of parallel runs.");
+            printUsageAndExit();
         }
         String xFile, codFile;
         try {
-            if (args[0].equals("-d")) {
-                String file = args[1];
+            if (files.get(0).equals("-d")) {
+                String file = files.get(1);
                 xFile = file + ".x"; 
                 codFile = file + ".x.cod";  
                 // call the appropriate constructor for either debugger or interpreter modes
                 new Interpreter(codFile,true).run(xFile);
             }
             else {
-                (new Interpreter(args[1])).run();
+                Interpreter interpreter = new Interpreter(files.get(1));
+                interpreter.engine = engine;
+                interpreter.optimize = optimize;
+                interpreter.verify = verify;
+                interpreter.inlineBudget = inlineBudget;
+                interpreter.tierThreshold = tierThreshold;
+                interpreter.maxCallDepth = maxCallDepth;
+                interpreter.batch = batch;
+                interpreter.inputFile = inputFile;
+                interpreter.binaryInput = binaryInput;
+                interpreter.binaryOutput = binaryOutput;
+                interpreter.traceFile = traceFile;
+                interpreter.outputFile = outputFile;
+                interpreter.readsPerRun = readsPerRun;
+                interpreter.memoSize = memoSize;
+                interpreter.run();
             }
         } catch (NumberFormatException e) {
             System.out.println(e);
-            System.out.println("***Incorrect command.");
-            System.out.println("For debugger mode, enter java -jar "
-                    + "Interpreter.jar -d <filename>");
-            System.out.println("For interpreter mode, enter java -jar "
-                    + "Interpreter.jar <filemame>.x <filename>.x.cod");
+            printUsageAndExit();
+        } catch (ProgramLoadException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        } catch (InterpreterException | InputMismatchException | UncheckedIOException e) {
+            System.out.println(e.getMessage());
+            System.out.println("The program will terminate.");
             System.exit(1);
         }
     }
+    
+    private static void printUsageAndExit() {
+        System.out.println("***Incorrect command.");
+        System.out.println("For debugger mode, enter java -jar "
+                + "Interpreter.jar -d <filename>");
+        System.out.println("For interpreter mode, enter java -jar "
+                + "Interpreter.jar [options] <filemame>.x <filename>.x.cod");
+        System.out.println("Interpreter mode options:");
+        System.out.println("  --engine=standard|fast|compiled|tiered|register");
+        System.out.println("                           selects the execution engine");
+        System.out.println("  --optimize               runs the peephole optimizer before execution");
+        System.out.println("  --verify                 checks the stack use of the program before");
+        System.out.println("                           execution, rejecting it if it is invalid, and");
+        System.out.println("                           then runs it without the stack's checks");
+        System.out.println("  --inline-budget=n        inlines the small functions that run at most");
+        System.out.println("                           n byte codes (default " + Inliner.DEFAULT_BUDGET
+                + "); 0 turns inlining off");
+        System.out.println("  --tier-threshold=n       calls or loop iterations before the tiered");
+        System.out.println("                           engine compiles a function or loop");
+        System.out.println("  --max-call-depth=n       the most nested function calls allowed");
+        System.out.println("  --memoize=n              remembers the results of up to n calls of");
+        System.out.println("                           pure functions, reusing them for calls with");
+        System.out.println("                           the same arguments");
+        System.out.println("  --trace=file             records the dump in binary form in the file;");
+        System.out.println("                           see interpreter.trace.TraceDecoder");
+        System.out.println("  --batch                  reads and writes integers without prompts,");
+        System.out.println("                           one per line, until the input ends");
+        System.out.println("  --input=file             batch mode, reading from the file");
+        System.out.println("  --input-format=text|binary");
+        System.out.println("                           whether the input file holds text or");
+        System.out.println("                           little-endian 32-bit integers");
+        System.out.println("  --parallel=n             batch mode, running the program once for");
+        System.out.println("                           every n integers of input, in parallel");
+        System.out.println("  --output=file            batch mode, writing to the file");
+        System.out.println("  --output-format=text|binary");
+        System.out.println("                           whether the output file gets text or");
+        System.out.println("                           little-endian 32-bit integers");
+        System.exit(1);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package interpreter;
+
+/**
+ * InterpreterException is the base class of the errors that end a program
+ * before it halts, such as an operation on an empty RunTimeStack.  They are
+ * thrown rather than ending the process, so a program that fails does not
+ * take down other programs running in the same JVM; the command line
+ * Interpreter reports them and exits.
+ */
+
+public class InterpreterException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InterpreterException(String message) {
+        super(message);
+    }
+
+    public InterpreterException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
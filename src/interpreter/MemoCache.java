@@ -0,0 +1,159 @@
+package interpreter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MemoCache remembers the results of calls of pure functions (see
+ * PurityAnalysis), so that a later call with the same arguments skips the
+ * body of the function: the frame that ARGS created is replaced by the result
+ * at once, as RETURN would do.  It holds at most a given number of results
+ * and forgets the least recently used one first, and it counts its hits and
+ * misses.
+ *
+ * A cache is set on a VirtualMachine with setMemoCache(), and only calls the
+ * VirtualMachine interprets consult it; calls made by compiled code do not.
+ * While DUMP is on the cache is not consulted, so the dump shows every call.
+ * A MemoCache may serve one VirtualMachine at a time, and outlives reset(),
+ * so the runs of a BatchRunner thread share their results.
+ */
+
+public class MemoCache {
+
+    private final PurityAnalysis purity;
+    private final int capacity;
+    private final LinkedHashMap<Key, Integer> results;
+    private long hits = 0;
+    private long misses = 0;
+    // the calls whose results are to be remembered when they return, and their call depths
+    private Key[] pendingKeys = new Key[16];
+    private int[] pendingDepths = new int[16];
+    private int pendingCount = 0;
+
+    // The arguments of a call of a function
+    static final class Key {
+        private final int entry;
+        private final int[] args;
+        private final int hash;
+
+        Key(int entry, int[] args) {
+            this.entry = entry;
+            this.args = args;
+            hash = 31 * entry + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return entry == other.entry && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // Analyzes the Program for a cache of its own
+    public MemoCache(Program program, int capacity) {
+        this(new PurityAnalysis(program), capacity);
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param purity the analysis of the Program the cache is for, which
+     * several caches may share
+     * @param capacity the most results the cache holds
+     */
+    public MemoCache(PurityAnalysis purity, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of a MemoCache must be positive");
+        }
+        this.purity = purity;
+        this.capacity = capacity;
+        results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+                return size() > MemoCache.this.capacity;
+            }
+        };
+    }
+
+    public Program getProgram() {
+        return purity.getProgram();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // The number of results held
+    public int size() {
+        return results.size();
+    }
+
+    // The number of calls answered from the cache
+    public long getHits() {
+        return hits;
+    }
+
+    // The number of calls of pure functions that ran because their result was not held
+    public long getMisses() {
+        return misses;
+    }
+
+    // Forgets the results and sets the counters to 0
+    public void clear() {
+        results.clear();
+        hits = 0;
+        misses = 0;
+        pendingCount = 0;
+    }
+
+    // The number of arguments of the CALL at the address, or -1 if it is not memoized
+    int argumentsAt(int address) {
+        return purity.getMemoizableArgs(address);
+    }
+
+    /*
+     * Looks up a call; on a miss the call is expected to return at the given
+     * call depth, when returned() is told its result.
+     */
+    Integer lookup(Key key, int depth) {
+        Integer result = results.get(key);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        misses++;
+        if (pendingCount == pendingKeys.length) {
+            pendingKeys = Arrays.copyOf(pendingKeys, pendingCount << 1);
+            pendingDepths = Arrays.copyOf(pendingDepths, pendingCount << 1);
+        }
+        pendingKeys[pendingCount] = key;
+        pendingDepths[pendingCount++] = depth;
+        return null;
+    }
+
+    // Called by every RETURN from the given call depth
+    void returned(int depth, int result) {
+        if (pendingCount > 0 && pendingDepths[pendingCount - 1] == depth) {
+            results.put(pendingKeys[--pendingCount], result);
+            pendingKeys[pendingCount] = null;
+        }
+    }
+
+    /* Forgets the calls in progress, when a program begins or a run ends with
+     * an exception before they return
+     */
+    void forgetPending() {
+        Arrays.fill(pendingKeys, 0, pendingCount, null);
+        pendingCount = 0;
+    }
+
+}
@@ -0,0 +1,106 @@
+package interpreter;
+
+/**
+ * Operator enumerates the binary operators of the BOP byte code.  A BopCode
+ * resolves its operator once, when it is initialized, so executing a BOP never
+ * has to look at the operator's text.
+ * The operators are grouped into families (arithmetic, comparison and logical);
+ * the loader gives each family a BopCode of its own, and the compilers use the
+ * family to choose the instructions they emit.
+ */
+
+public enum Operator {
+
+    ADD("+", Family.ARITHMETIC),
+    SUBTRACT("-", Family.ARITHMETIC),
+    MULTIPLY("*", Family.ARITHMETIC),
+    DIVIDE("/", Family.ARITHMETIC),
+    EQUAL("==", Family.COMPARISON),
+    NOT_EQUAL("!=", Family.COMPARISON),
+    LESS_OR_EQUAL("<=", Family.COMPARISON),
+    LESS("<", Family.COMPARISON),
+    GREATER_OR_EQUAL(">=", Family.COMPARISON),
+    GREATER(">", Family.COMPARISON),
+    OR("|", Family.LOGICAL),
+    AND("&", Family.LOGICAL);
+
+    public enum Family {
+        ARITHMETIC, COMPARISON, LOGICAL
+    }
+
+    private static final Operator[] OPERATORS = values();
+
+    private final String symbol;
+    private final Family family;
+
+    Operator(String symbol, Family family) {
+        this.symbol = symbol;
+        this.family = family;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Family getFamily() {
+        return family;
+    }
+
+    /**
+     * Looks up the operator written as the argument of a BOP byte code.
+     *
+     * @param symbol the operator text, such as "+" or "<="
+     * @return the operator
+     * @throws IllegalArgumentException if the operator is not recognized
+     */
+    public static Operator fromSymbol(String symbol) {
+        for (Operator op : OPERATORS) {
+            if (op.symbol.equals(symbol)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("Operation not recognized: " + symbol);
+    }
+
+    // Returns the operator whose ordinal is given, as stored in a CompactProgram
+    public static Operator fromOrdinal(int ordinal) {
+        return OPERATORS[ordinal];
+    }
+
+    /**
+     * Applies the operator to the top two elements of the stack.
+     *
+     * @param firstOperand the element that was on top of the stack
+     * @param secondOperand the element below it
+     * @return the result to push; comparisons and logical operators give 1 or 0
+     */
+    public int apply(int firstOperand, int secondOperand) {
+        switch (this) {
+            case ADD:
+                return secondOperand + firstOperand;
+            case SUBTRACT:
+                return secondOperand - firstOperand;
+            case MULTIPLY:
+                return secondOperand * firstOperand;
+            case DIVIDE:
+                return secondOperand / firstOperand;
+            case EQUAL:
+                return secondOperand == firstOperand ? 1 : 0;
+            case NOT_EQUAL:
+                return secondOperand != firstOperand ? 1 : 0;
+            case LESS_OR_EQUAL:
+                return secondOperand <= firstOperand ? 1 : 0;
+            case LESS:
+                return secondOperand < firstOperand ? 1 : 0;
+            case GREATER_OR_EQUAL:
+                return secondOperand >= firstOperand ? 1 : 0;
+            case GREATER:
+                return secondOperand > firstOperand ? 1 : 0;
+            case OR:
+                return secondOperand != 0 || firstOperand != 0 ? 1 : 0;
+            default:
+                return secondOperand != 0 && firstOperand != 0 ? 1 : 0;
+        }
+    }
+
+}
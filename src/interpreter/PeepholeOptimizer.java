@@ -0,0 +1,200 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * PeepholeOptimizer rewrites a loaded Program before it runs.  It is only
+ * used in interpreter mode, and only when it has been turned on; the debugger
+ * needs the byte codes exactly as the compiler emitted them.
+ * The passes, in order:
+ * 1. Constant folding: LIT a, LIT b, BOP op becomes a single LIT, in a
+ *    Program that the Verifier has accepted.
+ * 2. Fused compare-and-branch: BOP op, FALSEBRANCH label becomes a
+ *    BopFalseBranchCode.
+ * 3. Jump threading: a jump to a GOTO jumps straight to the GOTO's label.
+ * 4. LABEL, LINE, FUNCTION and FORMAL, which do nothing at runtime outside
+ *    the debugger, are removed and the jumps are resolved to the addresses
+ *    of the instructions that followed the removed labels.
+ *
+ * The first three passes work on symbolic labels, and a LABEL ends every
+ * pattern, so no jump can land inside a rewritten sequence.
+ * A program that turns DUMP on is returned unchanged, since its output shows
+ * every byte code that runs.
+ *
+ * The BOP of a fold pops twice; in a function whose frame held nothing below
+ * the two literals, the second pop drops the frame (see RunTimeStack), and
+ * the single LIT would not.  The Verifier rejects a Program that can do that,
+ * so the constants of a Program it has not accepted are left alone.
+ */
+
+public class PeepholeOptimizer {
+
+    /**
+     * Optimizes a Program whose codes came from a ByteCodeLoader.  The codes
+     * that are kept are shared with the new Program and their addresses
+     * resolved again, so the given Program must not be run afterwards.
+     *
+     * @param program the loaded Program
+     * @param verified whether the Verifier has accepted the Program
+     * @return the optimized Program
+     */
+    public Program optimize(Program program, boolean verified) {
+        ArrayList<ByteCode> codes = new ArrayList<>();
+        int i;
+        for (i = 0; i < program.getSize(); i++) {
+            ByteCode bc = program.getCode(i);
+            if (bc instanceof DumpCode && ((DumpCode) bc).getDumpState() == 1) {
+                return program;
+            }
+            codes.add(bc);
+        }
+        if (verified) {
+            codes = foldConstants(codes);
+        }
+        codes = fuseCompareAndBranch(codes);
+        threadJumps(codes);
+        return removeNoOpCodes(codes);
+    }
+
+    /*
+     * Replaces LIT a, LIT b, BOP op with LIT (a op b).  The result of a fold
+     * can take part in the next one, so LIT 1, LIT 2, BOP +, LIT 3, BOP *
+     * becomes LIT 9.  Named LITs declare variables and are never folded, nor
+     * is a division by zero, which must still fail when it runs.
+     */
+    private ArrayList<ByteCode> foldConstants(ArrayList<ByteCode> codes) {
+        ArrayList<ByteCode> folded = new ArrayList<>();
+        for (ByteCode bc : codes) {
+            int size = folded.size();
+            if (bc instanceof BopCode && size >= 2
+                    && isConstant(folded.get(size - 2))
+                    && isConstant(folded.get(size - 1))) {
+                Operator op = ((BopCode) bc).getOperator();
+                int secondOperand = ((LitCode) folded.get(size - 2)).getValue();
+                int topOperand = ((LitCode) folded.get(size - 1)).getValue();
+                if (op != Operator.DIVIDE || topOperand != 0) {
+                    LitCode lit = new LitCode();
+                    lit.setValue(op.apply(topOperand, secondOperand));
+                    folded.remove(size - 1);
+                    folded.set(size - 2, lit);
+                    continue;
+                }
+            }
+            folded.add(bc);
+        }
+        return folded;
+    }
+
+    private boolean isConstant(ByteCode bc) {
+        return bc instanceof LitCode && ((LitCode) bc).getName() == null;
+    }
+
+    // Replaces BOP op, FALSEBRANCH label with a single BopFalseBranchCode
+    private ArrayList<ByteCode> fuseCompareAndBranch(ArrayList<ByteCode> codes) {
+        ArrayList<ByteCode> fused = new ArrayList<>();
+        int i;
+        for (i = 0; i < codes.size(); i++) {
+            ByteCode bc = codes.get(i);
+            if (bc instanceof BopCode && i + 1 < codes.size()
+                    && codes.get(i + 1) instanceof FalseBranchCode) {
+                fused.add(new BopFalseBranchCode(((BopCode) bc).getOperator(),
+                        ((FalseBranchCode) codes.get(i + 1)).getLabel()));
+                i++;
+                continue;
+            }
+            fused.add(bc);
+        }
+        return fused;
+    }
+
+    /*
+     * Retargets every GOTO, FALSEBRANCH and compare-and-branch whose label is
+     * followed by a GOTO to that GOTO's label, repeatedly.  A cycle of GOTOs
+     * is left alone.
+     */
+    private void threadJumps(ArrayList<ByteCode> codes) {
+        HashMap<String, Integer> labels = new HashMap<>();
+        int i;
+        for (i = 0; i < codes.size(); i++) {
+            if (codes.get(i) instanceof LabelCode) {
+                labels.put(((LabelCode) codes.get(i)).getLabel(), i);
+            }
+        }
+        for (i = 0; i < codes.size(); i++) {
+            ByteCode bc = codes.get(i);
+            if (!(bc instanceof JumpCode) || bc instanceof CallCode) {
+                continue;
+            }
+            JumpCode jump = (JumpCode) bc;
+            String label = jump.getLabel();
+            HashSet<String> visited = new HashSet<>();
+            while (visited.add(label)) {
+                ByteCode next = firstCodeAt(codes, labels.get(label));
+                if (!(next instanceof GoToCode)) {
+                    break;
+                }
+                label = ((GoToCode) next).getLabel();
+            }
+            if (!label.equals(jump.getLabel())) {
+                if (bc instanceof GoToCode) {
+                    GoToCode threaded = new GoToCode();
+                    threaded.setLabel(label);
+                    codes.set(i, threaded);
+                } else if (bc instanceof FalseBranchCode) {
+                    FalseBranchCode threaded = new FalseBranchCode();
+                    threaded.setLabel(label);
+                    codes.set(i, threaded);
+                } else {
+                    BopFalseBranchCode fused = (BopFalseBranchCode) bc;
+                    codes.set(i, new BopFalseBranchCode(fused.getOperator(), label));
+                }
+            }
+        }
+    }
+
+    // Returns the first code at or after the index that does something at runtime
+    private ByteCode firstCodeAt(ArrayList<ByteCode> codes, Integer index) {
+        if (index == null) {
+            return null;
+        }
+        int i;
+        for (i = index; i < codes.size(); i++) {
+            if (!isNoOp(codes.get(i))) {
+                return codes.get(i);
+            }
+        }
+        return null;
+    }
+
+    private boolean isNoOp(ByteCode bc) {
+        return bc instanceof LabelCode || bc instanceof LineCode
+                || bc instanceof FunctionCode || bc instanceof FormalCode;
+    }
+
+    /*
+     * Removes the codes that do nothing at runtime.  Each label is mapped to
+     * the address of the first instruction kept after it, and the addresses
+     * of the new Program are resolved with that map.
+     */
+    private Program removeNoOpCodes(ArrayList<ByteCode> codes) {
+        Program optimized = new Program();
+        HashMap<String, Integer> labels = new HashMap<>();
+        int address = 0;
+        for (ByteCode bc : codes) {
+            if (bc instanceof LabelCode) {
+                labels.put(((LabelCode) bc).getLabel(), address);
+            }
+            if (!isNoOp(bc)) {
+                optimized.addCode(bc);
+                address++;
+            }
+        }
+        optimized.resolveAddresses(labels);
+        return optimized;
+    }
+
+}
@@ -4,23 +4,39 @@ package interpreter;
 import interpreter.bytecode.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Program class manages the Program file, an ArrayList that contains
  * each instance of the concrete byte code classes. It also has a method
  * to resolve symbolic addresses into numeric locations within the ArrayList
  * that correspond to the associated label.
+ *
+ * Once loaded, a Program is frozen: no code can be added, no address
+ * resolved again, and its byte codes cannot be changed, so one Program can be
+ * shared by VirtualMachines running on different threads.
+ *
+ * A Program that the Verifier has accepted is marked as verified before it
+ * is frozen; the VirtualMachine then runs it on a RunTimeStack that leaves
+ * out the checks the Verifier has made unnecessary.  The sizes of the frames
+ * that the Verifier finds are kept as well, whether or not it is marked.
  */
 
 public class Program {
     private ArrayList<ByteCode> codes;
+    private boolean frozen = false;
+    private boolean verified = false;
+    private List<FrameSize> frameSizes = Collections.emptyList();
+    private int maxStackSize = -1;
 
     public Program() {
         codes = new ArrayList<>();
     }
 
     public void addCode(ByteCode b) {
+        checkNotFrozen();
         codes.add(b);
     }
 
@@ -29,6 +45,74 @@ public class Program {
         return bc;
     }
 
+    public int getSize() {
+        return codes.size();
+    }
+
+    /**
+     * Makes the Program and its byte codes read-only.  ByteCodeLoader calls
+     * this once the Program has been resolved and prepared for execution.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        codes.trimToSize();
+        for (ByteCode bc : codes) {
+            bc.freeze();
+        }
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    // Called by ByteCodeLoader once the Verifier has accepted the Program
+    void markVerified() {
+        checkNotFrozen();
+        verified = true;
+    }
+
+    public boolean isVerified() {
+        return verified;
+    }
+
+    // Called by ByteCodeLoader with the figures the Verifier has found
+    void setFrameSizes(List<FrameSize> sizes, int maxStackSize) {
+        checkNotFrozen();
+        frameSizes = Collections.unmodifiableList(new ArrayList<>(sizes));
+        this.maxStackSize = maxStackSize;
+    }
+
+    /**
+     * Provides the frame sizes of the main program and of the functions it
+     * calls (see FrameSize).
+     *
+     * @return the frame sizes, or an empty list if the Verifier could not
+     * follow the Program
+     */
+    public List<FrameSize> getFrameSizes() {
+        return frameSizes;
+    }
+
+    /**
+     * The most values the RunTimeStack holds while the Program runs, so that
+     * it can be allocated at its full size up front.
+     *
+     * @return the number of values, or -1 if the Program has recursive
+     * functions or the Verifier could not follow it
+     */
+    public int getMaxStackSize() {
+        return maxStackSize;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The Program is frozen");
+        }
+    }
+
     /**
      * This method uses a HashMap, in which the keys are the Strings associated with
      * each LabelCode and the values are the integer locations of the LabelCode
@@ -42,18 +126,13 @@ public class Program {
      */
     public void resolveAddresses() {
 
-        HashMap<String, Integer> map = new HashMap();
-        Class cl;
-        String className;
+        HashMap<String, Integer> map = new HashMap<>();
         int position = 0; // the ArrayList position during iteration
 
         // Step 1: iterate through Program and populate HashMap
 
         for (ByteCode bc : codes) {
-            cl = bc.getClass();
-            className = cl.getName();
-            if (className.equals("interpreter.bytecode.LabelCode") ||
-                    className.equals("interpreter.bytecode.DebugLabelCode")) {
+            if (bc instanceof LabelCode) {
                 LabelCode label = (LabelCode) bc;
                 map.put(label.getLabel(), position);
             }
@@ -61,35 +140,45 @@ public class Program {
         } // end for loop
 
         // Step 2: resolve symbolic addresses of relevant bytecode instances
+        resolveAddresses(map);
+    }
+
+    /**
+     * Resolves the symbolic addresses of the jumps, calls and returns using the
+     * given positions of the labels.  Optimization passes that remove the
+     * LabelCodes themselves use this directly.
+     *
+     * @param map the address of each label
+     * @throws ProgramLoadException if a byte code names a label that is not
+     * in the map
+     */
+    void resolveAddresses(HashMap<String, Integer> map) {
+        checkNotFrozen();
+        int position = 0;
         for (ByteCode bc : codes) {
-            cl = bc.getClass();
-            className = cl.getName();
-            if (className.equals("interpreter.bytecode.FalseBranchCode")) {
-                FalseBranchCode fbcode = (FalseBranchCode) bc;
-                String fbString = fbcode.getLabel();
-                fbcode.setTarget(map.get(fbString));
+            // FalseBranch, Goto, Call and the byte codes fused from them
+            if (bc instanceof JumpCode) {
+                JumpCode jump = (JumpCode) bc;
+                jump.setTarget(addressOf(map, jump.getLabel(), position));
             }
-            if (className.equals("interpreter.bytecode.GoToCode")) {
-                GoToCode gtcode = (GoToCode) bc;
-                String gtString = gtcode.getLabel();
-                gtcode.setTarget(map.get(gtString));
-            }
-            if (className.equals("interpreter.bytecode.CallCode") ||
-                    className.equals("interpreter.bytecode.DebugCallCode")) {
-                CallCode ccode = (CallCode) bc;
-                String cString = ccode.getLabel();
-                ccode.setTarget(map.get(cString));
-            }
-            if (className.equals("interpreter.bytecode.ReturnCode") ||
-                    className.equals("interpreter.bytecode.DebugReturnCode")) {
+            if (bc instanceof ReturnCode) {
                 ReturnCode rcode = (ReturnCode) bc;
                 if (rcode.getLabel() != null) {
                     String rString = rcode.getLabel();
-                    rcode.setReturnValue(map.get(rString));
+                    rcode.setLabelAddress(addressOf(map, rString, position));
                 }
             }
+            position++;
+        }
+    }
 
+    private static int addressOf(HashMap<String, Integer> map, String label, int position) {
+        Integer address = map.get(label);
+        if (address == null) {
+            throw new ProgramLoadException("address " + position
+                    + ": undefined label " + label);
         }
+        return address;
     }
 
     /**
@@ -0,0 +1,21 @@
+package interpreter;
+
+/**
+ * ProgramLoadException is thrown by the ByteCodeLoader when a bytecode file
+ * cannot be read, holds a byte code it does not understand, refers to a label
+ * that does not exist, or is rejected by the Verifier.
+ */
+
+public class ProgramLoadException extends InterpreterException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ProgramLoadException(String message) {
+        super(message);
+    }
+
+    public ProgramLoadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
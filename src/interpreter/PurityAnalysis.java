@@ -0,0 +1,278 @@
+package interpreter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PurityAnalysis finds the functions of a Program whose result depends on
+ * nothing but their arguments, so that a call of one can be answered from a
+ * MemoCache.  A function is identified by its entry address and the number
+ * of arguments its callers pass (the ARGS right before the CALL), and it is
+ * pure if, following its control flow from the entry up to its RETURNs:
+ *   - it executes no READ, WRITE, HALT or DUMP;
+ *   - every LOAD and STORE stays within its own frame, and the frame is never
+ *     popped down to its start, which would drop it (see RunTimeStack), so
+ *     the function can neither see nor change the frames of its callers;
+ *   - the stack depth is the same on every path to an address, and at least
+ *     one value is on the frame at each RETURN;
+ *   - it calls only pure functions, each with an ARGS right before the CALL
+ *     or with a TailCallCode.
+ * Recursive functions are pure unless something else makes them impure.
+ * The analysis is run once over the Program and is read-only afterwards, so
+ * it may be shared between threads.
+ */
+
+public class PurityAnalysis {
+
+    private static final int NOT_REACHED = -1;
+
+    private final Program program;
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int[] secondOperands;
+    // for each address of a CALL of a pure function, its number of arguments, else -1
+    private final int[] memoizableArgs;
+    private final Set<Long> pureFunctions = new HashSet<>();
+
+    /**
+     * Analyzes a Program.
+     *
+     * @param program the loaded Program
+     */
+    public PurityAnalysis(Program program) {
+        this.program = program;
+        CompactProgram compact = CompactProgram.lower(program);
+        opcodes = compact.getOpcodes();
+        operands = compact.getOperands();
+        secondOperands = compact.getSecondOperands();
+        memoizableArgs = new int[opcodes.length];
+        Arrays.fill(memoizableArgs, -1);
+
+        // analyze every function that is called, and the functions they call
+        Map<Long, Set<Long>> callees = new HashMap<>();
+        ArrayDeque<Long> work = new ArrayDeque<>();
+        int pc;
+        for (pc = 1; pc < opcodes.length; pc++) {
+            if (opcodes[pc] == CodeTable.CALL && opcodes[pc - 1] == CodeTable.ARGS) {
+                work.add(function(operands[pc], operands[pc - 1]));
+            }
+            if (opcodes[pc] == CodeTable.TAILCALL) {
+                work.add(function(operands[pc], secondOperands[pc]));
+            }
+        }
+        while (!work.isEmpty()) {
+            long f = work.poll();
+            if (callees.containsKey(f)) {
+                continue;
+            }
+            Set<Long> calls = analyze(entryOf(f), argcOf(f));
+            callees.put(f, calls);
+            if (calls != null) {
+                work.addAll(calls);
+            }
+        }
+        // a function that calls an impure function is impure, until nothing changes
+        for (Map.Entry<Long, Set<Long>> e : callees.entrySet()) {
+            if (e.getValue() != null) {
+                pureFunctions.add(e.getKey());
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Long, Set<Long>> e : callees.entrySet()) {
+                if (pureFunctions.contains(e.getKey())
+                        && !pureFunctions.containsAll(e.getValue())) {
+                    pureFunctions.remove(e.getKey());
+                    changed = true;
+                }
+            }
+        }
+        for (pc = 1; pc < opcodes.length; pc++) {
+            if (opcodes[pc] == CodeTable.CALL && opcodes[pc - 1] == CodeTable.ARGS
+                    && isPure(operands[pc], operands[pc - 1])) {
+                memoizableArgs[pc] = operands[pc - 1];
+            }
+        }
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * Tells whether a function is pure.
+     *
+     * @param entry the address of the function
+     * @param argc the number of arguments it is called with
+     * @return true if the function was found to be pure
+     */
+    public boolean isPure(int entry, int argc) {
+        return pureFunctions.contains(function(entry, argc));
+    }
+
+    /**
+     * Tells whether the byte code at an address is a CALL of a pure function.
+     *
+     * @param address the address
+     * @return the number of arguments of the call, or -1 if the byte code is
+     * not a call of a pure function
+     */
+    public int getMemoizableArgs(int address) {
+        return memoizableArgs[address];
+    }
+
+    private static long function(int entry, int argc) {
+        return ((long) entry << 32) | argc;
+    }
+
+    private static int entryOf(long function) {
+        return (int) (function >>> 32);
+    }
+
+    private static int argcOf(long function) {
+        return (int) function;
+    }
+
+    /*
+     * Follows the control flow of a function and checks the rules above, apart
+     * from the purity of its callees.  Returns the functions it calls, or null
+     * if it is impure.
+     */
+    private Set<Long> analyze(int entry, int argc) {
+        int[] depth = new int[opcodes.length];
+        Arrays.fill(depth, NOT_REACHED);
+        Set<Long> calls = new HashSet<>();
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        if (!reach(depth, entry, argc, work)) {
+            return null;
+        }
+        while (!work.isEmpty()) {
+            int pc = work.poll();
+            int d = depth[pc];
+            int next = d;
+            switch (opcodes[pc]) {
+                case CodeTable.LIT:
+                    next = d + 1;
+                    break;
+                case CodeTable.LOAD:
+                    if (!inFrame(operands[pc], d)) {
+                        return null;
+                    }
+                    next = d + 1;
+                    break;
+                case CodeTable.STORE:
+                    if (d <= 1 || !inFrame(operands[pc], d - 1)) {
+                        return null;
+                    }
+                    next = d - 1;
+                    break;
+                case CodeTable.BOP:
+                    if (d <= 2) {
+                        return null;
+                    }
+                    next = d - 1;
+                    break;
+                case CodeTable.LOAD_LIT_BOP:
+                    if (!inFrame(operands[pc], d)) {
+                        return null;
+                    }
+                    next = d + 1;
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    if (!inFrame(operands[pc], d) || !inFrame(secondOperands[pc], d + 1)) {
+                        return null;
+                    }
+                    next = d + 1;
+                    break;
+                case CodeTable.LIT_STORE:
+                    if (d == 0 || !inFrame(secondOperands[pc], d)) {
+                        return null;
+                    }
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    if (d <= 1 || !reach(depth, operands[pc], d - 1, work)) {
+                        return null;
+                    }
+                    next = d - 1;
+                    break;
+                case CodeTable.BOP_FALSEBRANCH:
+                    if (d <= 2 || !reach(depth, operands[pc], d - 2, work)) {
+                        return null;
+                    }
+                    next = d - 2;
+                    break;
+                case CodeTable.GOTO:
+                    if (!reach(depth, operands[pc], d, work)) {
+                        return null;
+                    }
+                    continue;
+                case CodeTable.ARGS:
+                    if (operands[pc] < 0 || operands[pc] > d || pc + 1 >= opcodes.length
+                            || opcodes[pc + 1] != CodeTable.CALL) {
+                        return null;
+                    }
+                    break;
+                case CodeTable.CALL:
+                    if (pc == 0 || opcodes[pc - 1] != CodeTable.ARGS) {
+                        return null;
+                    }
+                    calls.add(function(operands[pc], operands[pc - 1]));
+                    next = d - operands[pc - 1] + 1;
+                    break;
+                case CodeTable.TAILCALL:
+                    if (secondOperands[pc] < 0 || secondOperands[pc] > d) {
+                        return null;
+                    }
+                    calls.add(function(operands[pc], secondOperands[pc]));
+                    next = d - secondOperands[pc] + 1;
+                    break;
+                case CodeTable.RETURN:
+                    if (d == 0) {
+                        return null;
+                    }
+                    continue;
+                case CodeTable.POP:
+                    if (operands[pc] > 0 && d <= operands[pc]) {
+                        return null;
+                    }
+                    next = d - Math.max(operands[pc], 0);
+                    break;
+                case CodeTable.LABEL:
+                case CodeTable.LINE:
+                case CodeTable.FUNCTION:
+                case CodeTable.FORMAL:
+                    break;
+                default:
+                    // READ, WRITE, HALT and DUMP
+                    return null;
+            }
+            if (!reach(depth, pc + 1, next, work)) {
+                return null;
+            }
+        }
+        return calls;
+    }
+
+    // Records the depth at an address; false if control leaves the program or the depths differ
+    private boolean reach(int[] depth, int pc, int d, ArrayDeque<Integer> work) {
+        if (pc < 0 || pc >= opcodes.length) {
+            return false;
+        }
+        if (depth[pc] == NOT_REACHED) {
+            depth[pc] = d;
+            work.add(pc);
+            return true;
+        }
+        return depth[pc] == d;
+    }
+
+    private static boolean inFrame(int offset, int d) {
+        return offset >= 0 && offset < d;
+    }
+
+}
@@ -1,139 +1,57 @@
-
 package interpreter;
 
 import java.util.ArrayList;
-import java.util.EmptyStackException;
-import java.util.Stack;
 
 /**
- * RunTimeStack class manages the RunTimeStack (an ArrayList) and the frame-pointers
- * Stack.
- * Many methods are provided to allow the VirtualMachine to access and
- * manipulate the RunTimeStack and framePointers Stack.
+ * RunTimeStack is what the VirtualMachine, the debugger and the trace see of
+ * the stack of values and the frame-pointers stack.  The stacks that implement
+ * it keep their own state, so the IntRunTimeStack the VirtualMachine uses
+ * carries no boxed lists; ListRunTimeStack is the plain version.
+ * An operation that finds the stack or the frame pointers empty, or an index
+ * outside the stack, throws a RunTimeStackException.
  */
 
-public class RunTimeStack {
-
-    private ArrayList<Integer> runStack;
-    private Stack<Integer> framePointers;
-
-    public RunTimeStack() {
-        runStack = new ArrayList<>();
-        framePointers = new Stack();
-    }
+public abstract class RunTimeStack {
 
     /**
-     * This method outputs the contents of the RunTimeStack in a formatted
-     * way for easier debugging.
-     * Per instructions, no arguments are passed to it.
-     * The frame-pointers Stack is saved, analyzed and used in
-     * printing the RunTimeStack, then restored at the end of the method.
+     * Replaces the elements of the current frame with the given number of
+     * elements from the top of the stack, for a call in tail position.  The
+     * elements must all be in the current frame.
+     *
+     * @param count the number of elements that make up the new frame
      */
-    public void dump() {
-
-        if (runStack.isEmpty()) {
-            System.out.println("[]");
-        } else {
-            // populate arraylist temp with framePointers elements
-            ArrayList<Integer> temp = new ArrayList<>();
-            while (!framePointers.empty()) {
-                temp.add(framePointers.pop());
-            }
-            // the start and end indices of each frame
-            int startIndex, endIndex;
-            // indices for printing each element of a frame
-            int i, j;
-            // iterate through the frames
-            for (i = temp.size() - 1; i > 0; i--) {
-                startIndex = temp.get(i);
-                endIndex = (temp.get(i - 1)) - 1;
-                System.out.print("[");
-                // iterate through the current frame, print elements
-                for (j = startIndex; j <= endIndex; j++) {
-                    System.out.print(runStack.get(j));
-                    if (j != endIndex) {
-                        System.out.print(",");
-                    }
-                }
-                System.out.print("] ");
-            }
-
-            // print last frame (may be the only frame)
-            System.out.print("[");
-            for (j = temp.get(0); j < runStack.size(); j++) {
-                System.out.print(runStack.get(j));
-                if (j != runStack.size() - 1) {
-                    System.out.print(",");
-                }
-            }
-            System.out.println("] ");
+    public abstract void reuseFrame(int count);
 
-            // restore framePointers Stack
-            while (!temp.isEmpty()) {
-                framePointers.push(temp.remove(temp.size() - 1));
-            }
-
-        }
-    }
-
-    //  Methods to manipulate the RunTimeStack 
+    // Removes all the elements and frames, leaving the stack as it was new
+    public abstract void clear();
 
     /**
-     * Reveals the top item of the RunTimeStack and checks to make sure the
-     * RunTimeStack isn't empty.  If it is, the program terminates
-     * and an error message is displayed.
-     *
-     * @return top item on RunTimeStack
+     * Outputs the contents of the stack frame by frame, each frame in
+     * brackets, for DUMP and for debugging.
      */
-    public int peek() {
-        int topItem = 0;
-        try {
-            topItem = runStack.get((runStack.size() - 1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.out.println("RunTimeStack error! Stack is empty.");
-            System.out.println("The program will terminate.");
-            System.exit(1);
-        }
-        return topItem;
-    }
+    public abstract void dump();
 
+    //  Methods to manipulate the RunTimeStack
+
+    // Returns the top item of the stack without removing it
+    public abstract int peek();
 
     /**
-     * Removes and returns the top item of the RunTime Stack, and checks that
-     * the RunTimeStack isn't empty.  If it is, the program terminates and an
-     * error message is displayed.
+     * Removes and returns the top item of the stack.  A frame that the pop
+     * leaves empty is dropped.
      *
-     * @return the top item of the RunTimeStack
+     * @return the top item of the stack
      */
-    public int pop() {
-        int removedItem = 0;
-        try {
-            removedItem = runStack.remove((runStack.size() - 1));
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.out.println("RunTimeStack error! Stack is empty.");
-            System.out.println("The program will terminate.");
-            System.exit(1);
-        }
-
-        if (runStack.size() == framePointers.peek()) {
-            framePointers.pop();
-        }
-        return removedItem;
-    }
+    public abstract int pop();
 
     /**
-     * Pushes an element to the top of the stack
+     * Pushes an element to the top of the stack; the first push on an empty
+     * stack creates the frame at 0.
      *
      * @param pushItem the integer item to be put atop the stack
      * @return the item pushed
      */
-    public int push(int pushItem) {
-        if (runStack.isEmpty() && framePointers.empty()) {
-            framePointers.push(0);
-        }
-        runStack.add(pushItem);
-        return pushItem;
-    }
+    public abstract int push(int pushItem);
 
     /**
      * Saves the top item of the stack, pops the top frame,
@@ -141,152 +59,59 @@ public class RunTimeStack {
      *
      * @return the top of the stack prior to popping the frame
      */
-    public int popFrame() {
-        // store the top value of the RunTimeStack
-        int topOfStack = runStack.get(runStack.size() - 1);
-        // clear the runTimeStack of components in the frame being popped
-        int stopAtIndex = peekFrameStack();
-        while (runStack.size() > stopAtIndex) {
-            pop();
-        }
-        return push(topOfStack);
-    }
+    public abstract int popFrame();
 
     /**
      * Pops the given number of levels off the run time stack
      *
      * @param levels the number of items to pop from the stack
      */
-    public void popLevels(int levels) {
-        int i;
-        for (i = 0; i < levels; i++) {
-            pop();
-        }
-    }
+    public abstract void popLevels(int levels);
 
-    public int store(int offset) {
-        int returnValue = pop(); // removes top item of runStack
-        int indexToStore = peekFrameStack() + offset;
-        runStack.set(indexToStore, returnValue);
-        return returnValue;
-    }
+    // Pops the top item into the given offset of the current frame
+    public abstract int store(int offset);
 
-    public int getValueAt(int index) {
-        return runStack.get(index);
-    }
+    public abstract int getValueAt(int index);
 
-    public void setValueAt(int offset, int newValue) {
-        runStack.set(offset, newValue);
-    }
+    public abstract void setValueAt(int offset, int newValue);
 
-    public int load(int offset) {
-        int currentFrameStart = peekFrameStack();
-        int indexOfValueToLoad = currentFrameStart + offset;
-        int valueToLoad = getValueAt(indexOfValueToLoad);
-        return push(valueToLoad);
-    }
+    // Pushes the item at the given offset of the current frame
+    public abstract int load(int offset);
 
-    public int sizeOfRunStack() {
-        return runStack.size();
-    }
+    public abstract int sizeOfRunStack();
 
     /**
-     * Provides the elements of the current frame, as an ArrayList, for use during
-     * rollback in restoring the top frame to the contents that it had at the
-     * start of the function's execution.
+     * Provides the elements of the current frame, for use during rollback in
+     * restoring the top frame to the contents that it had at the start of the
+     * function's execution.
      *
-     * @return ArrayList of the frame's elements, generated before a function
-     * starts to execute
+     * @return ArrayList of the frame's elements
      */
-    public ArrayList<Integer> topFrameElements() {
-        ArrayList<Integer> topFrameElements = new ArrayList<>();
-        int topFrameOffset = peekFrameStack();
-        int i;
-        for (i = topFrameOffset; i < runStack.size(); i++) {
-            topFrameElements.add(runStack.get(i));
-        }
-
-        return topFrameElements;
-    }
+    public abstract ArrayList<Integer> topFrameElements();
 
     /**
      * Clears the elements from the current frame (for use during rollback)
      */
-    public void clearCurrentFrameElements() {
-        int topFrameOffset = peekFrameStack();
-        while (runStack.size() > topFrameOffset) {
-            runStack.remove(runStack.size() - 1);
-        }
-    }
-
-    public Integer push(Integer i) {
-        runStack.add(i);
-        return peek();
-    }
+    public abstract void clearCurrentFrameElements();
 
+    // Pushes an element without creating the initial frame, for rollback
+    public abstract Integer push(Integer i);
 
     /**
      * Provides a string representation of the elements in the frame.
      *
      * @return String containing the elements of the top frame
      */
-    public String topFrameAsString() {
-        String topFrame = "(";
-        int i;
-        for (i = framePointers.peek(); i < runStack.size(); i++) {
-            topFrame = topFrame.concat(String.valueOf(runStack.get(i)));
-            if (i != runStack.size() - 1) {
-                topFrame = topFrame.concat(",");
-            }
-        }
-        topFrame = topFrame.concat(")");
-        return topFrame;
-    }
+    public abstract String topFrameAsString();
 
     // Methods that handle or access the framePointers Stack
 
-    /**
-     * Reveals the top value of the framePointers stack and checks to make sure
-     * that framePointers isn't empty.  If it is, the program terminates and an
-     * error message is displayed.
-     *
-     * @return the top of the framePointers stack
-     */
-    public int popFrameStack() {
-        int returnValue = 0;
-        try {
-            returnValue = framePointers.pop();
-        } catch (EmptyStackException e) {
-            System.out.println("Error! The framePointers stack is empty.");
-            System.out.println("The program will terminate.");
-            System.exit(1);
-        }
-        return returnValue;
-    }
-
-    /**
-     * Removes and returns the top of the framePointers stack, and checks that
-     * it isn't empty.  If it is, the program terminates and an error message
-     * is displayed.
-     *
-     * @return the top of the framePointers stack
-     */
-    public int peekFrameStack() {
-        int returnValue = 0;
-        try {
-            returnValue = framePointers.peek();
-        } catch (EmptyStackException e) {
-            System.out.println("Error! The framePointers stack is empty.");
-            System.out.println("The program will terminate.");
-            System.exit(1);
-        }
-        return returnValue;
-
+    // Removes and returns the start of the top frame
+    public abstract int popFrameStack();
 
-    }
+    // Returns the start of the top frame without removing it
+    public abstract int peekFrameStack();
 
-    public void newFrameAt(int startIndex) {
-        framePointers.push(startIndex);
-    }
+    public abstract void newFrameAt(int startIndex);
 
 } // end class
@@ -0,0 +1,16 @@
+package interpreter;
+
+/**
+ * RunTimeStackException is thrown when a byte code uses the RunTimeStack in
+ * a way the program's frames do not allow, such as popping an empty stack.
+ */
+
+public class RunTimeStackException extends InterpreterException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RunTimeStackException(String message) {
+        super(message);
+    }
+
+}
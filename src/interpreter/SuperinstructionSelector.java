@@ -0,0 +1,188 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * SuperinstructionSelector replaces common sequences of byte codes with single
+ * fused byte codes (superinstructions), so each sequence is dispatched once and
+ * its intermediate values never go through the RunTimeStack.
+ * ByteCodeLoader runs it on every Program loaded in interpreter mode.
+ *
+ * The sequences come from a frequency table.  The weight of each entry is the
+ * number of times the sequence occurs in factorial.x.cod and the programs in
+ * samples/, as counted from the top of the repository by
+ *
+ *     java interpreter.tools.SequenceProfiler -n 200 factorial.x.cod samples/*.x.cod
+ *
+ * At each address the heaviest sequence that matches is selected.  To add a
+ * superinstruction, profile the programs again, write the fused byte code and
+ * add an entry to the table with the new count; when the samples change, the
+ * weights are counted again.
+ *
+ * A sequence is never fused if a jump lands inside it, and a program that
+ * turns DUMP on is returned unchanged, since its output shows every byte code
+ * that runs.
+ */
+
+public class SuperinstructionSelector {
+
+    // One entry of the frequency table
+    private static final class Superinstruction {
+        final int[] pattern; // the opcodes of the sequence
+        final int weight;
+        final Function<List<ByteCode>, ByteCode> fuse;
+
+        Superinstruction(int[] pattern, int weight,
+                Function<List<ByteCode>, ByteCode> fuse) {
+            this.pattern = pattern;
+            this.weight = weight;
+            this.fuse = fuse;
+        }
+    }
+
+    // The frequency table, heaviest entry first
+    private static final List<Superinstruction> TABLE = frequencyTable(
+        new Superinstruction(new int[] {CodeTable.BOP, CodeTable.FALSEBRANCH}, 8,
+            SuperinstructionSelector::fuseCompareAndBranch),
+        new Superinstruction(new int[] {CodeTable.LOAD, CodeTable.LIT, CodeTable.BOP}, 10,
+            codes -> new LoadLitBopCode(
+                ((LoadCode) codes.get(0)).getOffset(),
+                ((LitCode) codes.get(1)).getValue(),
+                ((BopCode) codes.get(2)).getOperator())),
+        new Superinstruction(new int[] {CodeTable.LOAD, CodeTable.LOAD, CodeTable.BOP}, 10,
+            codes -> new LoadLoadBopCode(
+                ((LoadCode) codes.get(0)).getOffset(),
+                ((LoadCode) codes.get(1)).getOffset(),
+                ((BopCode) codes.get(2)).getOperator())),
+        new Superinstruction(new int[] {CodeTable.LIT, CodeTable.STORE}, 5,
+            codes -> new LitStoreCode(
+                ((LitCode) codes.get(0)).getValue(),
+                ((StoreCode) codes.get(1)).getOffset())));
+
+    // The fused code keeps the address the FALSEBRANCH was resolved to
+    private static ByteCode fuseCompareAndBranch(List<ByteCode> codes) {
+        FalseBranchCode branch = (FalseBranchCode) codes.get(1);
+        BopFalseBranchCode fused = new BopFalseBranchCode(
+                ((BopCode) codes.get(0)).getOperator(), branch.getLabel());
+        fused.setTarget(branch.getTarget());
+        return fused;
+    }
+
+    private static List<Superinstruction> frequencyTable(Superinstruction... entries) {
+        Superinstruction[] sorted = entries.clone();
+        // a stable sort, so entries of equal weight keep their order
+        Arrays.sort(sorted, Comparator.comparingInt(
+                (Superinstruction s) -> s.weight).reversed());
+        return List.of(sorted);
+    }
+
+    /**
+     * Tells whether the table has a superinstruction for a sequence.
+     *
+     * @param opcodes the opcodes of the sequence
+     * @return true if the sequence is fused
+     */
+    public static boolean hasSuperinstruction(int[] opcodes) {
+        for (Superinstruction s : TABLE) {
+            if (Arrays.equals(s.pattern, opcodes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fuses the sequences of a Program whose addresses have been resolved.
+     * The codes that are not fused are shared with the new Program and their
+     * addresses are moved to the new positions, so the given Program must not
+     * be run afterwards.
+     *
+     * @param program the loaded Program
+     * @return the Program with superinstructions
+     */
+    public Program select(Program program) {
+        int size = program.getSize();
+        int[] opcodes = new int[size];
+        // jump targets, and the addresses calls return to
+        boolean[] targets = new boolean[size + 1];
+        int i;
+        for (i = 0; i < size; i++) {
+            ByteCode bc = program.getCode(i);
+            opcodes[i] = CodeTable.opcodeOf(bc);
+            if (opcodes[i] == CodeTable.DUMP && ((DumpCode) bc).getDumpState() == 1) {
+                return program;
+            }
+            if (bc instanceof JumpCode) {
+                targets[((JumpCode) bc).getTarget()] = true;
+            }
+            if (bc instanceof CallCode) {
+                targets[i + 1] = true;
+            }
+        }
+
+        Program selected = new Program();
+        int[] newAddress = new int[size + 1];
+        i = 0;
+        while (i < size) {
+            Superinstruction match = matchAt(opcodes, targets, i);
+            int length = match == null ? 1 : match.pattern.length;
+            int j;
+            for (j = 0; j < length; j++) {
+                newAddress[i + j] = selected.getSize();
+            }
+            if (match == null) {
+                selected.addCode(program.getCode(i));
+            } else {
+                List<ByteCode> codes = new ArrayList<>();
+                for (j = 0; j < length; j++) {
+                    codes.add(program.getCode(i + j));
+                }
+                selected.addCode(match.fuse.apply(codes));
+            }
+            i += length;
+        }
+        newAddress[size] = selected.getSize();
+
+        // move the resolved addresses to the new positions
+        for (i = 0; i < selected.getSize(); i++) {
+            ByteCode bc = selected.getCode(i);
+            if (bc instanceof JumpCode) {
+                JumpCode jump = (JumpCode) bc;
+                jump.setTarget(newAddress[jump.getTarget()]);
+            }
+            if (bc instanceof ReturnCode && ((ReturnCode) bc).getLabel() != null) {
+                ReturnCode rcode = (ReturnCode) bc;
+                rcode.setLabelAddress(newAddress[rcode.getLabelAddress()]);
+            }
+        }
+        return selected;
+    }
+
+    // Returns the heaviest entry whose sequence starts at the address, if any
+    private Superinstruction matchAt(int[] opcodes, boolean[] targets,
+            int address) {
+        for (Superinstruction s : TABLE) {
+            int[] pattern = s.pattern;
+            if (address + pattern.length > opcodes.length) {
+                continue;
+            }
+            boolean matches = true;
+            int j;
+            for (j = 0; j < pattern.length && matches; j++) {
+                matches = opcodes[address + j] == pattern[j]
+                        && (j == 0 || !targets[address + j]);
+            }
+            if (matches) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+}
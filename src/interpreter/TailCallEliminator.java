@@ -0,0 +1,95 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+/**
+ * TailCallEliminator replaces each ARGS n, CALL f that is followed by a
+ * RETURN, with only LABEL and LINE byte codes in between, by a TailCallCode,
+ * which reuses the current frame for the call instead of pushing a new frame
+ * and a return address.  ByteCodeLoader runs it on every Program loaded in
+ * interpreter mode, before the SuperinstructionSelector.
+ *
+ * The RETURN and the codes before it are kept, since a jump may land on them
+ * and a TailCallCode falls back to an ordinary call when it cannot reuse the
+ * frame.  A pair is never replaced if a jump lands on the CALL, and a
+ * program that turns DUMP on is returned unchanged, since its output shows
+ * every call and return.
+ */
+
+public class TailCallEliminator {
+
+    /**
+     * Replaces the tail calls of a Program whose addresses have been
+     * resolved.  The codes that are not replaced are shared with the new
+     * Program and their addresses are moved to the new positions, so the
+     * given Program must not be run afterwards.
+     *
+     * @param program the loaded Program
+     * @return the Program with TailCallCodes
+     */
+    public Program eliminate(Program program) {
+        int size = program.getSize();
+        int[] opcodes = new int[size];
+        boolean[] targets = new boolean[size + 1];
+        int i;
+        for (i = 0; i < size; i++) {
+            ByteCode bc = program.getCode(i);
+            opcodes[i] = CodeTable.opcodeOf(bc);
+            if (opcodes[i] == CodeTable.DUMP && ((DumpCode) bc).getDumpState() == 1) {
+                return program;
+            }
+            if (bc instanceof JumpCode) {
+                targets[((JumpCode) bc).getTarget()] = true;
+            }
+        }
+
+        Program result = new Program();
+        int[] newAddress = new int[size + 1];
+        i = 0;
+        while (i < size) {
+            newAddress[i] = result.getSize();
+            if (isTailCall(opcodes, targets, i)) {
+                newAddress[i + 1] = result.getSize();
+                ArgsCode args = (ArgsCode) program.getCode(i);
+                CallCode call = (CallCode) program.getCode(i + 1);
+                TailCallCode tailCall = new TailCallCode(args.getNumberArgs(), call.getLabel());
+                tailCall.setTarget(call.getTarget());
+                result.addCode(tailCall);
+                i += 2;
+            } else {
+                result.addCode(program.getCode(i));
+                i++;
+            }
+        }
+        newAddress[size] = result.getSize();
+
+        // move the resolved addresses to the new positions
+        for (i = 0; i < result.getSize(); i++) {
+            ByteCode bc = result.getCode(i);
+            if (bc instanceof JumpCode) {
+                JumpCode jump = (JumpCode) bc;
+                jump.setTarget(newAddress[jump.getTarget()]);
+            }
+            if (bc instanceof ReturnCode && ((ReturnCode) bc).getLabel() != null) {
+                ReturnCode rcode = (ReturnCode) bc;
+                rcode.setLabelAddress(newAddress[rcode.getLabelAddress()]);
+            }
+        }
+        return result;
+    }
+
+    // Tells whether ARGS, CALL, then LABELs and LINEs, then RETURN start at the address
+    private static boolean isTailCall(int[] opcodes, boolean[] targets, int address) {
+        if (address + 2 >= opcodes.length || opcodes[address] != CodeTable.ARGS
+                || opcodes[address + 1] != CodeTable.CALL || targets[address + 1]) {
+            return false;
+        }
+        int i = address + 2;
+        while (i < opcodes.length
+                && (opcodes[i] == CodeTable.LABEL || opcodes[i] == CodeTable.LINE)) {
+            i++;
+        }
+        return i < opcodes.length && opcodes[i] == CodeTable.RETURN;
+    }
+
+}
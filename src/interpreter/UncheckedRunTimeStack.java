@@ -0,0 +1,52 @@
+package interpreter;
+
+/**
+ * UncheckedRunTimeStack is the IntRunTimeStack a VirtualMachine uses for a
+ * Program the Verifier has accepted.  The Verifier has shown that no byte code
+ * pops an empty stack, reads a frame pointer when there is no frame, or
+ * reaches outside the current frame, so these methods leave out the checks.
+ * Only the growth of the arrays and the dropping of frames, which are part of
+ * the behavior of the stack, remain.
+ */
+
+final class UncheckedRunTimeStack extends IntRunTimeStack {
+
+    UncheckedRunTimeStack(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public int peek() {
+        return values[top - 1];
+    }
+
+    @Override
+    public int pop() {
+        int removedItem = values[--top];
+        if (frameCount > 0 && top == framePointers[frameCount - 1]) {
+            frameCount--;
+        }
+        return removedItem;
+    }
+
+    @Override
+    public int getValueAt(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void setValueAt(int offset, int newValue) {
+        values[offset] = newValue;
+    }
+
+    @Override
+    public int popFrameStack() {
+        return framePointers[--frameCount];
+    }
+
+    @Override
+    public int peekFrameStack() {
+        return framePointers[frameCount - 1];
+    }
+
+}
@@ -0,0 +1,367 @@
+package interpreter;
+
+import interpreter.bytecode.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verifier checks a Program before it runs, so that a Program it accepts
+ * cannot underflow the RunTimeStack or reach outside a frame.  The control
+ * flow of the main program, and of every function it calls, is followed from
+ * the entry, and at each address the verifier knows the depth of the current
+ * frame.  A function is identified by its entry address and the number of
+ * arguments its callers pass, and is verified once for each such number.
+ * The Program is rejected if:
+ *   - the stack depth differs between two paths to an address;
+ *   - a byte code pops more values than the frame holds, or, in a function,
+ *     pops the frame down to its start, which would drop it (see
+ *     RunTimeStack);
+ *   - a LOAD or STORE offset lies outside the frame;
+ *   - an ARGS takes more values than the frame holds, or is not followed by
+ *     a CALL, or a CALL has no ARGS before it;
+ *   - a RETURN is reached in the main program, or with an empty frame;
+ *   - control runs past the end of the Program.
+ * Labels that do not resolve are reported when the Program is loaded, before
+ * it gets here.  The depth of the stack as a whole, and so the number of
+ * nested calls, is not bounded by the verifier.
+ *
+ * The main program's frame always starts at 0, so popping it to its start
+ * does no harm; it is recreated by the next push, as in RunTimeStack.
+ *
+ * Along the way the verifier finds the FrameSize of the main program and of
+ * each function, and from the depths at which the functions are called, the
+ * most values the RunTimeStack can hold, unless the functions are recursive,
+ * and the depth of the frame at each CALL, which the Inliner needs.
+ */
+
+public class Verifier {
+
+    private static final int NOT_REACHED = -1;
+    private static final int NO_ARGS = -1;
+    private static final long MAIN = -1;
+
+    private Program program;
+    private int[] opcodes;
+    private int[] operands;
+    private int[] secondOperands;
+    // the frame depth at each address reached in the function being followed
+    private int[] depth;
+    private int[] pending; // the count of the ARGS awaiting a CALL there
+    private final ArrayList<Integer> reached = new ArrayList<>();
+    private Map<Long, FrameSize> frameSizes;
+    // for each function, the functions it calls and the highest frame start of their calls
+    private Map<Long, Map<Long, Integer>> callBases;
+    // the frame depth at each CALL address, or -1 if it differs between functions
+    private Map<Integer, Integer> callDepths;
+
+    /**
+     * Verifies a Program.
+     *
+     * @param program the Program, with its addresses resolved
+     * @throws ProgramLoadException naming the first address, byte code and
+     * function at which the Program is found to be invalid
+     */
+    public void verify(Program program) {
+        this.program = program;
+        frameSizes = new LinkedHashMap<>();
+        callBases = new HashMap<>();
+        callDepths = new HashMap<>();
+        CompactProgram compact = CompactProgram.lower(program);
+        opcodes = compact.getOpcodes();
+        operands = compact.getOperands();
+        secondOperands = compact.getSecondOperands();
+        if (opcodes.length == 0) {
+            throw new ProgramLoadException("The program is empty");
+        }
+        depth = new int[opcodes.length];
+        pending = new int[opcodes.length];
+        Arrays.fill(depth, NOT_REACHED);
+
+        ArrayDeque<Long> work = new ArrayDeque<>();
+        analyze(MAIN, 0, 0, true, work);
+        while (!work.isEmpty()) {
+            long f = work.poll();
+            if (!frameSizes.containsKey(f)) {
+                analyze(f, (int) (f >>> 32), (int) f, false, work);
+            }
+        }
+    }
+
+    /**
+     * Provides the frame sizes found by the last verify(), the main program's
+     * first and then the functions in the order they were reached.
+     *
+     * @return the frame sizes
+     */
+    public List<FrameSize> getFrameSizes() {
+        return new ArrayList<>(frameSizes.values());
+    }
+
+    /**
+     * Gives the depth of the frame, including the arguments, at a CALL of the
+     * Program of the last verify().  Code shared by a function that is called
+     * with different numbers of arguments may be at different depths.
+     *
+     * @param address the address of the CALL
+     * @return the depth, or -1 if the address is not a CALL that was reached
+     * or its depth is not always the same
+     */
+    public int getCallDepth(int address) {
+        return callDepths.getOrDefault(address, -1);
+    }
+
+    /**
+     * Finds the most values the RunTimeStack can hold while the Program of the
+     * last verify() runs: the most of any chain of calls, in which each
+     * function's frame starts where its caller's ARGS put it.
+     *
+     * @return the number of values, or -1 if some function can call itself,
+     * directly or not, so that the number depends on the input
+     */
+    public int getMaxStackSize() {
+        return maxStackSize(MAIN, new HashMap<>());
+    }
+
+    // The most values from the start of a frame of the function, or -1 if it recurses
+    private int maxStackSize(long f, Map<Long, Integer> known) {
+        Integer size = known.get(f);
+        if (size != null) {
+            return size; // -1 while the function is being visited
+        }
+        known.put(f, -1);
+        int most = frameSizes.get(f).getMaxDepth();
+        for (Map.Entry<Long, Integer> call : callBases.get(f).entrySet()) {
+            int callee = maxStackSize(call.getKey(), known);
+            if (callee < 0) {
+                return -1;
+            }
+            most = Math.max(most, call.getValue() + callee);
+        }
+        known.put(f, most);
+        return most;
+    }
+
+    /*
+     * Follows the control flow of the main program or of a function, and adds
+     * the functions it calls to the work list.
+     */
+    private void analyze(long f, int entry, int argc, boolean isMain, ArrayDeque<Long> calls) {
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        String where = isMain ? "the main program"
+                : "the function at address " + entry + " called with " + argc + " arguments";
+        callBases.put(f, new HashMap<>());
+        int maxDepth = argc;
+        reach(entry, argc, NO_ARGS, entry, where, work);
+        while (!work.isEmpty()) {
+            int pc = work.poll();
+            int d = depth[pc];
+            int args = pending[pc];
+            int opcode = opcodes[pc];
+            int next = d;
+            boolean isNoOp = opcode == CodeTable.LABEL || opcode == CodeTable.LINE
+                    || opcode == CodeTable.FUNCTION || opcode == CodeTable.FORMAL
+                    || opcode == CodeTable.DUMP;
+            if (args != NO_ARGS && opcode != CodeTable.CALL && !isNoOp) {
+                throw error(pc, where, "comes between an ARGS and its CALL");
+            }
+            switch (opcode) {
+                case CodeTable.LIT:
+                case CodeTable.READ:
+                    next = d + 1;
+                    break;
+                case CodeTable.LOAD:
+                    checkOffset(operands[pc], d, pc, where);
+                    next = d + 1;
+                    break;
+                case CodeTable.STORE:
+                    checkPop(d, 1, isMain, pc, where);
+                    checkOffset(operands[pc], d - 1, pc, where);
+                    next = d - 1;
+                    break;
+                case CodeTable.BOP:
+                    checkPop(d, 2, isMain, pc, where);
+                    next = d - 1;
+                    break;
+                case CodeTable.LOAD_LIT_BOP:
+                    checkOffset(operands[pc], d, pc, where);
+                    next = d + 1;
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    checkOffset(operands[pc], d, pc, where);
+                    // the second LOAD may reach the value the first one pushed
+                    checkOffset(secondOperands[pc], d + 1, pc, where);
+                    next = d + 1;
+                    break;
+                case CodeTable.LIT_STORE:
+                    checkOffset(secondOperands[pc], d, pc, where);
+                    maxDepth = Math.max(maxDepth, d + 1); // the literal is pushed first
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    checkPop(d, 1, isMain, pc, where);
+                    reach(operands[pc], d - 1, NO_ARGS, pc, where, work);
+                    next = d - 1;
+                    break;
+                case CodeTable.BOP_FALSEBRANCH:
+                    checkPop(d, 2, isMain, pc, where);
+                    reach(operands[pc], d - 2, NO_ARGS, pc, where, work);
+                    next = d - 2;
+                    break;
+                case CodeTable.GOTO:
+                    reach(operands[pc], d, NO_ARGS, pc, where, work);
+                    continue;
+                case CodeTable.ARGS:
+                    checkArgs(operands[pc], d, pc, where);
+                    reach(pc + 1, d, operands[pc], pc, where, work);
+                    continue;
+                case CodeTable.CALL:
+                    if (args == NO_ARGS) {
+                        throw error(pc, where, "CALL has no ARGS before it");
+                    }
+                    called(f, operands[pc], args, d, calls);
+                    callDepths.merge(pc, d, (known, found) -> known.equals(found) ? known : -1);
+                    next = d - args + 1;
+                    break;
+                case CodeTable.TAILCALL:
+                    checkArgs(secondOperands[pc], d, pc, where);
+                    called(f, operands[pc], secondOperands[pc], d, calls);
+                    next = d - secondOperands[pc] + 1;
+                    break;
+                case CodeTable.RETURN:
+                    if (isMain) {
+                        throw error(pc, where, "RETURN outside a function");
+                    }
+                    if (d == 0) {
+                        throw error(pc, where, "RETURN with an empty frame");
+                    }
+                    continue;
+                case CodeTable.POP:
+                    if (operands[pc] < 0) {
+                        throw error(pc, where, "cannot pop a negative number of levels");
+                    }
+                    if (operands[pc] > 0) {
+                        checkPop(d, operands[pc], isMain, pc, where);
+                    }
+                    next = d - operands[pc];
+                    break;
+                case CodeTable.WRITE:
+                    if (d == 0) {
+                        throw error(pc, where, "WRITE with an empty frame");
+                    }
+                    break;
+                case CodeTable.HALT:
+                    continue;
+                case CodeTable.DUMP:
+                case CodeTable.LABEL:
+                case CodeTable.LINE:
+                case CodeTable.FUNCTION:
+                case CodeTable.FORMAL:
+                    reach(pc + 1, d, args, pc, where, work);
+                    continue;
+                default:
+                    throw error(pc, where, "unknown byte code");
+            }
+            reach(pc + 1, next, NO_ARGS, pc, where, work);
+        }
+
+        String name = null;
+        int locals = 0;
+        // in the order reached, so the FUNCTION nearest the entry names it
+        for (int pc : reached) {
+            maxDepth = Math.max(maxDepth, depth[pc]);
+            ByteCode bc = program.getCode(pc);
+            if (bc instanceof FormalCode
+                    || (bc instanceof LitCode && ((LitCode) bc).getName() != null)) {
+                locals++;
+            } else if (bc instanceof FunctionCode && name == null) {
+                name = ((FunctionCode) bc).getName();
+            }
+        }
+        if (name == null) {
+            name = isMain ? "main" : program.getCode(entry) instanceof LabelCode
+                    ? ((LabelCode) program.getCode(entry)).getLabel() : "address " + entry;
+        }
+        // only the addresses reached are cleared for the next function
+        for (int pc : reached) {
+            depth[pc] = NOT_REACHED;
+        }
+        reached.clear();
+        frameSizes.put(f, new FrameSize(name, isMain ? 0 : entry, argc, locals, maxDepth));
+    }
+
+    // Records a call of a function whose frame starts at the given depth
+    private void called(long f, int entry, int argc, int d, ArrayDeque<Long> calls) {
+        long callee = ((long) entry << 32) | argc;
+        callBases.get(f).merge(callee, d - argc, Math::max);
+        calls.add(callee);
+    }
+
+    private void reach(int pc, int d, int args, int from, String where,
+            ArrayDeque<Integer> work) {
+        if (pc < 0 || pc >= opcodes.length) {
+            throw error(from, where, "control runs past the end of the program");
+        }
+        if (depth[pc] == NOT_REACHED) {
+            depth[pc] = d;
+            pending[pc] = args;
+            reached.add(pc);
+            work.add(pc);
+        } else if (depth[pc] != d || pending[pc] != args) {
+            throw error(pc, where, "the frame holds " + depth[pc]
+                    + " values on one path here and " + d + " on another"
+                    + (pending[pc] != args ? ", with a different ARGS pending" : ""));
+        }
+    }
+
+    private void checkPop(int d, int count, boolean isMain, int pc, String where) {
+        if (d < count) {
+            throw error(pc, where, "pops " + count + " values from a frame of " + d);
+        }
+        if (d == count && !isMain) {
+            throw error(pc, where, "pops the frame down to its start, which drops it");
+        }
+    }
+
+    private void checkOffset(int offset, int d, int pc, String where) {
+        if (offset < 0 || offset >= d) {
+            throw error(pc, where, "offset " + offset + " is outside a frame of " + d);
+        }
+    }
+
+    private void checkArgs(int count, int d, int pc, String where) {
+        if (count < 0 || count > d) {
+            throw error(pc, where, "takes " + count + " arguments from a frame of " + d);
+        }
+    }
+
+    private ProgramLoadException error(int pc, String where, String problem) {
+        if (opcodes[pc] < 0) {
+            return new ProgramLoadException("address " + pc + " in " + where
+                    + ": " + problem);
+        }
+        // the operand, where it is a number or an address
+        String code = CodeTable.nameOf(opcodes[pc]);
+        switch (opcodes[pc]) {
+            case CodeTable.LIT:
+            case CodeTable.LOAD:
+            case CodeTable.STORE:
+            case CodeTable.POP:
+            case CodeTable.ARGS:
+            case CodeTable.FALSEBRANCH:
+            case CodeTable.GOTO:
+            case CodeTable.CALL:
+                code += " " + operands[pc];
+                break;
+            default:
+                break;
+        }
+        return new ProgramLoadException("address " + pc + " (" + code + ") in "
+                + where + ": " + problem);
+    }
+
+}
@@ -2,9 +2,14 @@
 package interpreter;
 
 import debugger.ui.UserInterface;
+import interpreter.io.EndOfInputException;
+import interpreter.io.InputSource;
+import interpreter.io.OutputSink;
+import interpreter.trace.ExecutionTracer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
-import java.util.Stack;
 
 /**
  * The VirtualMachine executes the byte codes in the Program instance and
@@ -24,26 +29,59 @@ public class VirtualMachine {
     private int dumpState = 0;
     private RunTimeStack runStack;
     private int pc = 0;
-    private Stack<Integer> returnAddrs;
+    private CallStack callStack;
     private boolean isRunning = true;
+    private boolean started = false; // whether executeSlice() has begun the program
+    private long instructionCount = 0; // byte codes executed so far
     /* readWrite flag is used to format the dumping of Read and Write codes.
      * If the program is returning from a Read or Write call, the output 
      * of the dumping is formatted appropriately by consulting the flag status:
      * 1 for read, 2 for write, zero otherwise
      */
     private int readWrite; 
+    // the value stored by the last STORE or returned by the last RETURN, for the dump
+    private int lastResult;
     private UserInterface ui;
+    // In batch mode READ and WRITE use these instead of the console
+    private InputSource inputSource;
+    private OutputSink outputSink;
+    // Receives the dump in binary form instead of printing it, if set
+    private ExecutionTracer tracer;
+    // Answers calls of pure functions, if set
+    private MemoCache memoCache;
     
     public VirtualMachine() {}
     
     public VirtualMachine(Program p) {
         
         program = p;
-        runStack = new RunTimeStack();
-        returnAddrs = new Stack<>();
+        // sized for the whole run, if the Program's maximum stack size is known
+        int capacity = p.getMaxStackSize();
+        runStack = p.isVerified() ? new UncheckedRunTimeStack(capacity)
+                : new IntRunTimeStack(capacity);
+        callStack = new CallStack();
         ui = new UserInterface();
     }
     
+    /**
+     * Readies the VirtualMachine to run its Program again from the beginning,
+     * as if it were new, so that one VirtualMachine can run a Program on many
+     * inputs in turn.  The input source, output sink, tracer and maximum call
+     * depth are kept.
+     */
+    public void reset() {
+        runStack.clear();
+        callStack.clear();
+        pc = 0;
+        dumpState = 0;
+        readWrite = 0;
+        lastResult = 0;
+        instructionCount = 0;
+        isRunning = true;
+        started = false;
+        forgetPendingCalls();
+    }
+    
     public Program getProgram() {
         return program;
     }
@@ -52,8 +90,17 @@ public class VirtualMachine {
         return runStack;
     }
     
-    public Stack<Integer> getReturnAddrsStack() {
-        return returnAddrs;
+    // A read-only view of the calls in progress, for the debugger
+    public CallStack.View getCallStack() {
+        return callStack.view();
+    }
+    
+    public int getMaxCallDepth() {
+        return callStack.getMaxDepth();
+    }
+    
+    public void setMaxCallDepth(int depth) {
+        callStack.setMaxDepth(depth);
     }
     
     public void setPC (int newPCValue) {
@@ -76,10 +123,87 @@ public class VirtualMachine {
         return isRunning;
     }
     
+    /**
+     * Returns the number of byte codes this VirtualMachine has executed.  Code
+     * that an engine runs as compiled JVM bytecode is not counted.
+     *
+     * @return the number of byte codes executed
+     */
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+    
+    // For engines that count the byte codes they execute in their own loop
+    protected void addInstructionCount(long count) {
+        instructionCount += count;
+    }
+    
     public UserInterface getUI () {
         return ui;
     }
     
+    /**
+     * Switches READ to batch mode: the integers are taken from the given
+     * source without prompts, and reading past its end throws an
+     * EndOfInputException.  -1 is then an ordinary value rather than a request
+     * to quit.
+     *
+     * @param source the source, or null for the interactive console
+     */
+    public void setInputSource(InputSource source) {
+        inputSource = source;
+    }
+    
+    public InputSource getInputSource() {
+        return inputSource;
+    }
+    
+    /**
+     * Switches WRITE to batch mode: each value is handed to the given sink
+     * without formatting.  The VirtualMachine flushes the sink before a dump;
+     * flushing or closing it at the end of the program is up to the caller.
+     *
+     * @param sink the sink, or null for the interactive console
+     */
+    public void setOutputSink(OutputSink sink) {
+        outputSink = sink;
+    }
+    
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+    
+    /**
+     * Sets a tracer that records the run instead of printing the dump.
+     *
+     * @param tracer the tracer, or null to print the dump as text
+     */
+    public void setTracer(ExecutionTracer tracer) {
+        this.tracer = tracer;
+    }
+    
+    public ExecutionTracer getTracer() {
+        return tracer;
+    }
+    
+    /**
+     * Sets the MemoCache that calls of pure functions consult, or turns
+     * memoization off if the cache is null.
+     *
+     * @param cache a cache for this VirtualMachine's Program
+     * @throws IllegalArgumentException if the cache is for another Program
+     */
+    public void setMemoCache(MemoCache cache) {
+        if (cache != null && cache.getProgram() != program) {
+            throw new IllegalArgumentException("The MemoCache is for another Program");
+        }
+        memoCache = cache;
+    }
+    
+    public MemoCache getMemoCache() {
+        return memoCache;
+    }
+    
     /**
      * Goes through the byte codes in the Program instance, executing the 
      * instructions associated with that byte code, and then dumps if the 
@@ -88,20 +212,200 @@ public class VirtualMachine {
     public void executeProgram() {
         pc = 0;
         isRunning = true;
-        while(isRunning) {
-            ByteCode code = program.getCode(pc);
-            code.execute(this);
-            if (dumpState == 1) {
-                code.print(this);
-                // Do not provide dumping for the DumpCode instances
-                Class cl = code.getClass();
-                String className = cl.getName();
-                if (!(className.equals("interpreter.bytecode.DumpCode"))  ) {
-                    runStack.dump();
+        started = true;
+        forgetPendingCalls();
+        run(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Runs work that executes the program, once or many times, in a thread
+     * this engine can run it in.  The engines that run compiled code need a
+     * thread with a large stack, and executeProgram() switches to one; a
+     * caller that runs the program many times, as BatchRunner does, hands
+     * all of the runs to this method so that the switch is made only once.
+     *
+     * @param work the runs
+     */
+    public void runBatch(Runnable work) {
+        work.run();
+    }
+
+    /**
+     * Executes at most the given number of byte codes and returns, so that the
+     * program can be run in slices, interleaved with other work.  The first
+     * call begins the program; each later call resumes it where the previous
+     * one stopped, with the same stacks.  A slice ends early when the program
+     * halts, and an EndOfInputException thrown by READ ends the program as it
+     * does in executeProgram().
+     *
+     * @param budget the maximum number of byte codes to execute
+     * @return true if the program can be resumed, false if it has halted
+     */
+    public boolean executeSlice(long budget) {
+        if (!started) {
+            pc = 0;
+            isRunning = true;
+            started = true;
+            forgetPendingCalls();
+        }
+        run(budget);
+        return isRunning;
+    }
+    
+    // Executes byte codes until the program halts or the budget is used up
+    private void run(long budget) {
+        try {
+            while(isRunning && budget-- > 0) {
+                ByteCode code = codeAt(pc);
+                int address = pc;
+                instructionCount++;
+                code.execute(this);
+                if (dumpState == 1) {
+                    if (tracer != null) {
+                        tracer.step(this, address, code);
+                    } else {
+                        dumpStep(code);
+                    }
                 }
+                pc++;
             }
-            pc++;
-        } 
+        } catch (RuntimeException | Error e) {
+            forgetPendingCalls();
+            throw e;
+        }
+    }
+
+    // The memoized calls a run leaves unfinished must not take a later result
+    void forgetPendingCalls() {
+        if (memoCache != null) {
+            memoCache.forgetPending();
+        }
+    }
+    
+    // The byte code at an address that control has reached
+    private ByteCode codeAt(int address) {
+        if (address >= program.getSize()) {
+            pastEnd();
+        }
+        return program.getCode(address);
+    }
+
+    // The error of a program that runs past its last byte code without a HALT
+    static void pastEnd() {
+        throw new InterpreterException("Error! The program ran past its last byte code.");
+    }
+
+    // Prints the dump of a byte code that has just been executed
+    public void dumpStep(ByteCode code) {
+        flushOutputSink();
+        code.print(this);
+        // Do not provide dumping for the DumpCode instances
+        Class cl = code.getClass();
+        String className = cl.getName();
+        if (!(className.equals("interpreter.bytecode.DumpCode"))  ) {
+            runStack.dump();
+        }
+    }
+    
+    /**
+     * Runs one function, as if it had been called with the given arguments on
+     * an empty RunTimeStack, until it returns.  The compiling engine uses it
+     * for the functions it could not compile.
+     *
+     * @param entry the address of the function
+     * @param args the arguments, the first one at offset 0 of the frame
+     * @return the value the function returns; if the function halts the
+     * program instead, getIsRunning() is false afterwards
+     */
+    public int executeFunction(int entry, int[] args) {
+        for (int arg : args) {
+            runStack.push(arg);
+        }
+        callStack.push(-1, currentFrameStart());
+        int depth = callStack.size();
+        pc = entry;
+        isRunning = true;
+        try {
+            while (isRunning) {
+                instructionCount++;
+                codeAt(pc).execute(this);
+                if (callStack.size() < depth) {
+                    return runStack.peek();
+                }
+                pc++;
+            }
+        } catch (RuntimeException | Error e) {
+            forgetPendingCalls();
+            throw e;
+        }
+        return 0;
+    }
+    
+    /**
+     * Answers the CALL at the pc from the MemoCache, if it calls a pure
+     * function whose result the cache holds: the frame ARGS created is
+     * replaced by the result, as the function's RETURN would.  Otherwise the
+     * result is remembered when the function returns.
+     *
+     * @param target the address of the function
+     * @return true if the call has been answered and must not be made
+     */
+    public boolean recallResult(int target) {
+        if (memoCache == null || dumpState == 1) {
+            return false;
+        }
+        int argc = memoCache.argumentsAt(pc);
+        if (argc < 0) {
+            return false;
+        }
+        int frameStart = runStack.peekFrameStack();
+        int[] args = new int[argc];
+        int i;
+        for (i = 0; i < argc; i++) {
+            args[i] = runStack.getValueAt(frameStart + i);
+        }
+        Integer result = memoCache.lookup(new MemoCache.Key(target, args),
+                callStack.size() + 1);
+        if (result == null) {
+            return false;
+        }
+        // the frame holds at least the result when a pure function returns
+        runStack.push(result);
+        lastResult = runStack.popFrame();
+        return true;
+    }
+    
+    /**
+     * Calls the function at the target in place of the current function, as
+     * ARGS, CALL and the RETURN after them would: the arguments on top of the
+     * stack replace the current frame, and control goes to the target without
+     * a return address, so the function returns to the current function's
+     * caller.  Outside a function, or when the arguments reach below the
+     * current frame, it is an ordinary call, and the RETURN after it returns.
+     *
+     * @param numberOfArgs the number of arguments
+     * @param target the address of the function
+     */
+    public void tailCall(int numberOfArgs, int target) {
+        if (callStack.size() == 0
+                || numberOfArgs > runStack.sizeOfRunStack() - runStack.peekFrameStack()) {
+            createArgsFrame(numberOfArgs);
+            callFunction(target);
+            return;
+        }
+        runStack.reuseFrame(numberOfArgs);
+        pc = target - 1; // the pc is incremented after execution
+    }
+    
+    // Transfers control to the function at the target, as CALL does
+    public void callFunction(int target) {
+        pushAddrsStack();
+        pc = target - 1; // the pc is incremented after execution
+    }
+    
+    // Transfers control to the target, as GOTO does
+    public void goTo(int target) {
+        pc = target - 1;
     }
     
     public int popRunStack() {
@@ -123,13 +427,19 @@ public class VirtualMachine {
     
     
     public int storeRunStack(int offset) {
-        return runStack.store(offset);
+        lastResult = runStack.store(offset);
+        return lastResult;
     }
     
     public int loadRunStack(int offset) {
         return runStack.load(offset);
     }
     
+    // Returns the value a LOAD of the offset would push, without pushing it
+    public int frameValueAt(int offset) {
+        return runStack.getValueAt(runStack.peekFrameStack() + offset);
+    }
+    
     public void popLevelsOffRunStack(int levels) {
         runStack.popLevels(levels); 
     }
@@ -156,20 +466,27 @@ public class VirtualMachine {
         return runStack.peekFrameStack();
     }
     
+    /* The start of the frame on top of the RunTimeStack; a stack that is not
+     * empty always has a frame
+     */
+    private int currentFrameStart() {
+        return runStack.sizeOfRunStack() == 0 ? 0 : runStack.peekFrameStack();
+    }
+    
     public int popAddrsStack() {
-        return (int)returnAddrs.pop();
+        return callStack.pop();
     }
     
     public void pushAddrsStack() {
-        returnAddrs.push(pc); 
+        callStack.push(pc, currentFrameStart());
     }
     public int pushAddrsStack(int i) {
-        returnAddrs.push(i);
-        return (int)returnAddrs.peek();
+        callStack.push(i, currentFrameStart());
+        return i;
     }
     
     public int peekAddrsStack() {
-        return (int)returnAddrs.peek();
+        return callStack.peekReturnAddress();
     }
     
     public void setDump(int state) {
@@ -177,12 +494,37 @@ public class VirtualMachine {
     }
 
     public int returnAfterCall () {
-        pc = returnAddrs.pop();
-        return runStack.popFrame();
+        int depth = callStack.size();
+        pc = callStack.pop();
+        lastResult = runStack.popFrame();
+        if (memoCache != null) {
+            memoCache.returned(depth, lastResult);
+        }
+        return lastResult;
     }
     
     // Prompts user to enter a number and pushes it to RunTimeStack
     public int read() {
+        return pushRunStack(readInput());
+    }
+    
+    // Prompts user to enter a number and returns it
+    public int readInput() {
+        int value = nextInput();
+        if (tracer != null) {
+            tracer.input(value);
+        }
+        return value;
+    }
+    
+    private int nextInput() {
+        if (inputSource != null) {
+            try {
+                return inputSource.nextInt();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         int inputNumber=0;
         Scanner input;
         while (true) {
@@ -190,23 +532,46 @@ public class VirtualMachine {
                 input = new Scanner(System.in);
                 ui.print("\nEnter an integer, or -1 to quit: ");
                 inputNumber = input.nextInt();
-                if (inputNumber == -1) {
-                    System.out.println("Terminating program.");
-                    System.exit(0);
-                }
                 break;
             } catch (Exception e) {
                 ui.print("Invalid input.\n");
             }
         }
-        pushRunStack(inputNumber);
+        if (inputNumber == -1) {
+            // the user has no more input; the program ends as in batch mode
+            System.out.println("Terminating program.");
+            throw new EndOfInputException();
+        }
         return inputNumber;
     }
     
     public int write() {
-        int topOfStack = runStack.peek();
-        ui.print("\n"+topOfStack+"\n");
-        return topOfStack;
+        return writeValue(runStack.peek());
+    }
+    
+    // Outputs a value the way the WRITE byte code does
+    public int writeValue(int value) {
+        if (outputSink != null) {
+            try {
+                outputSink.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return value;
+        }
+        ui.print("\n"+value+"\n");
+        return value;
+    }
+    
+    // Keeps the batch output in order with the dump, which goes to System.out
+    private void flushOutputSink() {
+        if (outputSink != null) {
+            try {
+                outputSink.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
     
     public void setReadWrite (int newState) {
@@ -217,90 +582,13 @@ public class VirtualMachine {
         return readWrite;
     }
     
+    public int getLastResult() {
+        return lastResult;
+    }
+    
     // carries out operations of the BOP codes on the top two elements of stack
-    public int doOperation (int firstOperand, int secondOperand, String op) {
-        int result;
-        switch (op) {
-            case "+": {
-                result = firstOperand + secondOperand;
-                break;
-            }
-            case "-": {
-                result = secondOperand - firstOperand;
-                break;
-            }
-            case "*": {
-                result = secondOperand * firstOperand;
-                break;
-            }
-            case "/": {
-                result = secondOperand / firstOperand;
-                break;
-            }
-            case "==": {
-                if (secondOperand == firstOperand) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            case "!=": {
-                if (secondOperand == firstOperand) {
-                    result = 0;
-                }
-                else result = 1;
-                break;
-            }
-            case "<=": {
-                if (secondOperand <= firstOperand) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            case "<": {
-                if (secondOperand < firstOperand) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            case ">=": {
-                if (secondOperand >= firstOperand) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            case ">": {
-                if (secondOperand > firstOperand) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            case "|": {
-                if ( (secondOperand!=0) || (firstOperand!=0) ) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            case "&": {
-                if ( (secondOperand!=0) && (firstOperand!=0) ) {
-                    result = 1;
-                }
-                else result = 0;
-                break;
-            }
-            default: {
-                result = -1;
-                ui.print("\nOperation not recognized.\n");
-            }
-        } // end switch
-        
-        return pushRunStack(result);
-        
+    public int doOperation (int firstOperand, int secondOperand, Operator op) {
+        return pushRunStack(op.apply(firstOperand, secondOperand));
     }
 
 
@@ -0,0 +1,122 @@
+package interpreter.benchmark;
+
+import interpreter.ByteCode;
+import interpreter.CodeTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * LoadTimeBenchmark compares the two ways of creating the byte codes of a
+ * program while it is loaded: looking up a class name and instantiating it by
+ * reflection, as the loader used to do, and calling the factory registered in
+ * a CodeTable.
+ * The lines of the bytecode file are tokenized once up front, so only the
+ * creation and initialization of the byte codes is timed.
+ *
+ * Usage: java interpreter.benchmark.LoadTimeBenchmark <file>.x.cod [copies] [rounds]
+ * where copies is the number of times the file is repeated to simulate a large
+ * program (default 1000) and rounds the number of timed rounds (default 20).
+ */
+public class LoadTimeBenchmark {
+
+    private static final int WARMUP_ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java interpreter.benchmark.LoadTimeBenchmark "
+                    + "<file>.x.cod [copies] [rounds]");
+            System.exit(1);
+        }
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        List<String[]> lines = new ArrayList<>();
+        List<String> text = Files.readAllLines(Path.of(args[0]));
+        int i;
+        for (i = 0; i < copies; i++) {
+            for (String line : text) {
+                StringTokenizer st = new StringTokenizer(line);
+                if (!st.hasMoreTokens()) continue;
+                String[] tokens = new String[st.countTokens()];
+                int j = 0;
+                while (st.hasMoreTokens()) {
+                    tokens[j++] = st.nextToken();
+                }
+                lines.add(tokens);
+            }
+        }
+
+        String[] classNames = classNamesByOpcode();
+        for (i = 0; i < WARMUP_ROUNDS; i++) {
+            loadByReflection(lines, classNames);
+            loadByRegistry(lines);
+        }
+        long reflectionNanos = 0, registryNanos = 0;
+        for (i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            loadByReflection(lines, classNames);
+            reflectionNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            loadByRegistry(lines);
+            registryNanos += System.nanoTime() - start;
+        }
+
+        double codes = (double) lines.size() * rounds;
+        System.out.println("Byte codes per round: " + lines.size());
+        System.out.printf("Reflection: %8.1f ns per byte code%n", reflectionNanos / codes);
+        System.out.printf("Registry:   %8.1f ns per byte code%n", registryNanos / codes);
+        System.out.printf("Speedup:    %8.2fx%n", (double) reflectionNanos / registryNanos);
+    }
+
+    // The fully qualified class name of each byte code, indexed by opcode
+    private static String[] classNamesByOpcode() {
+        String[] classNames = new String[CodeTable.FORMAL + 1];
+        int opcode;
+        for (opcode = 0; opcode < classNames.length; opcode++) {
+            classNames[opcode] = CodeTable.INTERPRETER.create(opcode).getClass().getName();
+        }
+        return classNames;
+    }
+
+    private static int loadByReflection(List<String[]> lines, String[] classNames) {
+        int created = 0;
+        ArrayList<String> args = new ArrayList<>();
+        for (String[] tokens : lines) {
+            ByteCode bc;
+            try {
+                String className = classNames[CodeTable.opcodeOf(tokens[0])];
+                bc = (ByteCode) Class.forName(className)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+            created += init(bc, tokens, args);
+        }
+        return created;
+    }
+
+    private static int loadByRegistry(List<String[]> lines) {
+        int created = 0;
+        ArrayList<String> args = new ArrayList<>();
+        for (String[] tokens : lines) {
+            created += init(CodeTable.INTERPRETER.create(tokens[0]), tokens, args);
+        }
+        return created;
+    }
+
+    private static int init(ByteCode bc, String[] tokens, ArrayList<String> args) {
+        int i;
+        for (i = 1; i < tokens.length; i++) {
+            args.add(tokens[i]);
+        }
+        bc.init(args);
+        args.clear();
+        return 1;
+    }
+
+}
@@ -0,0 +1,161 @@
+package interpreter.benchmark;
+
+import interpreter.ByteCodeLoader;
+import interpreter.FastVirtualMachine;
+import interpreter.Program;
+import interpreter.ProgramLoadException;
+import interpreter.VirtualMachine;
+import interpreter.io.ArrayInputSource;
+import interpreter.io.ArrayOutputSink;
+import interpreter.io.EndOfInputException;
+import interpreter.register.RegisterProgram;
+import interpreter.register.RegisterVirtualMachine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * RegisterBenchmark compares the stack engines with the register engine on
+ * the same program and input: the VirtualMachine, the FastVirtualMachine and
+ * the RegisterVirtualMachine each run the program in batch mode, the outputs
+ * are checked to be the same, and the number of instructions executed and the
+ * time of a run are printed for each.  The stack engines count byte codes,
+ * the register engine three-address instructions.
+ *
+ * Usage: java interpreter.benchmark.RegisterBenchmark [--optimize] [--list]
+ *        <file>.x.cod [input file] [rounds]
+ * where the input file holds the integers to read, separated by white space
+ * (default none), and rounds is the number of timed runs of each engine
+ * (default 10).  --list also prints the three-address code.
+ */
+public class RegisterBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        boolean optimize = false, list = false;
+        int first = 0;
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--optimize")) {
+                optimize = true;
+            } else if (args[first].equals("--list")) {
+                list = true;
+            }
+            first++;
+        }
+        if (first == args.length) {
+            System.out.println("Usage: java interpreter.benchmark.RegisterBenchmark "
+                    + "[--optimize] [--list] <file>.x.cod [input file] [rounds]");
+            System.exit(1);
+        }
+        int[] input = args.length > first + 1 ? readInput(Path.of(args[first + 1])) : new int[0];
+        int rounds = args.length > first + 2 ? Integer.parseInt(args[first + 2]) : 10;
+
+        Program program;
+        try {
+            ByteCodeLoader bcl = new ByteCodeLoader(args[first]);
+            bcl.setOptimize(optimize);
+            program = bcl.loadCodes();
+        } catch (ProgramLoadException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        RegisterProgram registers = new RegisterVirtualMachine(program).getRegisterProgram();
+        if (registers == null) {
+            System.out.println(args[first] + " cannot be translated; the register engine "
+                    + "would run it as the VirtualMachine does");
+            System.exit(1);
+        }
+        if (list) {
+            System.out.print(registers);
+        }
+        System.out.println("Byte codes: " + program.getSize() + ", three-address instructions: "
+                + registers.getSize() + " in " + registers.getFunctionCount() + " functions");
+
+        String[] names = {"standard", "fast", "register"};
+        long[] counts = new long[names.length];
+        double[] millis = new double[names.length];
+        int[] expected = null;
+        int e, i;
+        for (e = 0; e < names.length; e++) {
+            Run run = null;
+            for (i = 0; i < WARMUP_ROUNDS; i++) {
+                run = run(e, program, input);
+            }
+            if (expected == null) {
+                expected = run.output;
+            } else if (!Arrays.equals(expected, run.output)) {
+                System.out.println("The " + names[e] + " engine gives different output");
+                System.exit(1);
+            }
+            counts[e] = run.instructions;
+            long nanos = 0;
+            for (i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                run(e, program, input);
+                nanos += System.nanoTime() - start;
+            }
+            millis[e] = nanos / 1e6 / rounds;
+        }
+
+        System.out.println("Engine      Instructions    ms per run");
+        for (e = 0; e < names.length; e++) {
+            System.out.printf("%-10s %13d %13.2f%n", names[e], counts[e], millis[e]);
+        }
+        int last = names.length - 1;
+        System.out.printf("Instructions: %.2fx fewer than the VirtualMachine, "
+                + "%.2fx fewer than the FastVirtualMachine%n",
+                (double) counts[0] / counts[last], (double) counts[1] / counts[last]);
+        System.out.printf("Speedup:      %.2fx over the VirtualMachine, "
+                + "%.2fx over the FastVirtualMachine%n",
+                millis[0] / millis[last], millis[1] / millis[last]);
+    }
+
+    // A new machine of an engine, in the order of the names
+    private static VirtualMachine create(int engine, Program program) {
+        switch (engine) {
+            case 0:
+                return new VirtualMachine(program);
+            case 1:
+                return new FastVirtualMachine(program);
+            default:
+                return new RegisterVirtualMachine(program);
+        }
+    }
+
+    private static final class Run {
+        final long instructions;
+        final int[] output;
+
+        Run(long instructions, int[] output) {
+            this.instructions = instructions;
+            this.output = output;
+        }
+    }
+
+    // Runs the program once on a new machine of an engine, until it halts or the input ends
+    private static Run run(int engine, Program program, int[] input) {
+        VirtualMachine vm = create(engine, program);
+        ArrayOutputSink output = new ArrayOutputSink();
+        vm.setInputSource(new ArrayInputSource(input));
+        vm.setOutputSink(output);
+        try {
+            vm.executeProgram();
+        } catch (EndOfInputException e) {
+            // the program has read all of the input
+        }
+        return new Run(vm.getInstructionCount(), output.toArray());
+    }
+
+    private static int[] readInput(Path file) throws IOException {
+        String text = Files.readString(file).trim();
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+        return Arrays.stream(text.split("\\s+")).mapToInt(Integer::parseInt).toArray();
+    }
+
+}
@@ -15,6 +15,15 @@ public class ArgsCode extends ByteCode {
 
     private int numberArgs;
 
+    public int getNumberArgs() {
+        return numberArgs;
+    }
+
+    public void setNumberArgs(int newNumberArgs) {
+        checkNotFrozen();
+        numberArgs = newNumberArgs;
+    }
+
     public void init(ArrayList<String> args) {
         numberArgs = Integer.parseInt(args.get(0));
     }
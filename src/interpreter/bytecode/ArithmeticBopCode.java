@@ -0,0 +1,37 @@
+package interpreter.bytecode;
+
+import interpreter.Operator;
+import interpreter.VirtualMachine;
+
+/**
+ * The BOP of an arithmetic operator: +, -, * or /.
+ */
+public final class ArithmeticBopCode extends BopCode {
+
+    ArithmeticBopCode(Operator op) {
+        super(op);
+    }
+
+    @Override
+    public void execute(VirtualMachine vm) {
+        int topOperand = vm.popRunStack();
+        int secondOperand = vm.popRunStack();
+        int result;
+        switch (getOperator()) {
+            case ADD:
+                result = secondOperand + topOperand;
+                break;
+            case SUBTRACT:
+                result = secondOperand - topOperand;
+                break;
+            case MULTIPLY:
+                result = secondOperand * topOperand;
+                break;
+            default:
+                result = secondOperand / topOperand;
+                break;
+        }
+        vm.pushRunStack(result);
+    }
+
+}
@@ -2,34 +2,86 @@
 package interpreter.bytecode;
 
 import interpreter.ByteCode;
+import interpreter.Operator;
 import interpreter.VirtualMachine;
 
 import java.util.ArrayList;
 
 /**
  * BOP byte code: perform binary operations using two operands and a specified code indicating which operation to do
- * See the doOperation() method of the VirtualMachine.java file for all supported operators.
+ * See the Operator enum for all supported operators.  The operator is resolved
+ * when the byte code is initialized, so an unknown operator is reported while
+ * the program is loaded.
  * The operation of this byte code pops two values from the top of the Runtime Stack.
+ * The loader replaces each BopCode with the one forOperator() gives, whose
+ * execute() handles only the operators of one family.
  */
 public class BopCode extends ByteCode {
 
-    private String op = null;
-    int topOperand;
-    int secondOperand;
-    int result;
+    private Operator operator = null;
+
+    public BopCode() {
+    }
+
+    protected BopCode(Operator op) {
+        operator = op;
+    }
+
+    /**
+     * Creates the BOP of the given operator, as the subclass for the
+     * operator's family.
+     *
+     * @param op the operator
+     * @return a new BOP byte code
+     */
+    public static BopCode forOperator(Operator op) {
+        switch (op.getFamily()) {
+            case ARITHMETIC:
+                return new ArithmeticBopCode(op);
+            case COMPARISON:
+                return new ComparisonBopCode(op);
+            default:
+                return new LogicalBopCode(op);
+        }
+    }
+
+    /**
+     * Returns the BopCode of this one's operator family to execute in its
+     * place; a subclass, such as one of those families, is kept as it is.
+     *
+     * @return the byte code to put in the Program
+     */
+    public BopCode forFamily() {
+        return getClass() == BopCode.class ? forOperator(operator) : this;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    // The operator of a family's BopCode must be of that family
+    public void setOperator(Operator newOperator) {
+        checkNotFrozen();
+        if (getClass() != BopCode.class
+                && newOperator.getFamily() != operator.getFamily()) {
+            throw new IllegalArgumentException("Operation " + newOperator.getSymbol()
+                    + " is not of the family of " + operator.getSymbol());
+        }
+        operator = newOperator;
+    }
 
     public void init(ArrayList<String> args) {
-        op = args.get(0);
+        operator = Operator.fromSymbol(args.get(0));
     }
 
     public void print(VirtualMachine vm) {
-        System.out.println("BOP " + op);
+        System.out.println("BOP " + operator.getSymbol());
     }
 
     public void execute(VirtualMachine vm) {
-        topOperand = vm.popRunStack();
-        secondOperand = vm.popRunStack();
-        result = vm.doOperation(topOperand, secondOperand, op);
+        int topOperand = vm.popRunStack();
+        int secondOperand = vm.popRunStack();
+        vm.doOperation(topOperand, secondOperand, operator);
     }
 
 
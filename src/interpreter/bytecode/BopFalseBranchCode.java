@@ -0,0 +1,72 @@
+package interpreter.bytecode;
+
+import interpreter.ByteCode;
+import interpreter.Operator;
+import interpreter.VirtualMachine;
+
+import java.util.ArrayList;
+
+/**
+ * BopFalseBranchCode is a fused compare-and-branch: it does the work of a BOP
+ * immediately followed by a FALSEBRANCH.  The two operands are popped, and if
+ * the result of the operator is 0 program execution jumps to the target,
+ * without the result ever being pushed to the RunTimeStack.
+ * It does not appear in bytecode files; the optimizer and the
+ * SuperinstructionSelector create it.
+ */
+public class BopFalseBranchCode extends ByteCode implements JumpCode {
+
+    private Operator operator;
+    private String label;
+    private int target;
+
+    public BopFalseBranchCode() {
+    }
+
+    public BopFalseBranchCode(Operator op, String falseLabel) {
+        operator = op;
+        label = falseLabel;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public void setTarget(int newTarget) {
+        checkNotFrozen();
+        target = newTarget;
+    }
+
+    public void init(ArrayList<String> args) {
+        operator = Operator.fromSymbol(args.get(0));
+        label = args.get(1);
+    }
+
+    public void print(VirtualMachine vm) {
+        System.out.println("BOP " + operator.getSymbol());
+        System.out.println("FALSEBRANCH " + label);
+    }
+
+    public void execute(VirtualMachine vm) {
+        int topOperand = vm.popRunStack();
+        int secondOperand = vm.popRunStack();
+        if (operator.apply(topOperand, secondOperand) == 0) {
+            // the VM increments the pc after execution, hence the -1
+            vm.setPC(target - 1);
+        }
+    }
+
+}
@@ -13,7 +13,7 @@ import java.util.ArrayList;
  * sets the program counter to the first instruction of the function to be executed.
  */
 
-public class CallCode extends ByteCode {
+public class CallCode extends ByteCode implements JumpCode {
     private String label=null;
     private int target;
     
@@ -21,7 +21,13 @@ public class CallCode extends ByteCode {
         return label;
     }
     
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
+    
     public void setTarget (int newTarget) {
+        checkNotFrozen();
         target = newTarget;
     }
     
@@ -55,15 +61,14 @@ public class CallCode extends ByteCode {
     }
     
     public void execute(VirtualMachine vm) {
-        // push the current instruction address to the addrsStack in vm
-        vm.pushAddrsStack();
-        
         /*
-         * Request that VM change the pc; the "-1" is because the VM will 
-         * increment the program counter after execution, so for the next execution, the
-         * -1 here ensures that it executes the desired code
+         * Request that VM push the current instruction address to the
+         * addrsStack and change the pc to the target, unless the call of a
+         * pure function is answered from the MemoCache
          */
-        vm.setPC(target-1); 
+        if (!vm.recallResult(target)) {
+            vm.callFunction(target);
+        }
         
     }
     
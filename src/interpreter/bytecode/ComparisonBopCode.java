@@ -0,0 +1,44 @@
+package interpreter.bytecode;
+
+import interpreter.Operator;
+import interpreter.VirtualMachine;
+
+/**
+ * The BOP of a comparison: ==, !=, <=, <, >= or >.  It pushes 1 if the
+ * comparison holds and 0 if it does not.
+ */
+public final class ComparisonBopCode extends BopCode {
+
+    ComparisonBopCode(Operator op) {
+        super(op);
+    }
+
+    @Override
+    public void execute(VirtualMachine vm) {
+        int topOperand = vm.popRunStack();
+        int secondOperand = vm.popRunStack();
+        boolean holds;
+        switch (getOperator()) {
+            case EQUAL:
+                holds = secondOperand == topOperand;
+                break;
+            case NOT_EQUAL:
+                holds = secondOperand != topOperand;
+                break;
+            case LESS_OR_EQUAL:
+                holds = secondOperand <= topOperand;
+                break;
+            case LESS:
+                holds = secondOperand < topOperand;
+                break;
+            case GREATER_OR_EQUAL:
+                holds = secondOperand >= topOperand;
+                break;
+            default:
+                holds = secondOperand > topOperand;
+                break;
+        }
+        vm.pushRunStack(holds ? 1 : 0);
+    }
+
+}
@@ -14,6 +14,15 @@ public class DumpCode extends ByteCode {
 
     private int dumpState;
 
+    public int getDumpState() {
+        return dumpState;
+    }
+
+    public void setDumpState(int state) {
+        checkNotFrozen();
+        dumpState = state;
+    }
+
     public void init(ArrayList<String> args) {
         String state = args.get(0);
         if (state.equals("ON")) {
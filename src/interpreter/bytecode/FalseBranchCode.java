@@ -11,7 +11,7 @@ import java.util.ArrayList;
  * to the instruction indicated by the private variable target
  */
 
-public class FalseBranchCode extends ByteCode {
+public class FalseBranchCode extends ByteCode implements JumpCode {
     private String label;
     private int target;
     
@@ -39,8 +39,18 @@ public class FalseBranchCode extends ByteCode {
         return label;
     }
     
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
+    
     public void setTarget(int position) {
+        checkNotFrozen();
         target = position;
     }
     
+    public int getTarget() {
+        return target;
+    }
+    
 } // end class
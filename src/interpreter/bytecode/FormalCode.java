@@ -17,6 +17,24 @@ public class FormalCode extends ByteCode {
     private String varName;
     private int offset;
     
+    public String getVarName() {
+        return varName;
+    }
+    
+    public void setVarName(String newVarName) {
+        checkNotFrozen();
+        varName = newVarName;
+    }
+    
+    public int getOffset() {
+        return offset;
+    }
+    
+    public void setOffset(int newOffset) {
+        checkNotFrozen();
+        offset = newOffset;
+    }
+    
     public void init(ArrayList<String> args) {
         varName = args.get(0);
         offset = Integer.parseInt(args.get(1));
@@ -19,6 +19,25 @@ public class FunctionCode extends ByteCode {
     private int startLine;
     private int endLine;
     
+    public String getName() {
+        return name;
+    }
+    
+    public int getStartLine() {
+        return startLine;
+    }
+    
+    public int getEndLine() {
+        return endLine;
+    }
+    
+    public void setFunctionInfo(String newName, int newStartLine, int newEndLine) {
+        checkNotFrozen();
+        name = newName;
+        startLine = newStartLine;
+        endLine = newEndLine;
+    }
+    
     public void init(ArrayList<String> args) {
         name = args.get(0); 
         startLine = Integer.parseInt(args.get(1)); 
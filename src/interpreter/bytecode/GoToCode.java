@@ -11,7 +11,7 @@ import java.util.ArrayList;
  * The instruction to which to jump is indicated by the integer field target.
  */
 
-public class GoToCode extends ByteCode {
+public class GoToCode extends ByteCode implements JumpCode {
     
     private String label;
     private int target;
@@ -25,26 +25,29 @@ public class GoToCode extends ByteCode {
     }
     
     /*
-     * Request that VM change the pc; the "-1" is because the VM will 
-     * increment the pc after execution, so for the next execution, the
-     * -1 here ensures that it executes the desired code
+     * Request that VM change the pc; the VM also counts the jumps back to the
+     * start of a loop when tiered execution is on
      */
     public void execute(VirtualMachine vm) {
-        vm.setPC(target-1);
+        vm.goTo(target);
     }
     
     public void setTarget(int i) {
+        checkNotFrozen();
         target = i;
     }
     
+    public int getTarget() {
+        return target;
+    }
+    
     public String getLabel() {
         return label;
     }
     
-    
-    
-    
-    
-    
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
     
 }
@@ -0,0 +1,20 @@
+package interpreter.bytecode;
+
+/**
+ * JumpCode is implemented by the byte codes that transfer control to a label:
+ * GOTO, FALSEBRANCH and CALL, and the byte codes fused from them, such as
+ * the TailCallCode.
+ * Program resolves the label of each JumpCode into the address of the
+ * instruction to jump to, and optimization passes use it to retarget jumps.
+ */
+public interface JumpCode {
+
+    String getLabel();
+
+    void setLabel(String newLabel);
+
+    int getTarget();
+
+    void setTarget(int newTarget);
+
+}
@@ -43,5 +43,10 @@ public class LabelCode extends ByteCode {
         return label;
     }
 
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
+
 
 }
@@ -29,6 +29,11 @@ public class LineCode extends ByteCode {
         return lineNumber;
     }
 
+    public void setLineNumber(int newLineNumber) {
+        checkNotFrozen();
+        lineNumber = newLineNumber;
+    }
+
     public void execute(VirtualMachine vm) {
         Class cl = vm.getClass();
         String className = cl.getName();
@@ -23,10 +23,12 @@ public class LitCode extends ByteCode {
     }
 
     public void setValue(int newValue) {
+        checkNotFrozen();
         value = newValue;
     }
 
     public void setName(String newName) {
+        checkNotFrozen();
         name = newName;
     }
 
@@ -0,0 +1,53 @@
+package interpreter.bytecode;
+
+import interpreter.ByteCode;
+import interpreter.VirtualMachine;
+
+import java.util.ArrayList;
+
+/**
+ * LitStoreCode is a superinstruction: it does the work of a LIT followed by a
+ * STORE, as in "i = 0", storing the literal at the offset in the current frame.
+ * It does not appear in bytecode files; the SuperinstructionSelector creates
+ * it.
+ */
+public class LitStoreCode extends ByteCode {
+
+    private int value;
+    private int offset;
+
+    public LitStoreCode() {
+    }
+
+    public LitStoreCode(int value, int offset) {
+        this.value = value;
+        this.offset = offset;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void init(ArrayList<String> args) {
+        value = Integer.parseInt(args.get(0));
+        offset = Integer.parseInt(args.get(1));
+    }
+
+    public void print(VirtualMachine vm) {
+        System.out.println("LIT " + value);
+        System.out.println("STORE " + offset);
+    }
+
+    public void execute(VirtualMachine vm) {
+        /* Pushing and popping the literal drops the current frame when it is
+         * empty, so this goes through the RunTimeStack like LIT and STORE do.
+         */
+        vm.pushRunStack(value);
+        vm.storeRunStack(offset);
+    }
+
+}
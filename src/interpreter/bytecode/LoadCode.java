@@ -16,6 +16,24 @@ public class LoadCode extends ByteCode {
     private int offsetValue;
     private String name=null;
     
+    public int getOffset() {
+        return offsetValue;
+    }
+    
+    public void setOffset(int newOffset) {
+        checkNotFrozen();
+        offsetValue = newOffset;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String newName) {
+        checkNotFrozen();
+        name = newName;
+    }
+    
     public void init(ArrayList<String> args) {
         offsetValue=Integer.parseInt(args.get(0));
         if (args.size()==2) {
@@ -0,0 +1,61 @@
+package interpreter.bytecode;
+
+import interpreter.ByteCode;
+import interpreter.Operator;
+import interpreter.VirtualMachine;
+
+import java.util.ArrayList;
+
+/**
+ * LoadLitBopCode is a superinstruction: it does the work of a LOAD, a LIT and
+ * a BOP in a row, as in "n - 1".  The operator is applied to the value at the
+ * offset in the current frame and the literal, and only the result is pushed
+ * to the RunTimeStack.
+ * It does not appear in bytecode files; the SuperinstructionSelector creates
+ * it.
+ */
+public class LoadLitBopCode extends ByteCode {
+
+    private int offset;
+    private int value;
+    private Operator operator;
+
+    public LoadLitBopCode() {
+    }
+
+    public LoadLitBopCode(int offset, int value, Operator op) {
+        this.offset = offset;
+        this.value = value;
+        operator = op;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public void init(ArrayList<String> args) {
+        offset = Integer.parseInt(args.get(0));
+        value = Integer.parseInt(args.get(1));
+        operator = Operator.fromSymbol(args.get(2));
+    }
+
+    public void print(VirtualMachine vm) {
+        System.out.println("LOAD " + offset);
+        System.out.println("LIT " + value);
+        System.out.println("BOP " + operator.getSymbol());
+    }
+
+    public void execute(VirtualMachine vm) {
+        // the literal would have been on top of the loaded value
+        vm.pushRunStack(operator.apply(value, vm.frameValueAt(offset)));
+    }
+
+}
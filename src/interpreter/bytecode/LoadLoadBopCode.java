@@ -0,0 +1,65 @@
+package interpreter.bytecode;
+
+import interpreter.ByteCode;
+import interpreter.Operator;
+import interpreter.VirtualMachine;
+
+import java.util.ArrayList;
+
+/**
+ * LoadLoadBopCode is a superinstruction: it does the work of two LOADs and a
+ * BOP in a row, as in "a + b".  The operator is applied to the two values at
+ * the offsets in the current frame, and only the result is pushed to the
+ * RunTimeStack.
+ * It does not appear in bytecode files; the SuperinstructionSelector creates
+ * it.
+ */
+public class LoadLoadBopCode extends ByteCode {
+
+    private int firstOffset;
+    private int secondOffset;
+    private Operator operator;
+
+    public LoadLoadBopCode() {
+    }
+
+    public LoadLoadBopCode(int firstOffset, int secondOffset, Operator op) {
+        this.firstOffset = firstOffset;
+        this.secondOffset = secondOffset;
+        operator = op;
+    }
+
+    // The offset of the first LOAD, whose value ends up below the second
+    public int getFirstOffset() {
+        return firstOffset;
+    }
+
+    public int getSecondOffset() {
+        return secondOffset;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public void init(ArrayList<String> args) {
+        firstOffset = Integer.parseInt(args.get(0));
+        secondOffset = Integer.parseInt(args.get(1));
+        operator = Operator.fromSymbol(args.get(2));
+    }
+
+    public void print(VirtualMachine vm) {
+        System.out.println("LOAD " + firstOffset);
+        System.out.println("LOAD " + secondOffset);
+        System.out.println("BOP " + operator.getSymbol());
+    }
+
+    public void execute(VirtualMachine vm) {
+        int first = vm.frameValueAt(firstOffset);
+        // the second LOAD may read the slot the first one would have pushed
+        int second = vm.peekFramePointerStack() + secondOffset == vm.sizeOfRunStack()
+                ? first : vm.frameValueAt(secondOffset);
+        vm.pushRunStack(operator.apply(second, first));
+    }
+
+}
@@ -0,0 +1,24 @@
+package interpreter.bytecode;
+
+import interpreter.Operator;
+import interpreter.VirtualMachine;
+
+/**
+ * The BOP of a logical operator, | or &.  A value other than 0 is true, and
+ * the result is 1 or 0.
+ */
+public final class LogicalBopCode extends BopCode {
+
+    LogicalBopCode(Operator op) {
+        super(op);
+    }
+
+    @Override
+    public void execute(VirtualMachine vm) {
+        boolean top = vm.popRunStack() != 0;
+        boolean second = vm.popRunStack() != 0;
+        boolean holds = getOperator() == Operator.OR ? second || top : second && top;
+        vm.pushRunStack(holds ? 1 : 0);
+    }
+
+}
@@ -16,6 +16,12 @@ public class PopCode extends ByteCode {
     public int getNumberOfLevels() {
         return numberOfLevels;
     }
+    
+    public void setNumberOfLevels(int levels) {
+        checkNotFrozen();
+        numberOfLevels = levels;
+    }
+    
     public void init(ArrayList<String> args) {
         numberOfLevels = Integer.parseInt(args.get(0));
     }
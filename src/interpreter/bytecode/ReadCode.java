@@ -11,7 +11,6 @@ import java.util.ArrayList;
  */
 
 public class ReadCode extends ByteCode {
-    private int value;
 
     public void init(ArrayList<String> args) {
     }
@@ -21,7 +20,7 @@ public class ReadCode extends ByteCode {
     }
 
     public void execute(VirtualMachine vm) {
-        value = vm.read();
+        vm.read();
     }
 
 }
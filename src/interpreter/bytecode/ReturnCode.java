@@ -13,7 +13,7 @@ import java.util.ArrayList;
 
 public class ReturnCode extends ByteCode {
     String label = null;
-    int returnValue;
+    int labelAddress; // the resolved address of the label
 
     public void init(ArrayList<String> args) {
         if (args.size() == 1) {
@@ -32,19 +32,19 @@ public class ReturnCode extends ByteCode {
             // get the base id, ignoring <<>> in label
             int indexOfBrackets = label.indexOf("<<");
             String baseID = label.substring(0, indexOfBrackets);
-            System.out.print("exit " + baseID + ": " + returnValue);
+            System.out.print("exit " + baseID + ": " + vm.getLastResult());
         } else if (label != null) {
-            System.out.print(label + "   exit: " + returnValue);
+            System.out.print(label + "   exit: " + vm.getLastResult());
 
         } else {
             // account for RETURN from a READ or WRITE execution
             if (vm.getReadWrite() == 1) {
-                System.out.print("     exit READ: " + returnValue);
+                System.out.print("     exit READ: " + vm.getLastResult());
                 resetReadWriteFlag(vm);
 
             }
             if (vm.getReadWrite() == 2) {
-                System.out.print("     exit WRITE: " + returnValue);
+                System.out.print("     exit WRITE: " + vm.getLastResult());
                 resetReadWriteFlag(vm);
             }
         }
@@ -52,7 +52,7 @@ public class ReturnCode extends ByteCode {
     }
 
     public void execute(VirtualMachine vm) {
-        returnValue = vm.returnAfterCall();
+        vm.returnAfterCall();
         // for dumping, raise the appropriate read/write flag in the vm
         if (vm.getReadWrite() != 0) vm.setReadWrite(0);
     }
@@ -65,7 +65,17 @@ public class ReturnCode extends ByteCode {
         return label;
     }
 
-    public void setReturnValue(int value) {
-        returnValue = value;
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
+
+    public int getLabelAddress() {
+        return labelAddress;
+    }
+
+    public void setLabelAddress(int address) {
+        checkNotFrozen();
+        labelAddress = address;
     }
 }
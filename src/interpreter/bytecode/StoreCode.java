@@ -14,7 +14,24 @@ import java.util.ArrayList;
 public class StoreCode extends ByteCode {
     private int offsetValue;
     private String name = null;
-    private int storedValue;
+
+    public int getOffset() {
+        return offsetValue;
+    }
+
+    public void setOffset(int newOffset) {
+        checkNotFrozen();
+        offsetValue = newOffset;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String newName) {
+        checkNotFrozen();
+        name = newName;
+    }
 
     public void init(ArrayList<String> args) {
         offsetValue = Integer.parseInt(args.get(0));
@@ -27,14 +44,13 @@ public class StoreCode extends ByteCode {
         System.out.print("STORE " + offsetValue);
         if (name != null) {
             System.out.print(" " + name);
-            System.out.print("    " + name + " = " + storedValue);
+            System.out.print("    " + name + " = " + vm.getLastResult());
         }
         System.out.print("\n");
     }
 
     public void execute(VirtualMachine vm) {
-        storedValue = vm.storeRunStack(offsetValue);
-
+        vm.storeRunStack(offsetValue);
     }
 
 }
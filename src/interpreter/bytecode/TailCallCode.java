@@ -0,0 +1,67 @@
+package interpreter.bytecode;
+
+import interpreter.ByteCode;
+import interpreter.VirtualMachine;
+
+import java.util.ArrayList;
+
+/**
+ * TailCallCode does the work of an ARGS followed by a CALL whose function
+ * returns straight away, as in "return f(n - 1)": the arguments replace the
+ * current frame and control goes to the function without a return address,
+ * so it returns to the caller of the current function and a tail-recursive
+ * function runs in constant space.  The RETURN after the call stays in the
+ * program, for the cases VirtualMachine.tailCall() makes an ordinary call.
+ * It does not appear in bytecode files; the TailCallEliminator creates it.
+ */
+public class TailCallCode extends ByteCode implements JumpCode {
+
+    private int numberArgs;
+    private String label;
+    private int target;
+
+    public TailCallCode() {
+    }
+
+    public TailCallCode(int numberArgs, String label) {
+        this.numberArgs = numberArgs;
+        this.label = label;
+    }
+
+    public int getNumberArgs() {
+        return numberArgs;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String newLabel) {
+        checkNotFrozen();
+        label = newLabel;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public void setTarget(int newTarget) {
+        checkNotFrozen();
+        target = newTarget;
+    }
+
+    public void init(ArrayList<String> args) {
+        numberArgs = Integer.parseInt(args.get(0));
+        label = args.get(1);
+    }
+
+    public void print(VirtualMachine vm) {
+        System.out.println("ARGS " + numberArgs);
+        System.out.println("CALL " + label);
+    }
+
+    public void execute(VirtualMachine vm) {
+        vm.tailCall(numberArgs, target);
+    }
+
+}
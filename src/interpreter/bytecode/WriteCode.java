@@ -11,16 +11,6 @@ import java.util.ArrayList;
  */
 public class WriteCode extends ByteCode {
 
-    private int value;
-
-    public void setValue(int newValue) {
-        this.value = newValue;
-    }
-
-    public int getValue() {
-        return this.value;
-    }
-
     public void init(ArrayList<String> args) {
     }
 
@@ -29,7 +19,7 @@ public class WriteCode extends ByteCode {
     }
 
     public void execute(VirtualMachine vm) {
-        value = vm.write();
+        vm.write();
     }
 
 }
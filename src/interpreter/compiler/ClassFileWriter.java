@@ -0,0 +1,321 @@
+package interpreter.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * ClassFileWriter is a small writer of JVM class files, with just what the
+ * JvmCompiler needs: a constant pool, static fields, and static methods whose
+ * code is built with a MethodWriter.
+ * The class files have version 49, which the JVM verifies without a
+ * StackMapTable, so no stack map frames have to be computed.
+ */
+
+final class ClassFileWriter {
+
+    static final int ACC_PUBLIC = 0x0001, ACC_STATIC = 0x0008,
+        ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    // The JVM opcodes the JvmCompiler emits
+    static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+        ILOAD = 0x15, ALOAD_0 = 0x2a, IALOAD = 0x2e, ISTORE = 0x36, IASTORE = 0x4f, POP = 0x57, DUP = 0x59,
+        IADD = 0x60, ISUB = 0x64, IMUL = 0x68, IDIV = 0x6c, IOR = 0x80,
+        IFEQ = 0x99, IFNE = 0x9a, IFLE = 0x9e, IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0,
+        IF_ICMPLT = 0xa1, IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4,
+        GOTO = 0xa7, IRETURN = 0xac, RETURN = 0xb1, GETSTATIC = 0xb2,
+        INVOKEVIRTUAL = 0xb6, INVOKESTATIC = 0xb8, NEWARRAY = 0xbc,
+        ATHROW = 0xbf, WIDE = 0xc4;
+
+    private static final int T_INT = 10;
+
+    private final String className;
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final HashMap<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<MethodWriter> methods = new ArrayList<>();
+
+    /**
+     * @param className the internal name of the class, such as
+     * "interpreter/compiler/generated/CompiledProgram"
+     */
+    ClassFileWriter(String className) {
+        this.className = className;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    // Adds a public static field
+    void addField(String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    // Adds a public static method; its code is written with the MethodWriter
+    MethodWriter addMethod(String name, String descriptor) {
+        MethodWriter method = new MethodWriter(utf8(name), utf8(descriptor));
+        methods.add(method);
+        return method;
+    }
+
+    // Returns the class file; finish() must have been called on every method
+    byte[] toByteArray() {
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        int code = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            poolOut.flush();
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // no interfaces
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (MethodWriter method : methods) {
+                method.write(out, code);
+            }
+            out.writeShort(0); // no attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> out.writeUTF(value));
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, 7, out -> out.writeShort(name));
+    }
+
+    int integer(int value) {
+        return constant("I" + value, 3, out -> out.writeInt(value));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerClass = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, 12, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant(tag + owner + "." + name + descriptor, tag, out -> {
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface ConstantBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Returns the index of a constant, adding it to the pool the first time
+    private int constant(String key, int tag, ConstantBody body) {
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            poolOut.writeByte(tag);
+            body.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        if (poolCount == 0xFFFF) {
+            throw new IllegalStateException("constant pool too large");
+        }
+        constants.put(key, poolCount);
+        return poolCount++;
+    }
+
+    /**
+     * MethodWriter builds the code of one method.  Branches go to labels,
+     * which are numbered from 0 and marked when their position is reached;
+     * the branch offsets are filled in when the class file is written.
+     */
+    final class MethodWriter {
+
+        private final int name;
+        private final int descriptor;
+        private byte[] code = new byte[256];
+        private int length = 0;
+        private int[] labels = new int[0];
+        // each branch: position of the opcode, position of the offset, label
+        private final List<int[]> branches = new ArrayList<>();
+        private int maxStack;
+        private int maxLocals;
+
+        private MethodWriter(int name, int descriptor) {
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        void setMaxs(int maxStack, int maxLocals) {
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        // Creates count labels and returns the number of the first one
+        int newLabel(int count) {
+            int first = labels.length;
+            labels = Arrays.copyOf(labels, first + count);
+            Arrays.fill(labels, first, first + count, -1);
+            return first;
+        }
+
+        void mark(int label) {
+            labels[label] = length;
+        }
+
+        void op(int opcode) {
+            put(opcode);
+        }
+
+        void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                put(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                put(BIPUSH);
+                put(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                put(SIPUSH);
+                putShort(value);
+            } else {
+                put(LDC_W);
+                putShort(integer(value));
+            }
+        }
+
+        void iload(int local) {
+            local(ILOAD, local);
+        }
+
+        void istore(int local) {
+            local(ISTORE, local);
+        }
+
+        private void local(int opcode, int local) {
+            if (local <= 0xFF) {
+                put(opcode);
+                put(local);
+            } else {
+                put(WIDE);
+                put(opcode);
+                putShort(local);
+            }
+        }
+
+        void jump(int opcode, int label) {
+            branches.add(new int[] {length, length + 1, label});
+            put(opcode);
+            putShort(0);
+        }
+
+        void newIntArray() {
+            put(NEWARRAY);
+            put(T_INT);
+        }
+
+        void getStatic(String owner, String name, String descriptor) {
+            put(GETSTATIC);
+            putShort(fieldRef(owner, name, descriptor));
+        }
+
+        void invokeStatic(String owner, String name, String descriptor) {
+            put(INVOKESTATIC);
+            putShort(methodRef(owner, name, descriptor));
+        }
+
+        void invokeVirtual(String owner, String name, String descriptor) {
+            put(INVOKEVIRTUAL);
+            putShort(methodRef(owner, name, descriptor));
+        }
+
+        private void put(int b) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length << 1);
+            }
+            code[length++] = (byte) b;
+        }
+
+        private void putShort(int s) {
+            put(s >> 8);
+            put(s);
+        }
+
+        /**
+         * Fills in the branch offsets once all the code has been written.
+         *
+         * @throws IllegalStateException if the method is too large for a
+         * class file or a label was never marked
+         */
+        void finish() {
+            if (length >= 0xFFFF || maxLocals > 0xFFFF || maxStack > 0xFFFF) {
+                throw new IllegalStateException("method too large");
+            }
+            for (int[] branch : branches) {
+                int offset = labels[branch[2]] - branch[0];
+                if (labels[branch[2]] < 0 || offset != (short) offset) {
+                    throw new IllegalStateException("branch out of range");
+                }
+                code[branch[1]] = (byte) (offset >> 8);
+                code[branch[1] + 1] = (byte) offset;
+            }
+        }
+
+        private void write(DataOutputStream out, int codeAttribute) throws IOException {
+            out.writeShort(ACC_PUBLIC | ACC_STATIC);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(0); // no exception table
+            out.writeShort(0); // no attributes
+        }
+
+    }
+
+}
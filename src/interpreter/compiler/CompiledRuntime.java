@@ -0,0 +1,88 @@
+package interpreter.compiler;
+
+import interpreter.CallDepthExceededException;
+import interpreter.InterpreterException;
+import interpreter.VirtualMachine;
+
+/**
+ * CompiledRuntime provides the services of the virtual machine to the code
+ * generated by the JvmCompiler: reading and writing integers exactly as the
+ * READ and WRITE byte codes do, and running the functions that could not be
+ * compiled in the interpreter.
+ * Once the thread running the compiled code has been interrupted, the next
+ * READ or WRITE ends the program.
+ * The methods are public so that the generated class, which is defined by its
+ * own class loader, can call them.
+ */
+
+public final class CompiledRuntime {
+
+    // Thrown when a function run by the interpreter halts the program
+    static final class Halt extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Halt() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final VirtualMachine vm;
+
+    CompiledRuntime(VirtualMachine vm) {
+        this.vm = vm;
+    }
+
+    public int read() {
+        checkInterrupted();
+        return vm.readInput();
+    }
+
+    public void write(int value) {
+        checkInterrupted();
+        vm.writeValue(value);
+    }
+
+    // The number of calls the main program may nest
+    public int callsLeft() {
+        return vm.getMaxCallDepth();
+    }
+
+    // The error of a call beyond the maximum depth, for the compiled code to throw
+    public RuntimeException callDepthExceeded() {
+        return new CallDepthExceededException(vm.getMaxCallDepth());
+    }
+
+    /**
+     * Runs a function in the interpreter.
+     *
+     * @param entry the address of the function
+     * @param args the arguments, the first one at offset 0 of the frame
+     * @param callsLeft the number of calls that may still nest, counting the
+     * call of the function itself
+     * @return the value the function returns
+     */
+    public int interpret(int entry, int[] args, int callsLeft) {
+        VirtualMachine callee = new VirtualMachine(vm.getProgram());
+        callee.setMaxCallDepth(callsLeft);
+        callee.setInputSource(vm.getInputSource());
+        callee.setOutputSink(vm.getOutputSink());
+        callee.setTracer(vm.getTracer());
+        int value;
+        try {
+            value = callee.executeFunction(entry, args);
+        } catch (CallDepthExceededException e) {
+            throw callDepthExceeded();
+        }
+        if (!callee.getIsRunning()) {
+            throw new Halt();
+        }
+        return value;
+    }
+
+    private void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterpreterException("The program was interrupted");
+        }
+    }
+
+}
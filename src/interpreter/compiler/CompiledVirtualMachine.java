@@ -0,0 +1,87 @@
+package interpreter.compiler;
+
+import interpreter.CompactProgram;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * CompiledVirtualMachine is the execution engine that runs a Program as JVM
+ * bytecode: executeProgram() compiles it with the JvmCompiler and invokes the
+ * generated code, which the JVM then compiles to machine code like any other.
+ * The output is identical to that of the VirtualMachine, and the maximum call
+ * depth holds as it does there.
+ *
+ * A program that turns DUMP on, or that the JvmCompiler cannot compile, is
+ * run by the VirtualMachine's own loop instead.  The calls of the compiled
+ * functions are JVM calls, so the compiled code runs in a thread with a large
+ * stack to allow deep recursion (see LargeStackRunner); the thread is kept
+ * for the next run, and runBatch() runs many programs in it in turn.
+ * Compiled code cannot stop part way, so executeSlice() is left to the
+ * VirtualMachine, which interprets the program.
+ */
+
+public class CompiledVirtualMachine extends VirtualMachine {
+
+    private final CompactProgram compact;
+    private final LargeStackRunner largeStack = new LargeStackRunner();
+    private Class<?> compiled; // the compiled program, once it has been run
+    private boolean isCompiled = false; // whether compiling has been tried
+
+    public CompiledVirtualMachine(Program p) {
+        super(p);
+        compact = CompactProgram.lower(p);
+    }
+
+    @Override
+    public void executeProgram() {
+        if (!isCompiled) {
+            compiled = compact.usesDump() ? null : new JvmCompiler(compact).compile();
+            isCompiled = true;
+        }
+        if (compiled == null) {
+            super.executeProgram();
+            return;
+        }
+        Method run;
+        try {
+            compiled.getField("rt").set(null, new CompiledRuntime(this));
+            run = compiled.getMethod(JvmCompiler.MAIN_METHOD);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        setIsRunning(true);
+        largeStack.run(() -> {
+            try {
+                run.invoke(null);
+            } catch (InvocationTargetException e) {
+                if (!(e.getCause() instanceof CompiledRuntime.Halt)) {
+                    throw unchecked(e.getCause());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        setIsRunning(false);
+    }
+
+    // Runs the work in the thread with a large stack, so a batch of runs enters it once
+    @Override
+    public void runBatch(Runnable work) {
+        largeStack.run(work);
+    }
+
+    static RuntimeException unchecked(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+}
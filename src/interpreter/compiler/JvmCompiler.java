@@ -0,0 +1,794 @@
+package interpreter.compiler;
+
+import interpreter.CodeTable;
+import interpreter.CompactProgram;
+import interpreter.Operator;
+import interpreter.compiler.ClassFileWriter.MethodWriter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static interpreter.compiler.ClassFileWriter.*;
+
+/**
+ * JvmCompiler translates a Program into a JVM class with one static method
+ * per function and one for the main program.  The functions are found by
+ * following the control flow from the target of each CALL up to its RETURNs,
+ * so a function is the FUNCTION...RETURN region reached from its label.
+ *
+ * The stack of a function is mapped onto the JVM locals: the element at
+ * offset k from the start of the frame lives in local k, and the arguments
+ * are the parameters of the method.  This needs the depth of the stack at
+ * every address to be known when compiling, so the compiler first follows the
+ * control flow of each function and computes it.  A CALL becomes an
+ * invokestatic of the method of the callee, READ and WRITE go through the
+ * CompiledRuntime, and jumps become JVM branches.  Each method takes, after
+ * its arguments, the number of calls it may still make before the maximum
+ * call depth is reached, and passes one less to the functions it calls.  A TailCallCode is a call
+ * like any other, except when a function calls itself, which becomes a jump
+ * back to the start of its method.
+ *
+ * A function that cannot be compiled only because it halts, takes more
+ * arguments than a JVM method can or is too large for one, is left to the
+ * interpreter: its callers call CompiledRuntime.interpret() instead.  The
+ * interpreter runs it apart from its callers, so a function whose stack depth
+ * is not the same on every path, or that depends on the way the RunTimeStack
+ * drops frames, cannot be left to it; if one is reached, nothing is compiled.
+ * If the main program cannot be compiled, compile() returns null.
+ *
+ * For tiered execution, a single function and the functions it calls can be
+ * compiled on their own, and so can the rest of a function or of the main
+ * program from the target of a loop's GOTO on, with the elements of the
+ * current frame as arguments, for on-stack replacement.  These classes have a
+ * static method "entry" that takes the arguments as an int array and the
+ * number of calls that may still be made.
+ * A JvmCompiler compiles one class at a time.
+ */
+
+public final class JvmCompiler {
+
+    static final String RUNTIME = "interpreter/compiler/CompiledRuntime";
+    static final String CLASS_NAME = "interpreter/compiler/generated/CompiledProgram";
+    static final String MAIN_METHOD = "run";
+    static final String ENTRY_METHOD = "entry";
+
+    private static final MethodType ENTRY_TYPE =
+            MethodType.methodType(int.class, int[].class, int.class);
+    // the most arguments a JVM method can take
+    private static final int MAX_ARGS = 254;
+
+    // the locals past the stack hold the number of calls left
+    private static final int MAX_DEPTH = 0xFFFF - 2;
+    private static final int NOT_REACHED = -1, NO_ARGS = -1;
+
+    /* A function, identified by its entry address and number of arguments.
+     * For on-stack replacement the entry is the target of a loop and the
+     * arguments are the elements of the frame.
+     */
+    private static final class Function {
+        final int entry;
+        final int argc;
+        final boolean isMain;
+        final boolean isLoop;
+        int[] depth;     // stack depth at each address, NOT_REACHED if unreachable
+        int[] pending;   // the count of the ARGS waiting for a CALL, or NO_ARGS
+        int maxDepth;
+        int maxArgs;
+        boolean compiled;
+        boolean least;   // whether depth holds the least depth of any path, for runsAlone()
+
+        Function(int entry, int argc, boolean isMain, boolean isLoop) {
+            this.entry = entry;
+            this.argc = argc;
+            this.isMain = isMain;
+            this.isLoop = isLoop;
+        }
+
+        String name() {
+            if (isLoop) {
+                return (isMain ? "loop" : "floop") + entry + "_" + argc;
+            }
+            return isMain ? MAIN_METHOD : methodName(entry, argc);
+        }
+
+        // the main program reads the number of calls left from the runtime
+        boolean takesCallsLeft() {
+            return !isMain || isLoop;
+        }
+
+        String descriptor() {
+            StringBuilder sb = new StringBuilder("(");
+            int i;
+            for (i = 0; i < argc; i++) {
+                sb.append('I');
+            }
+            if (takesCallsLeft()) {
+                sb.append('I');
+            }
+            return sb.append(isMain ? ")V" : ")I").toString();
+        }
+
+        // the local that holds the number of calls left
+        int callsLeft() {
+            return maxDepth + 1;
+        }
+    }
+
+    // Thrown by the analysis when a function cannot be compiled
+    private static final class NotCompilable extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        // whether the interpreter can run the function apart from its callers
+        final boolean runsAlone;
+
+        NotCompilable(String message) {
+            this(message, false);
+        }
+
+        NotCompilable(String message, boolean runsAlone) {
+            super(message, null, false, false);
+            this.runsAlone = runsAlone;
+        }
+    }
+
+    private static String methodName(int entry, int argc) {
+        return "f" + entry + "_" + argc;
+    }
+
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int[] secondOperands;
+    private final int[] thirdOperands;
+    private final int size;
+    private final Map<String, Function> functions = new LinkedHashMap<>();
+
+    public JvmCompiler(CompactProgram program) {
+        opcodes = program.getOpcodes();
+        operands = program.getOperands();
+        secondOperands = program.getSecondOperands();
+        thirdOperands = program.getThirdOperands();
+        size = opcodes.length;
+    }
+
+    /**
+     * Compiles the program and loads the generated class.
+     *
+     * @return the class, whose static field "rt" must be set to a
+     * CompiledRuntime before its method "run" is invoked, or null if the main
+     * program cannot be compiled
+     */
+    public Class<?> compile() {
+        return compile(new Function(0, 0, true, false));
+    }
+
+    /**
+     * Compiles one function and the functions it calls.
+     *
+     * @param entry the address of the function
+     * @param argc the number of arguments it is called with
+     * @param runtime the runtime of the generated code
+     * @return a handle of type (int[])int that calls the function, or null if
+     * the function cannot be compiled
+     */
+    public MethodHandle compileFunction(int entry, int argc, CompiledRuntime runtime) {
+        return entryOf(compile(new Function(entry, argc, false, false)), runtime);
+    }
+
+    /**
+     * Compiles the rest of a function, or of the main program, from the
+     * target of a loop on, for on-stack replacement.
+     *
+     * @param target the address the loop jumps back to
+     * @param depth the number of elements in the current frame
+     * @param isMain whether the loop is in the main program
+     * @param runtime the runtime of the generated code
+     * @return a handle of type (int[])int that continues the execution with
+     * the elements of the frame and returns the value the function returns (0
+     * for the main program, which has halted then), or null if the code
+     * cannot be compiled
+     */
+    public MethodHandle compileLoop(int target, int depth, boolean isMain,
+            CompiledRuntime runtime) {
+        return entryOf(compile(new Function(target, depth, isMain, true)), runtime);
+    }
+
+    private MethodHandle entryOf(Class<?> compiled, CompiledRuntime runtime) {
+        if (compiled == null) {
+            return null;
+        }
+        try {
+            compiled.getField("rt").set(null, runtime);
+            return MethodHandles.lookup().findStatic(compiled, ENTRY_METHOD, ENTRY_TYPE);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Compiles the root and the functions it calls into a class
+    private Class<?> compile(Function root) {
+        if (size == 0) {
+            return null;
+        }
+        functions.clear();
+        ArrayDeque<Function> work = new ArrayDeque<>();
+        functions.put(root.name(), root);
+        work.add(root);
+        while (!work.isEmpty()) {
+            Function f = work.poll();
+            try {
+                analyze(f);
+                f.compiled = true;
+            } catch (NotCompilable e) {
+                if (!e.runsAlone && !runsAlone(f)) {
+                    return null;
+                }
+                f.compiled = false;
+                continue;
+            }
+            // the callees are found once the depths are known
+            int pc;
+            for (pc = 0; pc < size; pc++) {
+                if (f.depth[pc] == NOT_REACHED) {
+                    continue;
+                }
+                Function callee = null;
+                if (opcodes[pc] == CodeTable.CALL) {
+                    callee = new Function(operands[pc], f.pending[pc], false, false);
+                } else if (opcodes[pc] == CodeTable.TAILCALL) {
+                    callee = new Function(operands[pc], secondOperands[pc], false, false);
+                }
+                if (callee != null && functions.putIfAbsent(callee.name(), callee) == null) {
+                    work.add(callee);
+                }
+            }
+        }
+
+        // a method too large for a class file is left to the interpreter
+        while (root.compiled) {
+            ClassFileWriter cw = new ClassFileWriter(CLASS_NAME);
+            cw.addField("rt", "L" + RUNTIME + ";");
+            if (!root.isMain || root.isLoop) {
+                emitEntry(cw, root);
+            }
+            boolean complete = true;
+            for (Function f : functions.values()) {
+                if (!f.compiled) continue;
+                try {
+                    emit(cw, f);
+                } catch (IllegalStateException e) {
+                    f.compiled = false;
+                    complete = false;
+                }
+            }
+            if (complete) {
+                return load(cw.toByteArray());
+            }
+        }
+        return null;
+    }
+
+    private Class<?> load(byte[] classFile) {
+        String name = CLASS_NAME.replace('/', '.');
+        ClassLoader loader = new ClassLoader(JvmCompiler.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String className) throws ClassNotFoundException {
+                if (!className.equals(name)) {
+                    throw new ClassNotFoundException(className);
+                }
+                return defineClass(name, classFile, 0, classFile.length);
+            }
+        };
+        try {
+            // initializing the class verifies it
+            return Class.forName(name, true, loader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /*
+     * Follows the control flow of a function from its entry and records the
+     * stack depth at each address it reaches.  The checks mirror the way the
+     * RunTimeStack behaves: popping a function's stack down to the start of
+     * its frame drops the frame, which the locals cannot express, so such a
+     * function is not compiled.  The main program's frame always starts at 0,
+     * so there it does no harm.  A HALT or too many arguments are reported
+     * once the whole function has been followed, as the interpreter can run
+     * the function alone only if nothing else stops it being compiled.
+     */
+    private void analyze(Function f) throws NotCompilable {
+        boolean halts = false;
+        f.depth = new int[size];
+        f.pending = new int[size];
+        Arrays.fill(f.depth, NOT_REACHED);
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        reach(f, f.entry, f.argc, NO_ARGS, work);
+        while (!work.isEmpty()) {
+            int pc = work.poll();
+            int d = f.depth[pc];
+            int args = f.pending[pc];
+            int opcode = opcodes[pc];
+            boolean isNoOp = opcode == CodeTable.LABEL || opcode == CodeTable.LINE
+                    || opcode == CodeTable.FUNCTION || opcode == CodeTable.FORMAL
+                    || opcode == CodeTable.DUMP;
+            if (args != NO_ARGS && opcode != CodeTable.CALL && !isNoOp) {
+                throw new NotCompilable("ARGS not followed by CALL at " + pc);
+            }
+            switch (opcode) {
+                case CodeTable.LIT:
+                case CodeTable.READ:
+                    reach(f, pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LOAD:
+                    checkOffset(operands[pc], d, pc);
+                    reach(f, pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.STORE:
+                    checkPop(f, d, 1, pc);
+                    checkOffset(operands[pc], d - 1, pc);
+                    if (d == 1) {
+                        throw new NotCompilable("STORE drops the frame at " + pc);
+                    }
+                    reach(f, pc + 1, d - 1, NO_ARGS, work);
+                    break;
+                case CodeTable.BOP:
+                    checkPop(f, d, 2, pc);
+                    reach(f, pc + 1, d - 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LOAD_LIT_BOP:
+                    checkOffset(operands[pc], d, pc);
+                    reach(f, pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    checkOffset(operands[pc], d, pc);
+                    // the second LOAD may reach the value the first one pushed
+                    checkOffset(secondOperands[pc], d + 1, pc);
+                    reach(f, pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LIT_STORE:
+                    if (d == 0) {
+                        throw new NotCompilable("LIT STORE drops the frame at " + pc);
+                    }
+                    checkOffset(secondOperands[pc], d, pc);
+                    reach(f, pc + 1, d, NO_ARGS, work);
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    checkPop(f, d, 1, pc);
+                    reach(f, operands[pc], d - 1, NO_ARGS, work);
+                    reach(f, pc + 1, d - 1, NO_ARGS, work);
+                    break;
+                case CodeTable.BOP_FALSEBRANCH:
+                    checkPop(f, d, 2, pc);
+                    reach(f, operands[pc], d - 2, NO_ARGS, work);
+                    reach(f, pc + 1, d - 2, NO_ARGS, work);
+                    break;
+                case CodeTable.GOTO:
+                    reach(f, operands[pc], d, NO_ARGS, work);
+                    break;
+                case CodeTable.ARGS:
+                    if (operands[pc] < 0 || operands[pc] > d) {
+                        throw new NotCompilable("ARGS outside the frame at " + pc);
+                    }
+                    reach(f, pc + 1, d, operands[pc], work);
+                    break;
+                case CodeTable.CALL:
+                    if (args == NO_ARGS) {
+                        throw new NotCompilable("CALL without ARGS at " + pc);
+                    }
+                    f.maxArgs = Math.max(f.maxArgs, args);
+                    reach(f, pc + 1, d - args + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.TAILCALL:
+                    if (secondOperands[pc] < 0 || secondOperands[pc] > d) {
+                        throw new NotCompilable("ARGS outside the frame at " + pc);
+                    }
+                    f.maxArgs = Math.max(f.maxArgs, secondOperands[pc]);
+                    reach(f, pc + 1, d - secondOperands[pc] + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.RETURN:
+                    if (f.isMain || d == 0) {
+                        throw new NotCompilable("RETURN outside a function at " + pc);
+                    }
+                    break;
+                case CodeTable.POP:
+                    if (operands[pc] > 0) {
+                        checkPop(f, d, operands[pc], pc);
+                    }
+                    reach(f, pc + 1, d - Math.max(operands[pc], 0), NO_ARGS, work);
+                    break;
+                case CodeTable.WRITE:
+                    if (d == 0) {
+                        throw new NotCompilable("WRITE on an empty frame at " + pc);
+                    }
+                    reach(f, pc + 1, d, NO_ARGS, work);
+                    break;
+                case CodeTable.HALT:
+                    halts |= !f.isMain;
+                    break;
+                case CodeTable.DUMP:
+                    if (operands[pc] == 1) {
+                        throw new NotCompilable("DUMP ON at " + pc);
+                    }
+                    reach(f, pc + 1, d, args, work);
+                    break;
+                case CodeTable.LABEL:
+                case CodeTable.LINE:
+                case CodeTable.FUNCTION:
+                case CodeTable.FORMAL:
+                    reach(f, pc + 1, d, args, work);
+                    break;
+                default:
+                    throw new NotCompilable("unknown opcode at " + pc);
+            }
+        }
+        if (halts) {
+            throw new NotCompilable("HALT in a function", true);
+        }
+        if (f.argc > MAX_ARGS) {
+            throw new NotCompilable("too many arguments", true);
+        }
+    }
+
+    private void reach(Function f, int pc, int d, int args, ArrayDeque<Integer> work)
+            throws NotCompilable {
+        if (pc < 0 || pc >= size) {
+            throw new NotCompilable("control leaves the program at " + pc);
+        }
+        if (d > MAX_DEPTH) {
+            throw new NotCompilable("stack too deep at " + pc);
+        }
+        if (f.depth[pc] == NOT_REACHED) {
+            f.depth[pc] = d;
+            f.pending[pc] = args;
+            f.maxDepth = Math.max(f.maxDepth, d);
+            work.add(pc);
+        } else if (f.least && f.pending[pc] == args) {
+            if (d < f.depth[pc]) {
+                f.depth[pc] = d;
+                work.add(pc);
+            }
+        } else if (f.depth[pc] != d || f.pending[pc] != args) {
+            throw new NotCompilable("stack depth differs between paths at " + pc);
+        }
+    }
+
+    /*
+     * Tells whether the interpreter can run a function that cannot be
+     * compiled apart from its callers.  A function whose stack depth differs
+     * between paths can be, if it passes the same checks with the least depth
+     * at each address, since none of them fails for a deeper stack.
+     */
+    private boolean runsAlone(Function f) {
+        Function least = new Function(f.entry, f.argc, f.isMain, f.isLoop);
+        least.least = true;
+        try {
+            analyze(least);
+            return true;
+        } catch (NotCompilable e) {
+            return e.runsAlone;
+        }
+    }
+
+    // A pop to the start of a function's frame drops the frame
+    private void checkPop(Function f, int d, int count, int pc) throws NotCompilable {
+        if (d < count || (d == count && !f.isMain)) {
+            throw new NotCompilable("pop to the start of the frame at " + pc);
+        }
+    }
+
+    private void checkOffset(int offset, int d, int pc) throws NotCompilable {
+        if (offset < 0 || offset >= d) {
+            throw new NotCompilable("offset outside the frame at " + pc);
+        }
+    }
+
+    // Emits the method that calls the root with the arguments from an array
+    private void emitEntry(ClassFileWriter cw, Function root) {
+        MethodWriter m = cw.addMethod(ENTRY_METHOD, "([II)I");
+        int i;
+        for (i = 0; i < root.argc; i++) {
+            m.op(ALOAD_0);
+            m.iconst(i);
+            m.op(IALOAD);
+        }
+        m.iload(1);
+        m.invokeStatic(CLASS_NAME, root.name(), root.descriptor());
+        if (root.isMain) {
+            m.iconst(0);
+        }
+        m.op(IRETURN);
+        m.setMaxs(root.argc + 2, 2);
+        m.finish();
+    }
+
+    private void emit(ClassFileWriter cw, Function f) {
+        MethodWriter m = cw.addMethod(f.name(), f.descriptor());
+        int base = m.newLabel(size);
+        int tooDeep = m.newLabel(1);
+        boolean counts = false;
+        int pc;
+        if (f.takesCallsLeft()) {
+            m.iload(f.argc);
+        } else {
+            m.getStatic(CLASS_NAME, "rt", "L" + RUNTIME + ";");
+            m.invokeVirtual(RUNTIME, "callsLeft", "()I");
+        }
+        m.istore(f.callsLeft());
+        // the code is laid out by address, and a loop's entry may follow
+        // code of an outer loop that it reaches
+        for (pc = 0; pc < f.entry; pc++) {
+            if (f.depth[pc] != NOT_REACHED) {
+                m.jump(GOTO, base + f.entry);
+                break;
+            }
+        }
+        for (pc = 0; pc < size; pc++) {
+            int d = f.depth[pc];
+            if (d == NOT_REACHED) continue;
+            m.mark(base + pc);
+            switch (opcodes[pc]) {
+                case CodeTable.LIT:
+                    m.iconst(operands[pc]);
+                    m.istore(d);
+                    break;
+                case CodeTable.LOAD:
+                    m.iload(operands[pc]);
+                    m.istore(d);
+                    break;
+                case CodeTable.STORE:
+                    m.iload(d - 1);
+                    m.istore(operands[pc]);
+                    break;
+                case CodeTable.BOP:
+                    operator(m, Operator.fromOrdinal(operands[pc]), d - 2, d - 1);
+                    m.istore(d - 2);
+                    break;
+                case CodeTable.LOAD_LIT_BOP:
+                    operator(m, Operator.fromOrdinal(thirdOperands[pc]),
+                            operands[pc], constant(secondOperands[pc]));
+                    m.istore(d);
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    // local d is only written below, so a second LOAD of the
+                    // value the first one pushed loads the first's local again
+                    operator(m, Operator.fromOrdinal(thirdOperands[pc]), operands[pc],
+                            secondOperands[pc] == d ? operands[pc] : secondOperands[pc]);
+                    m.istore(d);
+                    break;
+                case CodeTable.LIT_STORE:
+                    m.iconst(operands[pc]);
+                    m.istore(secondOperands[pc]);
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    m.iload(d - 1);
+                    m.jump(IFEQ, base + operands[pc]);
+                    break;
+                case CodeTable.BOP_FALSEBRANCH:
+                    branchIfFalse(m, Operator.fromOrdinal(secondOperands[pc]),
+                            d - 2, d - 1, base + operands[pc]);
+                    break;
+                case CodeTable.GOTO:
+                    m.jump(GOTO, base + operands[pc]);
+                    break;
+                case CodeTable.CALL:
+                    call(m, f, f.pending[pc], operands[pc], d, tooDeep);
+                    counts = true;
+                    break;
+                case CodeTable.TAILCALL:
+                    if (operands[pc] == f.entry && secondOperands[pc] == f.argc
+                            && !f.isMain && !f.isLoop) {
+                        tailCallItself(m, f.argc, d, base + f.entry);
+                    } else {
+                        // the RETURN after the call returns its value; only
+                        // outside a function does the interpreter count it
+                        call(m, f, secondOperands[pc], operands[pc], d, f.isMain ? tooDeep : -1);
+                        counts |= f.isMain;
+                    }
+                    break;
+                case CodeTable.RETURN:
+                    m.iload(d - 1);
+                    m.op(IRETURN);
+                    break;
+                case CodeTable.READ:
+                    m.getStatic(CLASS_NAME, "rt", "L" + RUNTIME + ";");
+                    m.invokeVirtual(RUNTIME, "read", "()I");
+                    m.istore(d);
+                    break;
+                case CodeTable.WRITE:
+                    m.getStatic(CLASS_NAME, "rt", "L" + RUNTIME + ";");
+                    m.iload(d - 1);
+                    m.invokeVirtual(RUNTIME, "write", "(I)V");
+                    break;
+                case CodeTable.HALT:
+                    m.op(RETURN);
+                    break;
+                default:
+                    // ARGS is part of the CALL; POP only lowers the depth, and
+                    // the rest do nothing at runtime
+                    break;
+            }
+        }
+        if (counts) {
+            // a call beyond the maximum depth fails, as on the CallStack
+            m.mark(tooDeep);
+            m.getStatic(CLASS_NAME, "rt", "L" + RUNTIME + ";");
+            m.invokeVirtual(RUNTIME, "callDepthExceeded", "()Ljava/lang/RuntimeException;");
+            m.op(ATHROW);
+        }
+        // the operands of a call through the runtime take 6 slots at most
+        m.setMaxs(Math.max(f.maxArgs, 4) + 2, f.callsLeft() + 1);
+        m.finish();
+    }
+
+    /* The operands of an operator are local numbers, or constants marked by
+     * constant() with a bit above the int range.
+     */
+    private static final long CONSTANT = 1L << 32;
+
+    private static long constant(int value) {
+        return CONSTANT | (value & 0xFFFFFFFFL);
+    }
+
+    private void load(MethodWriter m, long operand) {
+        if ((operand & CONSTANT) != 0) {
+            m.iconst((int) operand);
+        } else {
+            m.iload((int) operand);
+        }
+    }
+
+    /*
+     * Pushes the result of the operator on the JVM stack; the second operand
+     * was below the first on the RunTimeStack.
+     */
+    private void operator(MethodWriter m, Operator op, long second, long first) {
+        int labels;
+        switch (op.getFamily()) {
+            case ARITHMETIC:
+                load(m, second);
+                load(m, first);
+                m.op(op == Operator.ADD ? IADD : op == Operator.SUBTRACT ? ISUB
+                        : op == Operator.MULTIPLY ? IMUL : IDIV);
+                return;
+            case COMPARISON:
+                labels = m.newLabel(2);
+                load(m, second);
+                load(m, first);
+                m.jump(compareOpcode(op), labels);
+                break;
+            default:
+                labels = m.newLabel(2);
+                load(m, second);
+                if (op == Operator.OR) {
+                    load(m, first);
+                    m.op(IOR);
+                    m.jump(IFNE, labels);
+                } else {
+                    int isFalse = m.newLabel(1);
+                    m.jump(IFEQ, isFalse);
+                    load(m, first);
+                    m.jump(IFNE, labels);
+                    m.mark(isFalse);
+                }
+                break;
+        }
+        // labels is where the result is 1, labels + 1 the end
+        m.iconst(0);
+        m.jump(GOTO, labels + 1);
+        m.mark(labels);
+        m.iconst(1);
+        m.mark(labels + 1);
+    }
+
+    // Jumps to the label if the operator gives 0
+    private void branchIfFalse(MethodWriter m, Operator op, long second, long first,
+            int label) {
+        if (op.getFamily() == Operator.Family.COMPARISON) {
+            load(m, second);
+            load(m, first);
+            m.jump(negatedCompareOpcode(op), label);
+        } else {
+            operator(m, op, second, first);
+            m.jump(IFEQ, label);
+        }
+    }
+
+    private int compareOpcode(Operator op) {
+        switch (op) {
+            case EQUAL:
+                return IF_ICMPEQ;
+            case NOT_EQUAL:
+                return IF_ICMPNE;
+            case LESS_OR_EQUAL:
+                return IF_ICMPLE;
+            case LESS:
+                return IF_ICMPLT;
+            case GREATER_OR_EQUAL:
+                return IF_ICMPGE;
+            default:
+                return IF_ICMPGT;
+        }
+    }
+
+    private int negatedCompareOpcode(Operator op) {
+        switch (op) {
+            case EQUAL:
+                return IF_ICMPNE;
+            case NOT_EQUAL:
+                return IF_ICMPEQ;
+            case LESS_OR_EQUAL:
+                return IF_ICMPGT;
+            case LESS:
+                return IF_ICMPGE;
+            case GREATER_OR_EQUAL:
+                return IF_ICMPLT;
+            default:
+                return IF_ICMPLE;
+        }
+    }
+
+    // A function that calls itself in tail position jumps back to its start
+    private void tailCallItself(MethodWriter m, int argc, int d, int entryLabel) {
+        int i;
+        for (i = d - argc; i < d; i++) {
+            m.iload(i);
+        }
+        for (i = argc - 1; i >= 0; i--) {
+            m.istore(i);
+        }
+        m.jump(GOTO, entryLabel);
+    }
+
+    /*
+     * Calls the function at the target with the top argc elements of the
+     * stack as arguments, and stores the value it returns where the first
+     * argument was, as RETURN leaves it on the RunTimeStack.  A call that the
+     * CallStack counts jumps to tooDeep when no calls are left; an uncounted
+     * one, whose label is -1, leaves the callee the caller's calls.
+     */
+    private void call(MethodWriter m, Function f, int argc, int target, int d, int tooDeep) {
+        Function callee = functions.get(methodName(target, argc));
+        boolean counted = tooDeep >= 0;
+        int i;
+        if (counted) {
+            m.iload(f.callsLeft());
+            m.jump(IFLE, tooDeep);
+        }
+        if (callee != null && callee.compiled) {
+            for (i = d - argc; i < d; i++) {
+                m.iload(i);
+            }
+            m.iload(f.callsLeft());
+            if (counted) {
+                m.iconst(1);
+                m.op(ISUB);
+            }
+            m.invokeStatic(CLASS_NAME, callee.name(), callee.descriptor());
+        } else {
+            m.getStatic(CLASS_NAME, "rt", "L" + RUNTIME + ";");
+            m.iconst(target);
+            m.iconst(argc);
+            m.newIntArray();
+            for (i = 0; i < argc; i++) {
+                m.op(DUP);
+                m.iconst(i);
+                m.iload(d - argc + i);
+                m.op(IASTORE);
+            }
+            // the interpreter counts the call itself
+            m.iload(f.callsLeft());
+            if (!counted) {
+                m.iconst(1);
+                m.op(IADD);
+            }
+            m.invokeVirtual(RUNTIME, "interpret", "(I[II)I");
+        }
+        m.istore(d - argc);
+    }
+
+}
@@ -0,0 +1,131 @@
+package interpreter.compiler;
+
+import interpreter.CallDepthExceededException;
+import interpreter.InterpreterException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LargeStackRunner runs the compiled code of one VirtualMachine in a thread
+ * with a large stack, since the calls of the compiled functions are JVM calls
+ * and deep recursion would overflow an ordinary thread stack.  The thread is
+ * started by the first run and kept for the next ones, and ends once it has
+ * been idle for a second.  Code that is already running in such a thread,
+ * such as a program run within VirtualMachine.runBatch(), runs in place.
+ *
+ * An error in the program, such as a division by zero, is thrown again in
+ * the calling thread, so it ends the program as in the interpreter.  Running
+ * out of thread stack is reported as a CallDepthExceededException.  If the
+ * calling thread is interrupted, the large-stack thread is interrupted too
+ * and still waited for, so that nothing runs on after the program has ended.
+ */
+
+final class LargeStackRunner {
+
+    private static final long STACK_SIZE = 512L << 20;
+    private static final long IDLE_SECONDS = 1;
+
+    // Marks the threads with a large stack
+    private static final class LargeStackThread extends Thread {
+        LargeStackThread(Runnable task) {
+            super(null, task, "compiled", STACK_SIZE);
+            setDaemon(true);
+        }
+    }
+
+    // One task handed to the thread, which the caller waits for
+    private static final class Run implements Runnable {
+        private final Runnable task;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Thread thread;       // while the task runs
+        private boolean interrupted; // whether the caller has been interrupted
+        private Throwable failure;
+
+        Run(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (interrupted) {
+                    done.countDown();
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            try {
+                failure = runCatching(task);
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    // the thread is kept for the next run
+                    Thread.interrupted();
+                }
+                done.countDown();
+            }
+        }
+
+        synchronized void interrupt() {
+            interrupted = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    LargeStackRunner() {
+        executor = new ThreadPoolExecutor(1, 1, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), LargeStackThread::new);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Runs a task in the thread with a large stack and waits for it
+    void run(Runnable task) {
+        Throwable failure;
+        if (Thread.currentThread() instanceof LargeStackThread) {
+            failure = runCatching(task);
+        } else {
+            Run run = new Run(task);
+            executor.execute(run);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    run.done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // compiled code stops at its next READ or WRITE
+                    interrupted = true;
+                    run.interrupt();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                throw new InterpreterException("The program was interrupted");
+            }
+            failure = run.failure;
+        }
+        if (failure != null) {
+            throw CompiledVirtualMachine.unchecked(failure);
+        }
+    }
+
+    private static Throwable runCatching(Runnable task) {
+        try {
+            task.run();
+            return null;
+        } catch (StackOverflowError e) {
+            // compiled calls nest on the thread stack, not the CallStack
+            return new CallDepthExceededException(
+                    "Call stack overflow: compiled code ran out of thread stack");
+        } catch (RuntimeException | Error e) {
+            return e;
+        }
+    }
+
+}
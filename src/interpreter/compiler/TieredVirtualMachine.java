@@ -0,0 +1,224 @@
+package interpreter.compiler;
+
+import interpreter.CompactProgram;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+/**
+ * TieredVirtualMachine interprets a program like the VirtualMachine, and
+ * compiles the parts of it that turn out to be hot with the JvmCompiler.
+ * Short programs never pay for compiling, while long-running ones spend most
+ * of their time in compiled code.
+ *
+ * Every CALL counts an invocation of its function, and every GOTO that jumps
+ * backwards counts an iteration of its loop.  When a function has been called
+ * threshold times it is compiled, together with the functions it calls, and
+ * later calls run the compiled code.  When a loop has run threshold times the
+ * rest of the function it is in (or of the main program) is compiled from the
+ * loop on, and the running activation continues in compiled code with the
+ * elements of its frame (on-stack replacement); a long while loop in the main
+ * program then runs compiled until the program halts.
+ * Code that cannot be compiled is remembered and keeps being interpreted.
+ * The compiled code is kept by the address of its function or loop, for the
+ * number of arguments or the depth of the frame it was compiled with; the
+ * same code reached with another is interpreted.
+ *
+ * A program that turns DUMP on is only interpreted.
+ */
+
+public class TieredVirtualMachine extends VirtualMachine {
+
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    // marks code that has been tried and cannot be compiled
+    private static final MethodHandle NOT_COMPILABLE =
+            MethodHandles.constant(int.class, 0);
+
+    private final CompactProgram compact;
+    private boolean tiered;
+    private final int threshold;
+    private final JvmCompiler compiler;
+    private final CompiledRuntime runtime = new CompiledRuntime(this);
+    private final LargeStackRunner largeStack = new LargeStackRunner();
+
+    private final int[] invocations; // by function address
+    private final int[] iterations;  // by loop target address
+
+    // the code compiled for each function address, and its number of arguments
+    private final MethodHandle[] functionCode;
+    private final int[] functionArgc;
+    // the code compiled for each loop target, the depth of its frame and
+    // whether it is in the main program
+    private final MethodHandle[] loopCode;
+    private final int[] loopDepths;
+    private final boolean[] loopInMain;
+
+    // the start of the frame of each activation of an interpreted function
+    private int[] frameStarts = new int[16];
+    private int activations = 0;
+
+    public TieredVirtualMachine(Program p, int threshold) {
+        super(p);
+        compact = CompactProgram.lower(p);
+        tiered = !compact.usesDump();
+        this.threshold = threshold;
+        compiler = new JvmCompiler(compact);
+        invocations = new int[p.getSize()];
+        iterations = new int[p.getSize()];
+        functionCode = new MethodHandle[p.getSize()];
+        functionArgc = new int[p.getSize()];
+        loopCode = new MethodHandle[p.getSize()];
+        loopDepths = new int[p.getSize()];
+        loopInMain = new boolean[p.getSize()];
+    }
+
+    @Override
+    public void executeProgram() {
+        if (!tiered) {
+            super.executeProgram();
+            return;
+        }
+        largeStack.run(() -> {
+            try {
+                super.executeProgram();
+            } catch (CompiledRuntime.Halt e) {
+                setIsRunning(false);
+            }
+        });
+    }
+
+    // Runs the work in the thread with a large stack, so a batch of runs enters it once
+    @Override
+    public void runBatch(Runnable work) {
+        largeStack.run(work);
+    }
+
+    /**
+     * Runs the program in slices on the interpreter alone: compiled code
+     * cannot stop when the budget is used up, so nothing is compiled once a
+     * program is run in slices.
+     */
+    @Override
+    public boolean executeSlice(long budget) {
+        tiered = false;
+        return super.executeSlice(budget);
+    }
+
+    // The compiled code is kept, so a program that is run again starts hot
+    @Override
+    public void reset() {
+        super.reset();
+        activations = 0;
+    }
+
+    @Override
+    public void callFunction(int target) {
+        if (!tiered) {
+            super.callFunction(target);
+            return;
+        }
+        // ARGS has just created the frame of the call
+        int frameStart = peekFramePointerStack();
+        int argc = sizeOfRunStack() - frameStart;
+        MethodHandle code = null;
+        if (++invocations[target] >= threshold) {
+            code = functionCode[target];
+            if (code == null) {
+                code = compiled(compiler.compileFunction(target, argc, runtime));
+                functionCode[target] = code;
+                functionArgc[target] = argc;
+            }
+            if (code == NOT_COMPILABLE || functionArgc[target] != argc) {
+                code = null;
+            }
+        }
+        super.callFunction(target);
+        pushActivation(frameStart);
+        if (code != null) {
+            returnFrom(invoke(code, frameStart, argc));
+        }
+    }
+
+    @Override
+    public void goTo(int target) {
+        if (!tiered || target > getPC() || ++iterations[target] < threshold) {
+            super.goTo(target);
+            return;
+        }
+        boolean isMain = activations == 0;
+        int frameStart = isMain ? 0 : frameStarts[activations - 1];
+        int depth = sizeOfRunStack() - frameStart;
+        // on-stack replacement needs the frame of the activation on top
+        if (depth > 0 && peekFramePointerStack() != frameStart) {
+            super.goTo(target);
+            return;
+        }
+        MethodHandle code = loopCode[target];
+        if (code == null) {
+            code = compiled(compiler.compileLoop(target, depth, isMain, runtime));
+            loopCode[target] = code;
+            loopDepths[target] = depth;
+            loopInMain[target] = isMain;
+        }
+        if (code == NOT_COMPILABLE || loopDepths[target] != depth
+                || loopInMain[target] != isMain) {
+            super.goTo(target);
+            return;
+        }
+        int value = invoke(code, frameStart, depth);
+        if (isMain) {
+            setIsRunning(false); // the compiled main program has halted
+        } else {
+            returnFrom(value);
+        }
+    }
+
+    @Override
+    public int returnAfterCall() {
+        if (activations > 0) {
+            activations--;
+        }
+        return super.returnAfterCall();
+    }
+
+    // The code to remember for a compilation, which gives null if it fails
+    private static MethodHandle compiled(MethodHandle code) {
+        return code == null ? NOT_COMPILABLE : code;
+    }
+
+    // Runs compiled code with the elements of the frame as arguments
+    private int invoke(MethodHandle code, int frameStart, int count) {
+        int[] args = new int[count];
+        int i;
+        for (i = 0; i < count; i++) {
+            args[i] = getRunStackValue(frameStart + i);
+        }
+        try {
+            // the compiled calls nest within those in progress
+            return (int) code.invokeExact(args, getMaxCallDepth() - getCallStack().size());
+        } catch (Throwable t) {
+            throw CompiledVirtualMachine.unchecked(t);
+        }
+    }
+
+    /* Returns from the current function with the value, as its RETURN would:
+     * the frame is popped, the value pushed, and execution continues after
+     * the CALL.
+     */
+    private void returnFrom(int value) {
+        pushRunStack(value);
+        returnAfterCall();
+    }
+
+    private void pushActivation(int frameStart) {
+        if (activations == frameStarts.length) {
+            frameStarts = Arrays.copyOf(frameStarts, activations << 1);
+        }
+        frameStarts[activations++] = frameStart;
+    }
+
+}
@@ -0,0 +1,48 @@
+package interpreter.io;
+
+/**
+ * ArrayInputSource supplies integers held in memory, for running a program
+ * on input that a caller has prepared itself.
+ */
+
+public class ArrayInputSource implements InputSource {
+
+    private final int[] values;
+    private final int end;
+    private int position = 0;
+
+    public ArrayInputSource(int... values) {
+        this.values = values.clone();
+        end = this.values.length;
+    }
+
+    /**
+     * Supplies the integers of part of an array, which is not copied.
+     *
+     * @param values the array
+     * @param from the index of the first integer
+     * @param to the index after the last integer
+     */
+    public ArrayInputSource(int[] values, int from, int to) {
+        if (from < 0 || from > to || to > values.length) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + to
+                    + " of an array of " + values.length);
+        }
+        this.values = values;
+        position = from;
+        end = to;
+    }
+
+    @Override
+    public int nextInt() {
+        if (position == end) {
+            throw new EndOfInputException();
+        }
+        return values[position++];
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,40 @@
+package interpreter.io;
+
+import java.util.Arrays;
+
+/**
+ * ArrayOutputSink collects the values written in memory, for a caller that
+ * runs a program and examines its output itself.
+ */
+
+public class ArrayOutputSink implements OutputSink {
+
+    private int[] values = new int[16];
+    private int size = 0;
+
+    @Override
+    public void writeInt(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+        }
+        values[size++] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns the values written so far, in order
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
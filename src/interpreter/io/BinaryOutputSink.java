@@ -0,0 +1,60 @@
+package interpreter.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * BinaryOutputSink writes each value as a 32-bit little-endian int, the
+ * format MappedBinaryInputSource reads, into a direct buffer that is written
+ * to a FileChannel when it is full or flushed.  No formatting is involved.
+ */
+
+public class BinaryOutputSink implements OutputSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    // Creates the file, or empties it if it exists
+    public BinaryOutputSink(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    public BinaryOutputSink(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void writeInt(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package interpreter.io;
+
+/**
+ * EndOfInputException is thrown by a READ in batch mode once the input has
+ * been used up.  The Interpreter catches it and ends the program normally,
+ * so a program that reads in an endless loop stops at the end of its input.
+ */
+
+public class EndOfInputException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public EndOfInputException() {
+        // thrown once per run, so it does without a stack trace
+        super("End of input", null, false, false);
+    }
+
+}
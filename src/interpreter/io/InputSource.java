@@ -0,0 +1,25 @@
+package interpreter.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An InputSource supplies the integers that READ consumes in batch mode.  The
+ * VirtualMachine only calls nextInt(), so a program can read from a text
+ * stream, a memory-mapped file or an array held in memory alike.
+ */
+
+public interface InputSource extends Closeable {
+
+    /**
+     * Returns the next integer of the input.
+     *
+     * @return the integer
+     * @throws EndOfInputException if the input has been used up
+     * @throws java.util.InputMismatchException if the input holds something
+     * other than an int at this point
+     * @throws IOException if the input cannot be read
+     */
+    int nextInt() throws IOException;
+
+}
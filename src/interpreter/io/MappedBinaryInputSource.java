@@ -0,0 +1,60 @@
+package interpreter.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.InputMismatchException;
+
+/**
+ * MappedBinaryInputSource reads integers from a memory-mapped file of 32-bit
+ * little-endian two's complement values, with no separators, so each READ is
+ * a single load from the mapping.
+ */
+
+public class MappedBinaryInputSource implements InputSource {
+
+    private final MappedFile file;
+    private MappedByteBuffer window;
+
+    public MappedBinaryInputSource(Path path) throws IOException {
+        file = new MappedFile(path);
+        if (file.size() % Integer.BYTES != 0) {
+            file.close();
+            throw new InputMismatchException("Binary input of " + file.size()
+                    + " bytes is not a whole number of int32 values");
+        }
+        try {
+            window = nextWindow();
+        } catch (IOException | RuntimeException e) {
+            file.closeAfter(e);
+            throw e;
+        }
+    }
+
+    private MappedByteBuffer nextWindow() throws IOException {
+        MappedByteBuffer next = file.nextWindow();
+        if (next != null) {
+            next.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return next;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        while (window != null && !window.hasRemaining()) {
+            window = nextWindow();
+        }
+        if (window == null) {
+            throw new EndOfInputException();
+        }
+        return window.getInt();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+}
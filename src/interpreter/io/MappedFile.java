@@ -0,0 +1,66 @@
+package interpreter.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedFile memory-maps a file for reading one window at a time.  A single
+ * mapping cannot exceed 2 GB, so a larger file is mapped as a sequence of
+ * windows; each window is released to the garbage collector once the next
+ * one has been mapped.
+ */
+
+class MappedFile implements Closeable {
+
+    // a multiple of 4, so that no int32 record straddles two windows
+    static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private long mapped = 0; // the number of bytes mapped so far
+
+    MappedFile(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Maps the next window of the file.
+     *
+     * @return the window, or null when the whole file has been mapped
+     * @throws IOException if the file cannot be mapped
+     */
+    MappedByteBuffer nextWindow() throws IOException {
+        if (mapped == size) {
+            return null;
+        }
+        long length = Math.min(WINDOW_SIZE, size - mapped);
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                mapped, length);
+        mapped += length;
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Closes the file when opening a source on it has failed with e
+    void closeAfter(Exception e) {
+        try {
+            channel.close();
+        } catch (IOException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+    }
+
+}
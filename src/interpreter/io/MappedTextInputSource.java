@@ -0,0 +1,43 @@
+package interpreter.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * MappedTextInputSource reads integers as text from a memory-mapped file.
+ * The integers are parsed from the mapped bytes in place, with no copy into
+ * the heap and no system call per block.  An integer may span two windows of
+ * a file larger than 2 GB.
+ */
+
+public class MappedTextInputSource extends TextInputSource {
+
+    private final MappedFile file;
+    private MappedByteBuffer window;
+
+    public MappedTextInputSource(Path path) throws IOException {
+        file = new MappedFile(path);
+        try {
+            window = file.nextWindow();
+        } catch (IOException | RuntimeException e) {
+            file.closeAfter(e);
+            throw e;
+        }
+    }
+
+    @Override
+    protected int read() throws IOException {
+        while (window != null && !window.hasRemaining()) {
+            window = file.nextWindow();
+        }
+        return window == null ? -1 : window.get() & 0xFF;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+}
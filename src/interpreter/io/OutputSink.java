@@ -0,0 +1,24 @@
+package interpreter.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * An OutputSink receives the values that WRITE outputs in batch mode.  A sink
+ * may hold the values back until it is flushed; the VirtualMachine flushes
+ * it before a dump, and closing it flushes it as well.
+ */
+
+public interface OutputSink extends Flushable, Closeable {
+
+    /**
+     * Outputs one value.
+     *
+     * @param value the value
+     * @throws IOException if the value, or values held back before it, cannot
+     * be written
+     */
+    void writeInt(int value) throws IOException;
+
+}
@@ -0,0 +1,52 @@
+package interpreter.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * StreamInputSource reads integers as text from a stream, such as standard
+ * input.  The stream is read in large blocks into a byte array, so a READ
+ * costs no system call until the block has been used up.
+ */
+
+public class StreamInputSource extends TextInputSource {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final boolean closeStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * @param in the stream the values are read from
+     * @param closeStream whether close() closes the stream as well; false
+     * for standard input
+     */
+    public StreamInputSource(InputStream in, boolean closeStream) {
+        this.in = in;
+        this.closeStream = closeStream;
+    }
+
+    @Override
+    protected int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeStream) {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package interpreter.io;
+
+import java.io.IOException;
+import java.util.InputMismatchException;
+
+/**
+ * TextInputSource parses decimal integers, separated by any whitespace and
+ * optionally signed, from the bytes its subclass supplies.  Each integer is
+ * built digit by digit from the bytes, so no String is ever created.
+ */
+
+public abstract class TextInputSource implements InputSource {
+
+    /**
+     * Returns the next byte of the input.
+     *
+     * @return the byte, from 0 to 255, or -1 at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    protected abstract int read() throws IOException;
+
+    @Override
+    public int nextInt() throws IOException {
+        int c = read();
+        while (c != -1 && c <= ' ') {
+            c = read();
+        }
+        if (c == -1) {
+            throw new EndOfInputException();
+        }
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            c = read();
+        }
+        // accumulate negatively, so that Integer.MIN_VALUE can be read
+        int value = 0;
+        int digits = 0;
+        while (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (value < (Integer.MIN_VALUE + digit) / 10) {
+                throw new InputMismatchException("Integer out of range");
+            }
+            value = value * 10 - digit;
+            digits++;
+            c = read();
+        }
+        if (digits == 0 || (c != -1 && c > ' ')) {
+            throw new InputMismatchException("Invalid input: not an integer");
+        }
+        if (negative) {
+            return value;
+        }
+        if (value == Integer.MIN_VALUE) {
+            throw new InputMismatchException("Integer out of range");
+        }
+        return -value;
+    }
+
+}
@@ -0,0 +1,88 @@
+package interpreter.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * TextOutputSink collects the values written by WRITE in batch mode as text,
+ * one per line, in a byte array that is handed to the underlying stream only
+ * when it is full or flushed.  The digits of each value are produced directly
+ * as bytes, without building a String.
+ */
+
+public class TextOutputSink implements OutputSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // the longest line: a sign, ten digits and the line separator
+    private static final int MAX_LINE = 12;
+
+    private final OutputStream out;
+    private final boolean closeStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count = 0;
+
+    /**
+     * @param out the stream the values are written to
+     * @param closeStream whether close() closes the stream as well; false
+     * for standard output
+     */
+    public TextOutputSink(OutputStream out, boolean closeStream) {
+        this.out = out;
+        this.closeStream = closeStream;
+    }
+
+    // Writes the value on a line of its own
+    @Override
+    public void writeInt(int value) throws IOException {
+        if (count > BUFFER_SIZE - MAX_LINE) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+        }
+        // the digits are produced from the right, as negative remainders so
+        // that Integer.MIN_VALUE needs no special case
+        int negative = value < 0 ? value : -value;
+        int end = count + digitCount(negative);
+        int i = end;
+        do {
+            buffer[--i] = (byte) ('0' - negative % 10);
+            negative /= 10;
+        } while (negative != 0);
+        buffer[end] = '\n';
+        count = end + 1;
+    }
+
+    // The number of decimal digits of a value that is zero or negative
+    private static int digitCount(int negative) {
+        int digits = 1;
+        int limit = -10;
+        while (digits < 10 && negative <= limit) {
+            digits++;
+            limit *= 10;
+        }
+        return digits;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (closeStream) {
+            out.close();
+        }
+    }
+
+}
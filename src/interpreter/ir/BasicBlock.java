@@ -0,0 +1,93 @@
+package interpreter.ir;
+
+import interpreter.ByteCode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A BasicBlock is a run of byte codes that is only ever entered at its first
+ * byte code and left after its last one.  A block starts at the beginning of
+ * the Program, at each LABEL, and after each GOTO, FALSEBRANCH, RETURN and
+ * HALT.  A CALL does not end a block, since control comes back after it;
+ * the function called is recorded as a callee of the block instead.
+ *
+ * The byte codes of a block may be changed by an optimization, as long as
+ * the jumps keep the addresses they had in the Program the graph was built
+ * from (see ControlFlowGraph.toProgram()).
+ */
+
+public final class BasicBlock {
+
+    private final int number;
+    private final int address;
+    private final List<ByteCode> codes;
+    final List<BasicBlock> successors = new ArrayList<>(2);
+    final List<BasicBlock> predecessors = new ArrayList<>();
+    final List<BasicBlock> callees = new ArrayList<>();
+    BasicBlock fallThrough; // the block that follows when the last code does not jump
+    BasicBlock immediateDominator;
+
+    BasicBlock(int number, int address, List<ByteCode> codes) {
+        this.number = number;
+        this.address = address;
+        this.codes = codes;
+    }
+
+    // Its position among the blocks of the Program the graph was built from
+    public int getNumber() {
+        return number;
+    }
+
+    // The address of its first byte code in the Program the graph was built from
+    public int getAddress() {
+        return address;
+    }
+
+    // The byte codes, which may be changed
+    public List<ByteCode> getCodes() {
+        return codes;
+    }
+
+    /**
+     * Provides the blocks control can go to from this one.  The block it
+     * falls through to, if any, comes first.
+     *
+     * @return the successors
+     */
+    public List<BasicBlock> getSuccessors() {
+        return Collections.unmodifiableList(successors);
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    // The entry blocks of the functions the CALLs of this block call
+    public List<BasicBlock> getCallees() {
+        return Collections.unmodifiableList(callees);
+    }
+
+    // The block control falls through to after the last byte code, or null
+    public BasicBlock getFallThrough() {
+        return fallThrough;
+    }
+
+    /**
+     * Provides the closest block that control must pass through to get here
+     * from the entry of the Program or of the function this block is part of.
+     *
+     * @return the immediate dominator, or null for an entry or for a block
+     * that cannot be reached
+     */
+    public BasicBlock getImmediateDominator() {
+        return immediateDominator;
+    }
+
+    @Override
+    public String toString() {
+        return "B" + number;
+    }
+
+}
@@ -0,0 +1,435 @@
+package interpreter.ir;
+
+import interpreter.ByteCode;
+import interpreter.CodeTable;
+import interpreter.Program;
+import interpreter.bytecode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ControlFlowGraph splits a Program into BasicBlocks and links each block to
+ * the blocks control can go to from it.  The graph holds the code of the main
+ * program and of every function, and has an entry for each: the block at
+ * address 0, and the blocks the CALLs call.  For these it finds:
+ *   - the immediate dominator of each block, over the successors only, so a
+ *     function's blocks are dominated by its entry and not by its callers;
+ *   - the natural loops, from the jumps back to a block that dominates the
+ *     block they come from.
+ * removeUnreachableBlocks() drops the blocks that can never run, such as the
+ * code after a GOTO or RETURN that no jump lands on, and the functions that
+ * are only called from such code.  toProgram() writes the blocks back out as
+ * a Program.
+ *
+ * The graph shares the byte codes of the Program it is built from.  Building
+ * it and finding dominators and loops only reads them, so a frozen Program
+ * can be inspected; toProgram() moves their addresses, and needs a Program
+ * that has not been frozen yet, which must not be run afterwards, as with
+ * the other optimization passes.
+ */
+
+public class ControlFlowGraph {
+
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private final BasicBlock[] blockAt; // the block that starts at each address, if any
+    private final int programSize;
+    private List<BasicBlock> functionEntries;
+    private List<Loop> loops;
+
+    private ControlFlowGraph(int programSize) {
+        this.programSize = programSize;
+        blockAt = new BasicBlock[programSize + 1];
+    }
+
+    /**
+     * Builds the graph of a Program whose addresses have been resolved.
+     *
+     * @param program the Program
+     * @return its graph
+     */
+    public static ControlFlowGraph build(Program program) {
+        int size = program.getSize();
+        ControlFlowGraph graph = new ControlFlowGraph(size);
+        int[] opcodes = new int[size];
+        boolean[] leaders = new boolean[size + 1];
+        int i;
+        for (i = 0; i < size; i++) {
+            ByteCode bc = program.getCode(i);
+            opcodes[i] = CodeTable.opcodeOf(bc);
+            if (opcodes[i] == CodeTable.LABEL) {
+                leaders[i] = true;
+            }
+            if (bc instanceof JumpCode) {
+                leaders[((JumpCode) bc).getTarget()] = true;
+            }
+            if (endsBlock(opcodes[i])) {
+                leaders[i + 1] = true;
+            }
+        }
+        leaders[0] = true;
+
+        int start = 0;
+        for (i = 1; i <= size; i++) {
+            if (i == size || leaders[i]) {
+                List<ByteCode> codes = new ArrayList<>(i - start);
+                int j;
+                for (j = start; j < i; j++) {
+                    codes.add(program.getCode(j));
+                }
+                BasicBlock block = new BasicBlock(graph.blocks.size(), start, codes);
+                graph.blocks.add(block);
+                graph.blockAt[start] = block;
+                start = i;
+            }
+        }
+
+        // link each block to its successors and callees
+        for (i = 0; i < graph.blocks.size(); i++) {
+            BasicBlock block = graph.blocks.get(i);
+            BasicBlock next = i + 1 < graph.blocks.size() ? graph.blocks.get(i + 1) : null;
+            ByteCode last = block.getCodes().get(block.getCodes().size() - 1);
+            int opcode = opcodes[block.getAddress() + block.getCodes().size() - 1];
+            if (opcode != CodeTable.GOTO && opcode != CodeTable.RETURN
+                    && opcode != CodeTable.HALT && next != null) {
+                block.fallThrough = next;
+                block.successors.add(next);
+            }
+            if (opcode == CodeTable.GOTO || opcode == CodeTable.FALSEBRANCH
+                    || opcode == CodeTable.BOP_FALSEBRANCH) {
+                BasicBlock target = graph.blockAt[((JumpCode) last).getTarget()];
+                if (!block.successors.contains(target)) {
+                    block.successors.add(target);
+                }
+            }
+            for (ByteCode bc : block.getCodes()) {
+                if (bc instanceof CallCode || bc instanceof TailCallCode) {
+                    BasicBlock callee = graph.blockAt[((JumpCode) bc).getTarget()];
+                    if (!block.callees.contains(callee)) {
+                        block.callees.add(callee);
+                    }
+                }
+            }
+        }
+        graph.analyze();
+        return graph;
+    }
+
+    // A jump, RETURN or HALT ends a block; a CALL comes back, so it does not
+    private static boolean endsBlock(int opcode) {
+        return opcode == CodeTable.GOTO || opcode == CodeTable.FALSEBRANCH
+                || opcode == CodeTable.BOP_FALSEBRANCH || opcode == CodeTable.RETURN
+                || opcode == CodeTable.HALT;
+    }
+
+    // The blocks, in the order they are written out
+    public List<BasicBlock> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    // The block at address 0, where the main program starts, or null if there is no code
+    public BasicBlock getEntry() {
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    // The entry blocks of the functions called, in the order of the Program
+    public List<BasicBlock> getFunctionEntries() {
+        return functionEntries;
+    }
+
+    /**
+     * Tells whether every path from its entry to one block passes through
+     * another.  A block dominates itself.
+     *
+     * @param dominator the block that may dominate
+     * @param block the block that may be dominated
+     * @return true if dominator dominates block
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        BasicBlock b = block;
+        while (b != null) {
+            if (b == dominator) {
+                return true;
+            }
+            b = b.immediateDominator;
+        }
+        return false;
+    }
+
+    // The natural loops, in the order of their headers in the Program
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    /**
+     * Drops the blocks that cannot be reached from the entry, following the
+     * successors, the callees, and the labels RETURNs name.
+     *
+     * @return the number of blocks dropped
+     */
+    public int removeUnreachableBlocks() {
+        boolean[] reached = new boolean[programSize + 1]; // by address
+        ArrayDeque<BasicBlock> work = new ArrayDeque<>();
+        if (!blocks.isEmpty()) {
+            reached[blocks.get(0).getAddress()] = true;
+            work.add(blocks.get(0));
+        }
+        while (!work.isEmpty()) {
+            BasicBlock block = work.poll();
+            List<BasicBlock> next = new ArrayList<>(block.successors);
+            next.addAll(block.callees);
+            for (ByteCode bc : block.getCodes()) {
+                if (bc instanceof ReturnCode && ((ReturnCode) bc).getLabel() != null
+                        && blockAt[((ReturnCode) bc).getLabelAddress()] != null) {
+                    next.add(blockAt[((ReturnCode) bc).getLabelAddress()]);
+                }
+            }
+            for (BasicBlock b : next) {
+                if (!reached[b.getAddress()]) {
+                    reached[b.getAddress()] = true;
+                    work.add(b);
+                }
+            }
+        }
+        int removed = 0;
+        int i;
+        for (i = blocks.size() - 1; i >= 0; i--) {
+            BasicBlock block = blocks.get(i);
+            if (!reached[block.getAddress()]) {
+                blocks.remove(i);
+                blockAt[block.getAddress()] = null;
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            analyze();
+        }
+        return removed;
+    }
+
+    /**
+     * Writes the blocks out as a Program, in their order.  The jumps, and the
+     * labels of the RETURNs, are moved to the new address of the block that
+     * started at their target in the Program the graph was built from.
+     *
+     * @return the Program, with its addresses resolved
+     * @throws IllegalStateException if a block no longer comes right before
+     * the block it falls through to, or a jump targets a block that was
+     * removed
+     */
+    public Program toProgram() {
+        Program result = new Program();
+        int[] newAddress = new int[programSize + 1];
+        Arrays.fill(newAddress, -1);
+        int i;
+        for (i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            if (block.fallThrough != null
+                    && (i + 1 == blocks.size() || blocks.get(i + 1) != block.fallThrough)) {
+                throw new IllegalStateException(block + " must come right before "
+                        + block.fallThrough);
+            }
+            newAddress[block.getAddress()] = result.getSize();
+            for (ByteCode bc : block.getCodes()) {
+                result.addCode(bc);
+            }
+        }
+
+        for (i = 0; i < result.getSize(); i++) {
+            ByteCode bc = result.getCode(i);
+            if (bc instanceof JumpCode) {
+                JumpCode jump = (JumpCode) bc;
+                jump.setTarget(moved(newAddress, jump.getTarget()));
+            }
+            if (bc instanceof ReturnCode && ((ReturnCode) bc).getLabel() != null) {
+                ReturnCode rcode = (ReturnCode) bc;
+                rcode.setLabelAddress(moved(newAddress, rcode.getLabelAddress()));
+            }
+        }
+        return result;
+    }
+
+    private static int moved(int[] newAddress, int address) {
+        if (newAddress[address] < 0) {
+            throw new IllegalStateException("A jump targets address " + address
+                    + ", which has been removed");
+        }
+        return newAddress[address];
+    }
+
+    // Finds the predecessors, function entries, dominators and loops again
+    private void analyze() {
+        Map<Integer, BasicBlock> entries = new LinkedHashMap<>();
+        for (BasicBlock block : blocks) {
+            block.predecessors.clear();
+            block.immediateDominator = null;
+            block.successors.removeIf(b -> blockAt[b.getAddress()] != b);
+            block.callees.removeIf(b -> blockAt[b.getAddress()] != b);
+            if (block.fallThrough != null && blockAt[block.fallThrough.getAddress()] == null) {
+                block.fallThrough = null;
+            }
+        }
+        for (BasicBlock block : blocks) {
+            for (BasicBlock s : block.successors) {
+                s.predecessors.add(block);
+            }
+            for (BasicBlock callee : block.callees) {
+                entries.put(callee.getAddress(), callee);
+            }
+        }
+        List<BasicBlock> sortedEntries = new ArrayList<>(entries.values());
+        sortedEntries.sort(Comparator.comparingInt(BasicBlock::getAddress));
+        functionEntries = Collections.unmodifiableList(sortedEntries);
+        findDominators();
+        findLoops();
+    }
+
+    /*
+     * Finds the immediate dominators by the iterative method of Cooper,
+     * Harvey and Kennedy, over the blocks in reverse postorder.  The entries
+     * hang from a virtual root, number 0, which dominates them all.
+     */
+    private void findDominators() {
+        List<BasicBlock> roots = new ArrayList<>();
+        if (!blocks.isEmpty()) {
+            roots.add(blocks.get(0));
+        }
+        for (BasicBlock entry : functionEntries) {
+            if (!roots.contains(entry)) {
+                roots.add(entry);
+            }
+        }
+        int[] order = new int[programSize + 1]; // by address, the reverse postorder number
+        List<BasicBlock> postorder = new ArrayList<>(blocks.size());
+        boolean[] visited = new boolean[programSize + 1];
+        for (BasicBlock root : roots) {
+            depthFirst(root, visited, postorder);
+        }
+        int n = postorder.size();
+        BasicBlock[] byNumber = new BasicBlock[n + 1];
+        int i;
+        for (i = 0; i < n; i++) {
+            BasicBlock block = postorder.get(n - 1 - i);
+            byNumber[i + 1] = block;
+            order[block.getAddress()] = i + 1;
+        }
+        boolean[] isRoot = new boolean[programSize + 1];
+        for (BasicBlock root : roots) {
+            isRoot[root.getAddress()] = true;
+        }
+
+        int[] idom = new int[n + 1];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (i = 1; i <= n; i++) {
+                BasicBlock block = byNumber[i];
+                int newIdom = isRoot[block.getAddress()] ? 0 : -1;
+                for (BasicBlock p : block.predecessors) {
+                    int q = visited[p.getAddress()] ? order[p.getAddress()] : -1;
+                    if (q < 0 || idom[q] < 0) {
+                        continue;
+                    }
+                    newIdom = newIdom < 0 ? q : intersect(idom, q, newIdom);
+                }
+                if (newIdom >= 0 && idom[i] != newIdom) {
+                    idom[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        for (i = 1; i <= n; i++) {
+            byNumber[i].immediateDominator = idom[i] > 0 ? byNumber[idom[i]] : null;
+        }
+    }
+
+    private static int intersect(int[] idom, int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = idom[a];
+            }
+            while (b > a) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    // Adds the blocks reached from a block to the postorder, without recursion
+    private static void depthFirst(BasicBlock root, boolean[] visited, List<BasicBlock> postorder) {
+        if (visited[root.getAddress()]) {
+            return;
+        }
+        ArrayDeque<BasicBlock> path = new ArrayDeque<>();
+        ArrayDeque<Integer> nextSuccessor = new ArrayDeque<>();
+        visited[root.getAddress()] = true;
+        path.push(root);
+        nextSuccessor.push(0);
+        while (!path.isEmpty()) {
+            BasicBlock block = path.peek();
+            int i = nextSuccessor.pop();
+            if (i < block.successors.size()) {
+                nextSuccessor.push(i + 1);
+                BasicBlock s = block.successors.get(i);
+                if (!visited[s.getAddress()]) {
+                    visited[s.getAddress()] = true;
+                    path.push(s);
+                    nextSuccessor.push(0);
+                }
+            } else {
+                postorder.add(path.pop());
+            }
+        }
+    }
+
+    // A jump back to a block that dominates the block it comes from closes a loop
+    private void findLoops() {
+        List<Loop> found = new ArrayList<>();
+        for (BasicBlock header : blocks) {
+            List<BasicBlock> latches = new ArrayList<>();
+            for (BasicBlock p : header.predecessors) {
+                if (dominates(header, p)) {
+                    latches.add(p);
+                }
+            }
+            if (latches.isEmpty()) {
+                continue;
+            }
+            boolean[] inLoop = new boolean[programSize + 1];
+            inLoop[header.getAddress()] = true;
+            ArrayDeque<BasicBlock> work = new ArrayDeque<>();
+            for (BasicBlock latch : latches) {
+                if (!inLoop[latch.getAddress()]) {
+                    inLoop[latch.getAddress()] = true;
+                    work.add(latch);
+                }
+            }
+            while (!work.isEmpty()) {
+                for (BasicBlock p : work.poll().predecessors) {
+                    // a block that cannot be reached is in no loop
+                    if (!inLoop[p.getAddress()] && dominates(header, p)) {
+                        inLoop[p.getAddress()] = true;
+                        work.add(p);
+                    }
+                }
+            }
+            List<BasicBlock> body = new ArrayList<>();
+            for (BasicBlock block : blocks) {
+                if (inLoop[block.getAddress()]) {
+                    body.add(block);
+                }
+            }
+            found.add(new Loop(header, body, latches));
+        }
+        loops = Collections.unmodifiableList(found);
+    }
+
+}
@@ -0,0 +1,198 @@
+package interpreter.ir;
+
+import interpreter.ByteCode;
+import interpreter.ByteCodeLoader;
+import interpreter.CodeTable;
+import interpreter.Program;
+import interpreter.ProgramLoadException;
+import interpreter.bytecode.*;
+
+import java.io.IOException;
+
+/**
+ * GraphvizWriter renders a ControlFlowGraph in the DOT language of Graphviz.
+ * Each block is a box listing its byte codes; a fused byte code is shown as
+ * the byte codes it replaces, separated by semicolons.  The edges are:
+ *   - solid for the successors, labeled "false" where a FALSEBRANCH jumps;
+ *   - dashed from a block to the functions it calls;
+ *   - dotted and gray from a block's immediate dominator, if asked for.
+ * The entries of the functions are drawn bold, and the headers of loops with
+ * a double border.
+ *
+ * Usage: java interpreter.ir.GraphvizWriter [--optimize] [--dominators] <file>.x.cod
+ * which loads the file as the interpreter would, with or without the
+ * optimizations of --optimize, and prints the graph to System.out; for
+ * example, pipe it to "dot -Tsvg".
+ */
+
+public class GraphvizWriter {
+
+    private boolean dominators = false;
+
+    // Turns the dominator edges on or off
+    public void setDominators(boolean dominators) {
+        this.dominators = dominators;
+    }
+
+    /**
+     * Renders a graph.
+     *
+     * @param graph the graph
+     * @param name the name of the digraph, such as the file it was loaded from
+     * @return the DOT text
+     */
+    public String write(ControlFlowGraph graph, String name) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("digraph ").append(quote(name)).append(" {\n");
+        sb.append("    node [shape=box, fontname=\"Courier\"];\n");
+        for (BasicBlock block : graph.getBlocks()) {
+            StringBuilder label = new StringBuilder();
+            label.append(block).append(" (address ").append(block.getAddress()).append(")\\l");
+            for (ByteCode bc : block.getCodes()) {
+                label.append(escape(describe(bc))).append("\\l");
+            }
+            sb.append("    ").append(block).append(" [label=\"").append(label).append('"');
+            if (graph.getFunctionEntries().contains(block)) {
+                sb.append(", style=bold");
+            }
+            for (Loop loop : graph.getLoops()) {
+                if (loop.getHeader() == block) {
+                    sb.append(", peripheries=2");
+                }
+            }
+            sb.append("];\n");
+        }
+        for (BasicBlock block : graph.getBlocks()) {
+            for (BasicBlock s : block.getSuccessors()) {
+                sb.append("    ").append(block).append(" -> ").append(s);
+                if (s != block.getFallThrough()) {
+                    ByteCode last = block.getCodes().get(block.getCodes().size() - 1);
+                    if (!(last instanceof GoToCode)) {
+                        sb.append(" [label=\"false\"]");
+                    }
+                }
+                sb.append(";\n");
+            }
+            for (BasicBlock callee : block.getCallees()) {
+                sb.append("    ").append(block).append(" -> ").append(callee)
+                        .append(" [style=dashed];\n");
+            }
+            if (dominators && block.getImmediateDominator() != null) {
+                sb.append("    ").append(block.getImmediateDominator()).append(" -> ")
+                        .append(block).append(" [style=dotted, color=gray];\n");
+            }
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Gives the text of a byte code as it would appear in a bytecode file.
+     *
+     * @param bc the byte code
+     * @return its text
+     */
+    public static String describe(ByteCode bc) {
+        int opcode = CodeTable.opcodeOf(bc);
+        switch (opcode) {
+            case CodeTable.LIT:
+                LitCode lit = (LitCode) bc;
+                return "LIT " + lit.getValue() + (lit.getName() != null ? " " + lit.getName() : "");
+            case CodeTable.LOAD:
+                LoadCode load = (LoadCode) bc;
+                return "LOAD " + load.getOffset() + (load.getName() != null ? " " + load.getName() : "");
+            case CodeTable.STORE:
+                StoreCode store = (StoreCode) bc;
+                return "STORE " + store.getOffset()
+                        + (store.getName() != null ? " " + store.getName() : "");
+            case CodeTable.BOP:
+                return "BOP " + ((BopCode) bc).getOperator().getSymbol();
+            case CodeTable.FALSEBRANCH:
+            case CodeTable.GOTO:
+            case CodeTable.CALL:
+                return CodeTable.nameOf(opcode) + " " + ((JumpCode) bc).getLabel();
+            case CodeTable.ARGS:
+                return "ARGS " + ((ArgsCode) bc).getNumberArgs();
+            case CodeTable.RETURN:
+                String label = ((ReturnCode) bc).getLabel();
+                return label != null ? "RETURN " + label : "RETURN";
+            case CodeTable.POP:
+                return "POP " + ((PopCode) bc).getNumberOfLevels();
+            case CodeTable.DUMP:
+                return ((DumpCode) bc).getDumpState() == 1 ? "DUMP ON" : "DUMP OFF";
+            case CodeTable.LABEL:
+                return "LABEL " + ((LabelCode) bc).getLabel();
+            case CodeTable.LINE:
+                return "LINE " + ((LineCode) bc).getLineNumber();
+            case CodeTable.FUNCTION:
+                FunctionCode function = (FunctionCode) bc;
+                return "FUNCTION " + function.getName() + " " + function.getStartLine()
+                        + " " + function.getEndLine();
+            case CodeTable.FORMAL:
+                FormalCode formal = (FormalCode) bc;
+                return "FORMAL " + formal.getVarName() + " " + formal.getOffset();
+            case CodeTable.BOP_FALSEBRANCH:
+                BopFalseBranchCode branch = (BopFalseBranchCode) bc;
+                return "BOP " + branch.getOperator().getSymbol() + "; FALSEBRANCH "
+                        + branch.getLabel();
+            case CodeTable.LOAD_LIT_BOP:
+                LoadLitBopCode llb = (LoadLitBopCode) bc;
+                return "LOAD " + llb.getOffset() + "; LIT " + llb.getValue() + "; BOP "
+                        + llb.getOperator().getSymbol();
+            case CodeTable.LOAD_LOAD_BOP:
+                LoadLoadBopCode lob = (LoadLoadBopCode) bc;
+                return "LOAD " + lob.getFirstOffset() + "; LOAD " + lob.getSecondOffset()
+                        + "; BOP " + lob.getOperator().getSymbol();
+            case CodeTable.LIT_STORE:
+                LitStoreCode litStore = (LitStoreCode) bc;
+                return "LIT " + litStore.getValue() + "; STORE " + litStore.getOffset();
+            case CodeTable.TAILCALL:
+                TailCallCode tail = (TailCallCode) bc;
+                return "ARGS " + tail.getNumberArgs() + "; CALL " + tail.getLabel();
+            case -1:
+                return bc.getClass().getSimpleName();
+            default:
+                return CodeTable.nameOf(opcode);
+        }
+    }
+
+    private static String quote(String s) {
+        return '"' + escape(s) + '"';
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    public static void main(String[] args) {
+        boolean optimize = false;
+        boolean dominators = false;
+        String file = null;
+        for (String arg : args) {
+            if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--dominators")) {
+                dominators = true;
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: java interpreter.ir.GraphvizWriter "
+                    + "[--optimize] [--dominators] <file>.x.cod");
+            System.exit(1);
+        }
+        try {
+            ByteCodeLoader bcl = new ByteCodeLoader(file);
+            bcl.setOptimize(optimize);
+            Program program = bcl.loadCodes();
+            GraphvizWriter writer = new GraphvizWriter();
+            writer.setDominators(dominators);
+            System.out.print(writer.write(ControlFlowGraph.build(program), file));
+        } catch (IOException | ProgramLoadException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
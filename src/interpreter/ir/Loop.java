@@ -0,0 +1,43 @@
+package interpreter.ir;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Loop is a natural loop of a ControlFlowGraph: a header block that
+ * dominates the blocks of the loop, and the blocks from which control can
+ * get back to the header without leaving the loop.  The jumps back to the
+ * header come from the latches.  Back edges to the same header make a single
+ * loop.
+ */
+
+public final class Loop {
+
+    private final BasicBlock header;
+    private final List<BasicBlock> blocks;
+    private final List<BasicBlock> latches;
+
+    Loop(BasicBlock header, List<BasicBlock> blocks, List<BasicBlock> latches) {
+        this.header = header;
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.latches = Collections.unmodifiableList(latches);
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    // The blocks of the loop, the header included, in the order of the Program
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<BasicBlock> getLatches() {
+        return latches;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+}
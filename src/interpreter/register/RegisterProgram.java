@@ -0,0 +1,174 @@
+package interpreter.register;
+
+import interpreter.Operator;
+
+/**
+ * RegisterProgram is a Program translated into three-address instructions by
+ * the RegisterTranslator.  Each function has a window of registers: register
+ * k of a function is element k of its frame, so the arguments arrive in the
+ * first registers and the stack elements above the locals become temporaries.
+ * The instructions are held in parallel int arrays, as in a CompactProgram:
+ *
+ *   MOVE             a = b
+ *   MOVE_CONSTANT    a = constant b
+ *   BINARY           a = operator(b, c), with b the operand that was on top
+ *                    of the stack and c the one below it, as in Operator.apply
+ *   BINARY_CONSTANT_FIRST   the same with b a constant
+ *   BINARY_CONSTANT_SECOND  the same with c a constant
+ *   JUMP             go to a
+ *   JUMP_IF_FALSE    go to a if b is 0
+ *   BRANCH, BRANCH_CONSTANT_FIRST, BRANCH_CONSTANT_SECOND
+ *                    go to a if operator(b, c) is 0
+ *   CALL             call function b with its window starting at register a,
+ *                    where its result is put
+ *   TAIL_CALL        move the c registers from a on to the start of the
+ *                    window and go to function b
+ *   RETURN           return b;  RETURN_CONSTANT returns constant b
+ *   READ             a = the next input
+ *   WRITE            write b;  WRITE_CONSTANT writes constant b
+ *   HALT
+ *
+ * The functions are numbered in the order they were translated, 0 being the
+ * main program.
+ */
+
+public final class RegisterProgram {
+
+    public static final int MOVE = 0;
+    public static final int MOVE_CONSTANT = 1;
+    public static final int BINARY = 2;
+    public static final int BINARY_CONSTANT_FIRST = 3;
+    public static final int BINARY_CONSTANT_SECOND = 4;
+    public static final int JUMP = 5;
+    public static final int JUMP_IF_FALSE = 6;
+    public static final int BRANCH = 7;
+    public static final int BRANCH_CONSTANT_FIRST = 8;
+    public static final int BRANCH_CONSTANT_SECOND = 9;
+    public static final int CALL = 10;
+    public static final int TAIL_CALL = 11;
+    public static final int RETURN = 12;
+    public static final int RETURN_CONSTANT = 13;
+    public static final int READ = 14;
+    public static final int WRITE = 15;
+    public static final int WRITE_CONSTANT = 16;
+    public static final int HALT = 17;
+
+    private final int[] opcodes;
+    private final int[] a;
+    private final int[] b;
+    private final int[] c;
+    private final int[] operators; // the ordinal of the Operator, if any
+    private final int[] starts;     // the address of each function
+    private final int[] frameSizes; // the registers each function needs
+    private final String[] names;   // each function's name, for the listing
+
+    RegisterProgram(int[] opcodes, int[] a, int[] b, int[] c, int[] operators,
+            int[] starts, int[] frameSizes, String[] names) {
+        this.opcodes = opcodes;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.operators = operators;
+        this.starts = starts;
+        this.frameSizes = frameSizes;
+        this.names = names;
+    }
+
+    public int getSize() {
+        return opcodes.length;
+    }
+
+    public int[] getOpcodes() {
+        return opcodes;
+    }
+
+    public int[] getA() {
+        return a;
+    }
+
+    public int[] getB() {
+        return b;
+    }
+
+    public int[] getC() {
+        return c;
+    }
+
+    public int[] getOperators() {
+        return operators;
+    }
+
+    public int getFunctionCount() {
+        return starts.length;
+    }
+
+    public int[] getStarts() {
+        return starts;
+    }
+
+    public int[] getFrameSizes() {
+        return frameSizes;
+    }
+
+    // Lists the instructions of each function, for reading the translation
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int f, pc;
+        for (f = 0; f < starts.length; f++) {
+            int end = f + 1 < starts.length ? starts[f + 1] : opcodes.length;
+            sb.append(names[f]).append(" (").append(frameSizes[f]).append(" registers):\n");
+            for (pc = starts[f]; pc < end; pc++) {
+                sb.append(String.format("%6d  ", pc)).append(describe(pc)).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    // The text of one instruction
+    private String describe(int pc) {
+        String symbol = Operator.fromOrdinal(operators[pc]).getSymbol();
+        switch (opcodes[pc]) {
+            case MOVE:
+                return "r" + a[pc] + " = r" + b[pc];
+            case MOVE_CONSTANT:
+                return "r" + a[pc] + " = " + b[pc];
+            case BINARY:
+                return "r" + a[pc] + " = r" + c[pc] + " " + symbol + " r" + b[pc];
+            case BINARY_CONSTANT_FIRST:
+                return "r" + a[pc] + " = r" + c[pc] + " " + symbol + " " + b[pc];
+            case BINARY_CONSTANT_SECOND:
+                return "r" + a[pc] + " = " + c[pc] + " " + symbol + " r" + b[pc];
+            case JUMP:
+                return "goto " + a[pc];
+            case JUMP_IF_FALSE:
+                return "if r" + b[pc] + " == 0 goto " + a[pc];
+            case BRANCH:
+                return "if !(r" + c[pc] + " " + symbol + " r" + b[pc] + ") goto " + a[pc];
+            case BRANCH_CONSTANT_FIRST:
+                return "if !(r" + c[pc] + " " + symbol + " " + b[pc] + ") goto " + a[pc];
+            case BRANCH_CONSTANT_SECOND:
+                return "if !(" + c[pc] + " " + symbol + " r" + b[pc] + ") goto " + a[pc];
+            case CALL:
+                return "r" + a[pc] + " = call " + names[b[pc]] + " window r" + a[pc];
+            case TAIL_CALL:
+                return "tail call " + names[b[pc]] + " with r" + a[pc] + ".."
+                        + (a[pc] + c[pc] - 1);
+            case RETURN:
+                return "return r" + b[pc];
+            case RETURN_CONSTANT:
+                return "return " + b[pc];
+            case READ:
+                return "r" + a[pc] + " = read";
+            case WRITE:
+                return "write r" + b[pc];
+            case WRITE_CONSTANT:
+                return "write " + b[pc];
+            case HALT:
+                return "halt";
+            default:
+                return "?" + opcodes[pc];
+        }
+    }
+
+}
@@ -0,0 +1,615 @@
+package interpreter.register;
+
+import interpreter.CodeTable;
+import interpreter.CompactProgram;
+import interpreter.Operator;
+import interpreter.Program;
+import interpreter.bytecode.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static interpreter.register.RegisterProgram.*;
+
+/**
+ * RegisterTranslator translates the stack code of a Program into the
+ * three-address code of a RegisterProgram.  Like the JvmCompiler, it first
+ * follows the control flow of each function to find the stack depth at every
+ * address; the element at depth k of a frame then lives in register k.
+ *
+ * The code is translated in address order, keeping a model of the stack:
+ * each element is either in its own register, a constant, or a copy of a
+ * register below it.  LIT and LOAD only change the model, and an operation
+ * reads its operands from wherever they are, so "LOAD b; LOAD c; BOP +;
+ * STORE a" becomes the single instruction "ra = rb + rc".  Constants are
+ * folded.  Before a jump, a CALL and at the targets of jumps the elements are
+ * moved into their own registers, so every path agrees on where they are.
+ *
+ * A Program that turns DUMP on, or in which a function's stack depth is not
+ * the same on every path or depends on the way the RunTimeStack drops frames,
+ * is not translated: translate() returns null.
+ */
+
+public final class RegisterTranslator {
+
+    private static final int NOT_REACHED = -1, NO_ARGS = -1;
+    private static final int MAX_DEPTH = 1 << 20;
+    // the kinds of element in the model of the stack
+    private static final int IN_REGISTER = 0, CONSTANT = 1, COPY = 2;
+
+    // Thrown by the analysis when the Program cannot be translated
+    private static final class NotTranslatable extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        NotTranslatable(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final Program program;
+    private final int[] opcodes;
+    private final int[] operands;
+    private final int[] secondOperands;
+    private final int[] thirdOperands;
+    private final int size;
+    private final boolean usesDump;
+
+    // the functions, keyed by entry and number of arguments, in order of discovery
+    private final Map<Long, Integer> functionIndex = new HashMap<>();
+    private final List<int[]> functions = new ArrayList<>(); // {entry, argc}
+    private final ArrayDeque<Integer> untranslated = new ArrayDeque<>();
+
+    // the analysis of the function being translated
+    private final int[] depth;
+    private final int[] pending;
+    private final boolean[] isTarget;
+    private final int[] label;
+    private final List<Integer> reached = new ArrayList<>();
+    private int maxDepth;
+
+    // the model of its stack
+    private int[] kind = new int[16];
+    private int[] value = new int[16];
+    private int top;
+
+    // the instructions emitted so far
+    private int[] codes = new int[64], a = new int[64], b = new int[64],
+            c = new int[64], operators = new int[64];
+    private int count = 0;
+    private int lastResult = -1; // the instruction whose result is the top, if any
+    private int next; // the address translated after the current one
+    private final List<Integer> jumps = new ArrayList<>(); // to resolve in the function
+
+    public RegisterTranslator(Program program) {
+        CompactProgram compact = CompactProgram.lower(program);
+        this.program = program;
+        opcodes = compact.getOpcodes();
+        operands = compact.getOperands();
+        secondOperands = compact.getSecondOperands();
+        thirdOperands = compact.getThirdOperands();
+        usesDump = compact.usesDump();
+        size = opcodes.length;
+        depth = new int[size];
+        pending = new int[size];
+        isTarget = new boolean[size];
+        label = new int[size];
+        Arrays.fill(depth, NOT_REACHED);
+    }
+
+    /**
+     * Translates the main program and every function it calls.
+     *
+     * @return the RegisterProgram, or null if the Program cannot be translated
+     */
+    public RegisterProgram translate() {
+        if (usesDump || size == 0) {
+            return null;
+        }
+        functionOf(0, 0);
+        int[] starts = new int[0];
+        int[] frameSizes = new int[0];
+        try {
+            while (!untranslated.isEmpty()) {
+                int f = untranslated.poll();
+                int[] function = functions.get(f);
+                if (f >= starts.length) {
+                    starts = Arrays.copyOf(starts, functions.size());
+                    frameSizes = Arrays.copyOf(frameSizes, functions.size());
+                }
+                starts[f] = count;
+                analyze(function[0], function[1], f == 0);
+                // a LIT STORE or an operation needs one register above the deepest element
+                frameSizes[f] = maxDepth + 1;
+                emitFunction(function[0], function[1]);
+            }
+        } catch (NotTranslatable e) {
+            return null;
+        }
+        String[] names = new String[functions.size()];
+        int f;
+        for (f = 0; f < names.length; f++) {
+            int entry = functions.get(f)[0];
+            names[f] = f == 0 ? "main" : program.getCode(entry) instanceof LabelCode
+                    ? ((LabelCode) program.getCode(entry)).getLabel()
+                    : "address " + entry;
+        }
+        return new RegisterProgram(Arrays.copyOf(codes, count), Arrays.copyOf(a, count),
+                Arrays.copyOf(b, count), Arrays.copyOf(c, count),
+                Arrays.copyOf(operators, count), starts, frameSizes, names);
+    }
+
+    // The number of a function, which is queued for translation when first seen
+    private int functionOf(int entry, int argc) {
+        long key = ((long) entry << 32) | argc;
+        Integer f = functionIndex.get(key);
+        if (f == null) {
+            f = functions.size();
+            functionIndex.put(key, f);
+            functions.add(new int[] {entry, argc});
+            untranslated.add(f);
+        }
+        return f;
+    }
+
+    /*
+     * Follows the control flow of a function from its entry and records the
+     * stack depth at each address it reaches, with the same checks as the
+     * JvmCompiler: popping a function's stack to the start of its frame drops
+     * the frame, which the registers cannot express.
+     */
+    private void analyze(int entry, int argc, boolean isMain) throws NotTranslatable {
+        for (int pc : reached) {
+            depth[pc] = NOT_REACHED;
+            isTarget[pc] = false;
+        }
+        reached.clear();
+        maxDepth = 0;
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        reach(entry, argc, NO_ARGS, work);
+        isTarget[entry] = true;
+        while (!work.isEmpty()) {
+            int pc = work.poll();
+            int d = depth[pc];
+            int args = pending[pc];
+            int opcode = opcodes[pc];
+            boolean isNoOp = opcode == CodeTable.LABEL || opcode == CodeTable.LINE
+                    || opcode == CodeTable.FUNCTION || opcode == CodeTable.FORMAL
+                    || opcode == CodeTable.DUMP;
+            if (args != NO_ARGS && opcode != CodeTable.CALL && !isNoOp) {
+                throw new NotTranslatable("ARGS not followed by CALL at " + pc);
+            }
+            switch (opcode) {
+                case CodeTable.LIT:
+                case CodeTable.READ:
+                    reach(pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LOAD:
+                    checkOffset(operands[pc], d, pc);
+                    reach(pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.STORE:
+                    checkPop(isMain, d, 1, pc);
+                    checkOffset(operands[pc], d - 1, pc);
+                    if (d == 1) {
+                        throw new NotTranslatable("STORE drops the frame at " + pc);
+                    }
+                    reach(pc + 1, d - 1, NO_ARGS, work);
+                    break;
+                case CodeTable.BOP:
+                    checkPop(isMain, d, 2, pc);
+                    reach(pc + 1, d - 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LOAD_LIT_BOP:
+                    checkOffset(operands[pc], d, pc);
+                    reach(pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LOAD_LOAD_BOP:
+                    checkOffset(operands[pc], d, pc);
+                    // the second LOAD may reach the value the first one pushed
+                    checkOffset(secondOperands[pc], d + 1, pc);
+                    reach(pc + 1, d + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.LIT_STORE:
+                    if (d == 0) {
+                        throw new NotTranslatable("LIT STORE drops the frame at " + pc);
+                    }
+                    checkOffset(secondOperands[pc], d, pc);
+                    reach(pc + 1, d, NO_ARGS, work);
+                    break;
+                case CodeTable.FALSEBRANCH:
+                    checkPop(isMain, d, 1, pc);
+                    jump(operands[pc], d - 1, work);
+                    reach(pc + 1, d - 1, NO_ARGS, work);
+                    break;
+                case CodeTable.BOP_FALSEBRANCH:
+                    checkPop(isMain, d, 2, pc);
+                    jump(operands[pc], d - 2, work);
+                    reach(pc + 1, d - 2, NO_ARGS, work);
+                    break;
+                case CodeTable.GOTO:
+                    jump(operands[pc], d, work);
+                    break;
+                case CodeTable.ARGS:
+                    if (operands[pc] < 0 || operands[pc] > d) {
+                        throw new NotTranslatable("ARGS outside the frame at " + pc);
+                    }
+                    reach(pc + 1, d, operands[pc], work);
+                    break;
+                case CodeTable.CALL:
+                    if (args == NO_ARGS) {
+                        throw new NotTranslatable("CALL without ARGS at " + pc);
+                    }
+                    reach(pc + 1, d - args + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.TAILCALL:
+                    if (isMain || secondOperands[pc] < 0 || secondOperands[pc] > d) {
+                        throw new NotTranslatable("TAILCALL outside a function at " + pc);
+                    }
+                    reach(pc + 1, d - secondOperands[pc] + 1, NO_ARGS, work);
+                    break;
+                case CodeTable.RETURN:
+                    if (isMain || d == 0) {
+                        throw new NotTranslatable("RETURN outside a function at " + pc);
+                    }
+                    break;
+                case CodeTable.POP:
+                    if (operands[pc] > 0) {
+                        checkPop(isMain, d, operands[pc], pc);
+                    }
+                    reach(pc + 1, d - Math.max(operands[pc], 0), NO_ARGS, work);
+                    break;
+                case CodeTable.WRITE:
+                    if (d == 0) {
+                        throw new NotTranslatable("WRITE on an empty frame at " + pc);
+                    }
+                    reach(pc + 1, d, NO_ARGS, work);
+                    break;
+                case CodeTable.HALT:
+                    break;
+                case CodeTable.DUMP:
+                case CodeTable.LABEL:
+                case CodeTable.LINE:
+                case CodeTable.FUNCTION:
+                case CodeTable.FORMAL:
+                    reach(pc + 1, d, args, work);
+                    break;
+                default:
+                    throw new NotTranslatable("unknown opcode at " + pc);
+            }
+        }
+        reached.sort(null);
+    }
+
+    private void jump(int target, int d, ArrayDeque<Integer> work) throws NotTranslatable {
+        reach(target, d, NO_ARGS, work);
+        isTarget[target] = true;
+    }
+
+    private void reach(int pc, int d, int args, ArrayDeque<Integer> work)
+            throws NotTranslatable {
+        if (pc < 0 || pc >= size) {
+            throw new NotTranslatable("control leaves the program at " + pc);
+        }
+        if (d > MAX_DEPTH) {
+            throw new NotTranslatable("stack too deep at " + pc);
+        }
+        if (depth[pc] == NOT_REACHED) {
+            depth[pc] = d;
+            pending[pc] = args;
+            maxDepth = Math.max(maxDepth, d);
+            reached.add(pc);
+            work.add(pc);
+        } else if (depth[pc] != d || pending[pc] != args) {
+            throw new NotTranslatable("stack depth differs between paths at " + pc);
+        }
+    }
+
+    // A pop to the start of a function's frame drops the frame
+    private void checkPop(boolean isMain, int d, int count, int pc) throws NotTranslatable {
+        if (d < count || (d == count && !isMain)) {
+            throw new NotTranslatable("pop to the start of the frame at " + pc);
+        }
+    }
+
+    private void checkOffset(int offset, int d, int pc) throws NotTranslatable {
+        if (offset < 0 || offset >= d) {
+            throw new NotTranslatable("offset outside the frame at " + pc);
+        }
+    }
+
+    // Translates the addresses the analysis reached, in order
+    private void emitFunction(int entry, int argc) {
+        if (kind.length <= maxDepth + 1) {
+            kind = new int[maxDepth + 2];
+            value = new int[maxDepth + 2];
+        }
+        jumps.clear();
+        int previous = -1;
+        int i;
+        for (i = 0; i < reached.size(); i++) {
+            int pc = reached.get(i);
+            next = i + 1 < reached.size() ? reached.get(i + 1) : NOT_REACHED;
+            boolean fallsIn = previous >= 0 && previous == pc - 1 && fallsThrough(previous);
+            if (isTarget[pc] || !fallsIn) {
+                if (fallsIn) {
+                    materializeAll();
+                }
+                top = depth[pc];
+                Arrays.fill(kind, 0, top, IN_REGISTER);
+                label[pc] = count;
+                lastResult = -1;
+            }
+            translate(pc);
+            previous = pc;
+        }
+        for (int jump : jumps) {
+            a[jump] = label[a[jump]];
+        }
+    }
+
+    private boolean fallsThrough(int pc) {
+        switch (opcodes[pc]) {
+            case CodeTable.GOTO:
+            case CodeTable.RETURN:
+            case CodeTable.HALT:
+            case CodeTable.TAILCALL:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void translate(int pc) {
+        int d = top;
+        switch (opcodes[pc]) {
+            case CodeTable.LIT:
+                push(CONSTANT, operands[pc]);
+                break;
+            case CodeTable.LOAD:
+                pushLoad(operands[pc]);
+                break;
+            case CodeTable.STORE:
+                store(operands[pc]);
+                break;
+            case CodeTable.BOP:
+                binary(operands[pc]);
+                break;
+            case CodeTable.LOAD_LIT_BOP:
+                pushLoad(operands[pc]);
+                push(CONSTANT, secondOperands[pc]);
+                binary(thirdOperands[pc]);
+                break;
+            case CodeTable.LOAD_LOAD_BOP:
+                pushLoad(operands[pc]);
+                pushLoad(secondOperands[pc]);
+                binary(thirdOperands[pc]);
+                break;
+            case CodeTable.LIT_STORE:
+                push(CONSTANT, operands[pc]);
+                store(secondOperands[pc]);
+                break;
+            case CodeTable.FALSEBRANCH:
+                top--;
+                if (isLastResult(top) && codes[lastResult] != READ) {
+                    // the operation becomes the condition of the branch
+                    int operation = --count;
+                    materializeAll();
+                    jumpTo(codes[operation] - BINARY + BRANCH, b[operation], c[operation],
+                            operators[operation], operands[pc]);
+                    break;
+                }
+                materializeAll();
+                if (kind[top] == CONSTANT) {
+                    if (value[top] == 0) {
+                        jumpTo(JUMP, 0, 0, 0, operands[pc]);
+                    }
+                } else {
+                    jumpTo(JUMP_IF_FALSE, register(top), 0, 0, operands[pc]);
+                }
+                break;
+            case CodeTable.BOP_FALSEBRANCH:
+                top -= 2;
+                materializeAll();
+                branch(secondOperands[pc], operands[pc]);
+                break;
+            case CodeTable.GOTO:
+                materializeAll();
+                jumpTo(JUMP, 0, 0, 0, operands[pc]);
+                break;
+            case CodeTable.CALL:
+                // the callee cannot change the registers below its window
+                top = d - pending[pc];
+                materializeFrom(top, d);
+                emit(CALL, top, functionOf(operands[pc], pending[pc]), 0, 0);
+                push(IN_REGISTER, 0);
+                lastResult = -1;
+                break;
+            case CodeTable.TAILCALL:
+                top = d - secondOperands[pc];
+                materializeFrom(top, d);
+                emit(TAIL_CALL, top, functionOf(operands[pc], secondOperands[pc]),
+                        secondOperands[pc], 0);
+                push(IN_REGISTER, 0);
+                break;
+            case CodeTable.RETURN:
+                if (kind[d - 1] == CONSTANT) {
+                    emit(RETURN_CONSTANT, 0, value[d - 1], 0, 0);
+                } else {
+                    emit(RETURN, 0, register(d - 1), 0, 0);
+                }
+                break;
+            case CodeTable.POP:
+                top = d - Math.max(operands[pc], 0);
+                break;
+            case CodeTable.READ:
+                emit(READ, d, 0, 0, 0);
+                push(IN_REGISTER, 0);
+                lastResult = count - 1;
+                break;
+            case CodeTable.WRITE:
+                if (kind[d - 1] == CONSTANT) {
+                    emit(WRITE_CONSTANT, 0, value[d - 1], 0, 0);
+                } else {
+                    emit(WRITE, 0, register(d - 1), 0, 0);
+                }
+                break;
+            case CodeTable.HALT:
+                emit(HALT, 0, 0, 0, 0);
+                break;
+            default:
+                // LABEL, LINE, FUNCTION, FORMAL, DUMP OFF and ARGS need no code
+                break;
+        }
+    }
+
+    private void push(int k, int v) {
+        kind[top] = k;
+        value[top] = v;
+        top++;
+    }
+
+    // A LOAD pushes whatever the element at the offset is
+    private void pushLoad(int offset) {
+        if (kind[offset] == IN_REGISTER) {
+            push(COPY, offset);
+        } else {
+            push(kind[offset], value[offset]);
+        }
+    }
+
+    // The register that holds an element which is not a constant
+    private int register(int element) {
+        return kind[element] == COPY ? value[element] : element;
+    }
+
+    // Pops the top element into the element at the offset
+    private void store(int offset) {
+        top--;
+        int i;
+        // the copies of the element must keep its old value
+        for (i = offset + 1; i < top; i++) {
+            if (kind[i] == COPY && value[i] == offset) {
+                materialize(i);
+            }
+        }
+        if (kind[top] == CONSTANT) {
+            emit(MOVE_CONSTANT, offset, value[top], 0, 0);
+        } else if (isLastResult(top)) {
+            // the instruction that computed the value puts it there directly
+            a[lastResult] = offset;
+        } else if (register(top) != offset) {
+            emit(MOVE, offset, register(top), 0, 0);
+        }
+        kind[offset] = IN_REGISTER;
+        lastResult = -1;
+    }
+
+    // Whether the element was computed by the last instruction, into its own register
+    private boolean isLastResult(int element) {
+        return kind[element] == IN_REGISTER && lastResult >= 0 && lastResult == count - 1
+                && a[lastResult] == element;
+    }
+
+    // Pops two elements and pushes the result of the operator on them
+    private void binary(int operator) {
+        top -= 2;
+        int second = top, first = top + 1;
+        Operator op = Operator.fromOrdinal(operator);
+        if (kind[first] == CONSTANT && kind[second] == CONSTANT) {
+            try {
+                push(CONSTANT, op.apply(value[first], value[second]));
+                lastResult = -1;
+                return;
+            } catch (ArithmeticException e) {
+                // the division by zero happens when the program runs
+                materialize(second);
+            }
+        }
+        if (kind[first] == CONSTANT) {
+            emit(BINARY_CONSTANT_FIRST, second, value[first], register(second), operator);
+        } else if (kind[second] == CONSTANT) {
+            emit(BINARY_CONSTANT_SECOND, second, register(first), value[second], operator);
+        } else {
+            emit(BINARY, second, register(first), register(second), operator);
+        }
+        push(IN_REGISTER, 0);
+        lastResult = count - 1;
+    }
+
+    // Jumps to the target unless the operator on the two popped elements gives 0
+    private void branch(int operator, int target) {
+        int second = top, first = top + 1;
+        if (kind[first] == CONSTANT && kind[second] == CONSTANT) {
+            try {
+                if (Operator.fromOrdinal(operator).apply(value[first], value[second]) == 0) {
+                    jumpTo(JUMP, 0, 0, 0, target);
+                }
+                return;
+            } catch (ArithmeticException e) {
+                materialize(second);
+            }
+        }
+        if (kind[first] == CONSTANT) {
+            jumpTo(BRANCH_CONSTANT_FIRST, value[first], register(second), operator, target);
+        } else if (kind[second] == CONSTANT) {
+            jumpTo(BRANCH_CONSTANT_SECOND, register(first), value[second], operator, target);
+        } else {
+            jumpTo(BRANCH, register(first), register(second), operator, target);
+        }
+    }
+
+    // Moves an element into its own register
+    private void materialize(int element) {
+        if (kind[element] == CONSTANT) {
+            emit(MOVE_CONSTANT, element, value[element], 0, 0);
+        } else if (kind[element] == COPY) {
+            emit(MOVE, element, value[element], 0, 0);
+        }
+        kind[element] = IN_REGISTER;
+    }
+
+    // Moves every element into its own register, as at the targets of jumps
+    private void materializeAll() {
+        materializeFrom(0, top);
+    }
+
+    private void materializeFrom(int from, int to) {
+        int i;
+        for (i = from; i < to; i++) {
+            materialize(i);
+        }
+        lastResult = -1;
+    }
+
+    // Emits a jump whose target is resolved when the function is done
+    private void jumpTo(int opcode, int x, int y, int operator, int target) {
+        if (opcode == JUMP && target == next) {
+            return;
+        }
+        jumps.add(count);
+        emit(opcode, target, x, y, operator);
+    }
+
+    private void emit(int opcode, int x, int y, int z, int operator) {
+        if (count == codes.length) {
+            int n = count << 1;
+            codes = Arrays.copyOf(codes, n);
+            a = Arrays.copyOf(a, n);
+            b = Arrays.copyOf(b, n);
+            c = Arrays.copyOf(c, n);
+            operators = Arrays.copyOf(operators, n);
+        }
+        codes[count] = opcode;
+        a[count] = x;
+        b[count] = y;
+        c[count] = z;
+        operators[count] = operator;
+        count++;
+        lastResult = -1;
+    }
+
+}
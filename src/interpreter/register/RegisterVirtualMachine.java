@@ -0,0 +1,177 @@
+package interpreter.register;
+
+import interpreter.CallDepthExceededException;
+import interpreter.Operator;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+import java.util.Arrays;
+
+import static interpreter.register.RegisterProgram.*;
+
+/**
+ * RegisterVirtualMachine is the execution engine that runs a Program as
+ * three-address code: executeProgram() translates it with the
+ * RegisterTranslator and runs a switch loop over the RegisterProgram.  The
+ * registers of all the active functions share one int array; a CALL moves the
+ * window of the callee up to its arguments, which are already in place, so
+ * calling copies nothing and the callee's result lands where the caller
+ * expects it.  The output is identical to that of the VirtualMachine.
+ *
+ * A program that the RegisterTranslator cannot translate, or whose calls are
+ * memoized, is run by the VirtualMachine's own loop instead, and so is
+ * executeSlice().  The instruction count is the number of three-address
+ * instructions executed, which is what the engine saves on.
+ */
+
+public class RegisterVirtualMachine extends VirtualMachine {
+
+    private RegisterProgram translated; // once it has been translated
+    private boolean isTranslated = false; // whether translating has been tried
+
+    public RegisterVirtualMachine(Program p) {
+        super(p);
+    }
+
+    // The translation of the program, or null if it cannot be translated
+    public RegisterProgram getRegisterProgram() {
+        if (!isTranslated) {
+            translated = new RegisterTranslator(getProgram()).translate();
+            isTranslated = true;
+        }
+        return translated;
+    }
+
+    @Override
+    public void executeProgram() {
+        if (getMemoCache() != null || getRegisterProgram() == null) {
+            super.executeProgram();
+            return;
+        }
+        setIsRunning(true);
+        run(translated);
+        setIsRunning(false);
+    }
+
+    private void run(RegisterProgram program) {
+        final int[] opcodes = program.getOpcodes();
+        final int[] a = program.getA();
+        final int[] b = program.getB();
+        final int[] c = program.getC();
+        final int[] operators = program.getOperators();
+        final int[] starts = program.getStarts();
+        final int[] frameSizes = program.getFrameSizes();
+        final int maxCallDepth = getMaxCallDepth();
+        int[] registers = new int[Math.max(frameSizes[0], 64)];
+        int[] windows = new int[16]; // the window of each caller
+        int[] returns = new int[16]; // the address after each CALL
+        int rsp = 0;                  // number of active calls
+        int fp = 0;                   // start of the current window
+        int pc = starts[0];
+        long executed = 0;
+
+        try {
+            while (true) {
+                executed++;
+                switch (opcodes[pc]) {
+                    case MOVE:
+                        registers[fp + a[pc]] = registers[fp + b[pc]];
+                        pc++;
+                        break;
+                    case MOVE_CONSTANT:
+                        registers[fp + a[pc]] = b[pc];
+                        pc++;
+                        break;
+                    case BINARY:
+                        registers[fp + a[pc]] = Operator.fromOrdinal(operators[pc])
+                                .apply(registers[fp + b[pc]], registers[fp + c[pc]]);
+                        pc++;
+                        break;
+                    case BINARY_CONSTANT_FIRST:
+                        registers[fp + a[pc]] = Operator.fromOrdinal(operators[pc])
+                                .apply(b[pc], registers[fp + c[pc]]);
+                        pc++;
+                        break;
+                    case BINARY_CONSTANT_SECOND:
+                        registers[fp + a[pc]] = Operator.fromOrdinal(operators[pc])
+                                .apply(registers[fp + b[pc]], c[pc]);
+                        pc++;
+                        break;
+                    case JUMP:
+                        pc = a[pc];
+                        break;
+                    case JUMP_IF_FALSE:
+                        pc = registers[fp + b[pc]] == 0 ? a[pc] : pc + 1;
+                        break;
+                    case BRANCH:
+                        pc = Operator.fromOrdinal(operators[pc])
+                                .apply(registers[fp + b[pc]], registers[fp + c[pc]]) == 0
+                                ? a[pc] : pc + 1;
+                        break;
+                    case BRANCH_CONSTANT_FIRST:
+                        pc = Operator.fromOrdinal(operators[pc])
+                                .apply(b[pc], registers[fp + c[pc]]) == 0 ? a[pc] : pc + 1;
+                        break;
+                    case BRANCH_CONSTANT_SECOND:
+                        pc = Operator.fromOrdinal(operators[pc])
+                                .apply(registers[fp + b[pc]], c[pc]) == 0 ? a[pc] : pc + 1;
+                        break;
+                    case CALL:
+                        if (rsp == maxCallDepth) {
+                            throw new CallDepthExceededException(maxCallDepth);
+                        }
+                        if (rsp == returns.length) {
+                            returns = Arrays.copyOf(returns, rsp << 1);
+                            windows = Arrays.copyOf(windows, rsp << 1);
+                        }
+                        windows[rsp] = fp;
+                        returns[rsp++] = pc + 1;
+                        fp += a[pc];
+                        if (fp + frameSizes[b[pc]] > registers.length) {
+                            registers = Arrays.copyOf(registers,
+                                    Math.max(registers.length << 1, fp + frameSizes[b[pc]]));
+                        }
+                        pc = starts[b[pc]];
+                        break;
+                    case TAIL_CALL:
+                        // the arguments replace the current window
+                        System.arraycopy(registers, fp + a[pc], registers, fp, c[pc]);
+                        if (fp + frameSizes[b[pc]] > registers.length) {
+                            registers = Arrays.copyOf(registers,
+                                    Math.max(registers.length << 1, fp + frameSizes[b[pc]]));
+                        }
+                        pc = starts[b[pc]];
+                        break;
+                    case RETURN:
+                        registers[fp] = registers[fp + b[pc]];
+                        pc = returns[--rsp];
+                        fp = windows[rsp];
+                        break;
+                    case RETURN_CONSTANT:
+                        registers[fp] = b[pc];
+                        pc = returns[--rsp];
+                        fp = windows[rsp];
+                        break;
+                    case READ:
+                        registers[fp + a[pc]] = readInput();
+                        pc++;
+                        break;
+                    case WRITE:
+                        writeValue(registers[fp + b[pc]]);
+                        pc++;
+                        break;
+                    case WRITE_CONSTANT:
+                        writeValue(b[pc]);
+                        pc++;
+                        break;
+                    default:
+                        // HALT
+                        return;
+                }
+            }
+        } finally {
+            addInstructionCount(executed);
+        }
+    }
+
+}
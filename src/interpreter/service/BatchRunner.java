@@ -0,0 +1,194 @@
+package interpreter.service;
+
+import interpreter.FastVirtualMachine;
+import interpreter.InterpreterException;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+import interpreter.io.ArrayInputSource;
+import interpreter.io.ArrayOutputSink;
+import interpreter.io.EndOfInputException;
+import interpreter.io.InputSource;
+import interpreter.io.OutputSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * BatchRunner runs a Program once for each record of a large input, where a
+ * record is a fixed number of integers, and runs the records in parallel.
+ * Each run starts from the beginning of the program with only its record as
+ * input, and ends when the program halts or reads past its record; what it
+ * writes is output in the order of the records, as if the runs had been made
+ * one after another.  The last record may be short if the input ends first.
+ *
+ * The input is read a window of records at a time.  While the runs of one
+ * window are spread over the ForkJoinPool, the calling thread writes the
+ * output of the window before and reads the next one.  Every thread of the
+ * pool keeps a VirtualMachine of its own and resets it for each run, and all
+ * of them share the one frozen Program.  A task hands its runs to the
+ * VirtualMachine's runBatch(), so an engine that runs compiled code switches
+ * to its large-stack thread once per task rather than once per run.
+ *
+ * The runs must be independent of each other, and a program that dumps
+ * prints its dumps in no particular order.
+ */
+
+public class BatchRunner {
+
+    private static final int WINDOW_SIZE = 1 << 20; // integers read at a time
+    private static final int CHUNK_RUNS = 64;       // records a task runs itself
+
+    private final Program program;
+    private final int readsPerRun;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<VirtualMachine> machines;
+
+    // Runs the program on FastVirtualMachines in the common pool
+    public BatchRunner(Program program, int readsPerRun) {
+        this(program, readsPerRun, ForkJoinPool.commonPool(), FastVirtualMachine::new);
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param program the Program to run
+     * @param readsPerRun the number of integers in a record
+     * @param pool runs the records
+     * @param engine creates the VirtualMachine of each thread
+     */
+    public BatchRunner(Program program, int readsPerRun, ForkJoinPool pool,
+            Function<Program, VirtualMachine> engine) {
+        if (readsPerRun <= 0) {
+            throw new IllegalArgumentException("A run must read at least one integer");
+        }
+        this.program = program;
+        this.readsPerRun = readsPerRun;
+        this.pool = pool;
+        machines = ThreadLocal.withInitial(() -> engine.apply(program));
+    }
+
+    /**
+     * Runs the program on every record of the input.
+     *
+     * @param input the records, one after another
+     * @param output receives what the runs write, in the order of the records
+     * @return the number of runs
+     * @throws IOException if the input cannot be read or the output written
+     * @throws InterpreterException if a run fails; the message tells which
+     */
+    public long run(InputSource input, OutputSink output) throws IOException {
+        int[] reading = new int[Math.max(1, WINDOW_SIZE / readsPerRun) * readsPerRun];
+        int[] running = new int[reading.length];
+        long runs = 0;
+        Window previous = null;
+        while (true) {
+            int count = fill(input, reading);
+            Window current = null;
+            if (count > 0) {
+                current = new Window(reading, count, runs);
+                pool.execute(current);
+                runs += current.runs;
+            }
+            if (previous != null) {
+                previous.join();
+                previous.write(output);
+            }
+            if (current == null) {
+                break;
+            }
+            previous = current;
+            // the previous window is done with its array; the next one is read into it
+            int[] free = running;
+            running = reading;
+            reading = free;
+        }
+        return runs;
+    }
+
+    // Reads as many integers as the array holds, or up to the end of the input
+    private static int fill(InputSource input, int[] values) throws IOException {
+        int count = 0;
+        try {
+            while (count < values.length) {
+                values[count] = input.nextInt();
+                count++;
+            }
+        } catch (EndOfInputException e) {
+            // the last window
+        }
+        return count;
+    }
+
+    // Runs one record on a VirtualMachine of the current thread
+    private static void runRecord(VirtualMachine vm, int[] values, int from, int to, long index) {
+        vm.reset();
+        vm.setInputSource(new ArrayInputSource(values, from, to));
+        try {
+            vm.executeProgram();
+        } catch (EndOfInputException e) {
+            // the run has used up its record
+        } catch (InterpreterException | UncheckedIOException e) {
+            throw new InterpreterException("Error in run " + (index + 1) + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    // The runs of one window of records, and their output
+    private final class Window extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] values;
+        private final int count;  // the number of integers in the window
+        private final int runs;
+        private final long firstRun; // the index of the window's first record
+        private final ArrayOutputSink[] outputs; // the output of each chunk
+
+        Window(int[] values, int count, long firstRun) {
+            this.values = values;
+            this.count = count;
+            this.firstRun = firstRun;
+            runs = (count + readsPerRun - 1) / readsPerRun;
+            outputs = new ArrayOutputSink[(runs + CHUNK_RUNS - 1) / CHUNK_RUNS];
+        }
+
+        @Override
+        protected void compute() {
+            ForkJoinTask<?>[] chunks = new ForkJoinTask<?>[outputs.length];
+            for (int i = 0; i < chunks.length; i++) {
+                int chunk = i;
+                chunks[i] = ForkJoinTask.adapt(() -> runChunk(chunk));
+            }
+            invokeAll(chunks);
+        }
+
+        private void runChunk(int chunk) {
+            ArrayOutputSink output = new ArrayOutputSink();
+            VirtualMachine vm = machines.get();
+            vm.setOutputSink(output);
+            int last = Math.min(runs, (chunk + 1) * CHUNK_RUNS);
+            vm.runBatch(() -> {
+                for (int run = chunk * CHUNK_RUNS; run < last; run++) {
+                    int from = run * readsPerRun;
+                    runRecord(vm, values, from, Math.min(count, from + readsPerRun),
+                            firstRun + run);
+                }
+            });
+            outputs[chunk] = output;
+        }
+
+        void write(OutputSink sink) throws IOException {
+            for (ArrayOutputSink output : outputs) {
+                for (int value : output.toArray()) {
+                    sink.writeInt(value);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package interpreter.service;
+
+import interpreter.FastVirtualMachine;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+import interpreter.io.EndOfInputException;
+import interpreter.io.InputSource;
+import interpreter.io.OutputSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * InterpreterService runs programs for an application that embeds the
+ * interpreter.  Each job runs a Program on a VirtualMachine of its own in
+ * batch mode, reading from an InputSource and writing to an OutputSink, on
+ * a thread of the service's ExecutorService.  A loaded Program is frozen, so
+ * any number of jobs may run the same Program at once.
+ *
+ * Nothing a job does ends the process: a program that fails completes its
+ * Future exceptionally, and Future.get() throws an ExecutionException whose
+ * cause is the InterpreterException (or IOException, for the sink) that
+ * stopped it.
+ *
+ * The default ExecutorService is a fixed pool with a thread per processor.
+ * On a JDK with virtual threads, pass
+ * Executors.newVirtualThreadPerTaskExecutor() to run each job on a virtual
+ * thread of its own.
+ */
+
+public class InterpreterService implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Function<Program, VirtualMachine> engine;
+
+    // Runs jobs on FastVirtualMachines, on a thread per processor
+    public InterpreterService() {
+        this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    // Runs jobs on FastVirtualMachines, on the given executor
+    public InterpreterService(ExecutorService executor) {
+        this(executor, FastVirtualMachine::new);
+    }
+
+    /**
+     * Creates a service.  The service owns the executor and shuts it down when
+     * it is closed.
+     *
+     * @param executor runs the jobs
+     * @param engine creates the VirtualMachine for each job
+     */
+    public InterpreterService(ExecutorService executor,
+            Function<Program, VirtualMachine> engine) {
+        this.executor = executor;
+        this.engine = engine;
+    }
+
+    /**
+     * Submits a job.  The service does not close the source or the sink; it
+     * flushes the sink when the job ends, however it ends.
+     *
+     * @param program the Program to run
+     * @param input where READ takes its integers from
+     * @param output where WRITE puts its values
+     * @return a Future for the result of the job
+     */
+    public Future<JobResult> submit(Program program, InputSource input, OutputSink output) {
+        return executor.submit(() -> run(program, input, output));
+    }
+
+    private JobResult run(Program program, InputSource input, OutputSink output)
+            throws IOException {
+        VirtualMachine vm = engine.apply(program);
+        vm.setInputSource(input);
+        vm.setOutputSink(output);
+        JobResult.Status status = JobResult.Status.HALTED;
+        long start = System.nanoTime();
+        try {
+            vm.executeProgram();
+        } catch (EndOfInputException e) {
+            status = JobResult.Status.END_OF_INPUT;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            output.flush();
+        }
+        return new JobResult(status, vm.getInstructionCount(), System.nanoTime() - start);
+    }
+
+    /**
+     * Lets the jobs already submitted finish, then stops the executor.  No jobs
+     * may be submitted afterwards.  If the calling thread is interrupted while
+     * it waits, close() returns with its interrupt flag set.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting for long jobs
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
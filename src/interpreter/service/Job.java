@@ -0,0 +1,77 @@
+package interpreter.service;
+
+import interpreter.Program;
+import interpreter.io.InputSource;
+import interpreter.io.OutputSink;
+
+/**
+ * A Job describes a program run for the Scheduler: the Program with its input
+ * and output, and how the Scheduler treats it.  A job of higher priority is
+ * given its turns ahead of a job of lower priority, but a waiting job moves up
+ * as others take turns, so no job is starved; jobs of the same priority take
+ * turns.  Each turn executes at most the job's quota of byte
+ * codes, and a job that reaches its instruction limit without finishing is
+ * stopped.
+ */
+
+public final class Job {
+
+    private final Program program;
+    private final InputSource input;
+    private final OutputSink output;
+    private int priority = 0;
+    private long quota = Scheduler.DEFAULT_QUOTA;
+    private long instructionLimit = Long.MAX_VALUE; // no limit
+
+    public Job(Program program, InputSource input, OutputSink output) {
+        this.program = program;
+        this.input = input;
+        this.output = output;
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    public InputSource getInput() {
+        return input;
+    }
+
+    public OutputSink getOutput() {
+        return output;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    // Higher numbers run first; the default is 0
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public long getQuota() {
+        return quota;
+    }
+
+    // The number of byte codes the job may execute in one turn
+    public void setQuota(long quota) {
+        if (quota <= 0) {
+            throw new IllegalArgumentException("The quota must be positive");
+        }
+        this.quota = quota;
+    }
+
+    public long getInstructionLimit() {
+        return instructionLimit;
+    }
+
+    // The number of byte codes after which an unfinished job is stopped
+    public void setInstructionLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The instruction limit must be positive");
+        }
+        instructionLimit = limit;
+    }
+
+}
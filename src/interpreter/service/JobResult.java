@@ -0,0 +1,53 @@
+package interpreter.service;
+
+/**
+ * JobResult describes a program run that InterpreterService completed: how
+ * the program ended, how many byte codes it executed and how long it ran.
+ */
+
+public final class JobResult {
+
+    /**
+     * How a program ended.
+     */
+    public enum Status {
+        /**
+         * The program executed HALT.  One that runs past its last byte code
+         * fails with an InterpreterException instead, as any other error.
+         */
+        HALTED,
+        /** A READ found no more input, which ends a program normally. */
+        END_OF_INPUT
+    }
+
+    private final Status status;
+    private final long instructionCount;
+    private final long wallNanos;
+
+    JobResult(Status status, long instructionCount, long wallNanos) {
+        this.status = status;
+        this.instructionCount = instructionCount;
+        this.wallNanos = wallNanos;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // The number of byte codes executed; see VirtualMachine.getInstructionCount()
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    // The time the program ran, in nanoseconds, not counting time in the queue
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return status + ", " + instructionCount + " byte codes in "
+                + (wallNanos / 1000000.0) + " ms";
+    }
+
+}
@@ -0,0 +1,244 @@
+package interpreter.service;
+
+import interpreter.FastVirtualMachine;
+import interpreter.InstructionLimitExceededException;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+import interpreter.io.EndOfInputException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Scheduler runs many Jobs on a fixed number of threads, so that a program
+ * that never ends cannot keep the others from running.  Each job has a
+ * VirtualMachine of its own, which the Scheduler runs a slice at a time with
+ * executeSlice(): a thread takes the first ready job, runs it for at most its
+ * quota of byte codes, and puts it back behind the other ready jobs if it has
+ * not finished.  Each level of priority lets a job go AGING_TURNS turns ahead
+ * of where it would otherwise stand, so a job of priority 1 gets about
+ * AGING_TURNS turns for each turn of a job of priority 0 that waits with it,
+ * and a job of low priority is never held back for good.  A job that reaches
+ * its instruction limit fails with an InstructionLimitExceededException.
+ *
+ * As with InterpreterService, a job that fails completes its Future
+ * exceptionally.  Cancelling the Future drops the job at the end of its
+ * current turn.  A READ that waits for input holds up its thread, so the
+ * input of a job should be at hand, as in a file or an array.
+ */
+
+public class Scheduler implements AutoCloseable {
+
+    public static final long DEFAULT_QUOTA = 10000;
+
+    // The number of turns a job goes ahead for each level of priority
+    public static final int AGING_TURNS = 8;
+
+    // handed to a worker to make it stop, after the jobs that are ready
+    private static final Task STOP = new Task(null, null, 0);
+
+    static {
+        STOP.rank = Long.MAX_VALUE;
+    }
+
+    private final PriorityBlockingQueue<Task> ready = new PriorityBlockingQueue<>();
+    private final Function<Program, VirtualMachine> engine;
+    private final Thread[] workers;
+    private final AtomicLong turns = new AtomicLong(); // counts the jobs made ready
+    private int unfinished = 0; // guarded by this
+    private boolean closed = false; // guarded by this
+
+    // Runs jobs on FastVirtualMachines
+    public Scheduler(int threads) {
+        this(threads, FastVirtualMachine::new);
+    }
+
+    /**
+     * Creates a scheduler and starts its threads.
+     *
+     * @param threads the number of threads the jobs share
+     * @param engine creates the VirtualMachine for each job
+     */
+    public Scheduler(int threads, Function<Program, VirtualMachine> engine) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The scheduler needs a thread");
+        }
+        this.engine = engine;
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "scheduler " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Submits a job.  The Scheduler does not close the job's input or output;
+     * it flushes the output when the job ends, however it ends.
+     *
+     * @param job the job
+     * @return a Future for the result of the job
+     * @throws IllegalStateException if the scheduler has been closed
+     */
+    public Future<JobResult> submit(Job job) {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The scheduler is closed");
+            }
+            unfinished++;
+        }
+        Task task = new Task(job, engine, job.getPriority());
+        task.readyAt(turns.incrementAndGet());
+        ready.add(task);
+        return task.result;
+    }
+
+    // A worker thread: gives the ready jobs their turns until it is stopped
+    private void work() {
+        while (true) {
+            Task task;
+            try {
+                task = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == STOP) {
+                return;
+            }
+            if (task.turn()) {
+                task.readyAt(turns.incrementAndGet());
+                ready.add(task);
+            } else {
+                synchronized (this) {
+                    if (--unfinished == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the jobs already submitted to finish, then stops the threads.
+     * No jobs may be submitted afterwards.  If the calling thread is
+     * interrupted while it waits, close() stops the threads without waiting
+     * for them and returns with its interrupt flag set.
+     */
+    @Override
+    public void close() {
+        try {
+            synchronized (this) {
+                closed = true;
+                while (unfinished > 0) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Thread worker : workers) {
+            ready.add(STOP);
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A job while the Scheduler runs it
+    private static final class Task implements Comparable<Task> {
+
+        private final Job job;
+        private final Function<Program, VirtualMachine> engine;
+        private final int priority;
+        private final CompletableFuture<JobResult> result = new CompletableFuture<>();
+        private long rank; // the place of the job among the ready ones
+        private VirtualMachine vm;
+        private long nanos = 0; // the time spent in the job's turns
+
+        Task(Job job, Function<Program, VirtualMachine> engine, int priority) {
+            this.job = job;
+            this.engine = engine;
+            this.priority = priority;
+        }
+
+        /*
+         * Places the job that became ready at the given turn among the ready
+         * ones.  A job that waits moves up as the jobs made ready after it
+         * rank behind it, whatever their priority, once they are more than
+         * AGING_TURNS turns per level of priority later.
+         */
+        void readyAt(long turn) {
+            rank = turn - (long) priority * AGING_TURNS;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            return Long.compare(rank, other.rank);
+        }
+
+        // Runs a slice of the job; returns true if the job needs another turn
+        boolean turn() {
+            if (result.isDone()) {
+                return false; // cancelled
+            }
+            long start = System.nanoTime();
+            try {
+                if (vm == null) {
+                    vm = engine.apply(job.getProgram());
+                    vm.setInputSource(job.getInput());
+                    vm.setOutputSink(job.getOutput());
+                }
+                long limit = job.getInstructionLimit();
+                boolean running = vm.executeSlice(
+                        Math.min(job.getQuota(), limit - vm.getInstructionCount()));
+                nanos += System.nanoTime() - start;
+                if (!running) {
+                    finish(JobResult.Status.HALTED);
+                } else if (vm.getInstructionCount() >= limit) {
+                    fail(new InstructionLimitExceededException(limit));
+                } else {
+                    return true;
+                }
+            } catch (EndOfInputException e) {
+                nanos += System.nanoTime() - start;
+                finish(JobResult.Status.END_OF_INPUT);
+            } catch (UncheckedIOException e) {
+                fail(e.getCause());
+            } catch (Throwable e) {
+                // whatever stops the program must not stop the worker
+                fail(e);
+            }
+            return false;
+        }
+
+        private void finish(JobResult.Status status) {
+            try {
+                job.getOutput().flush();
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            result.complete(new JobResult(status, vm.getInstructionCount(), nanos));
+        }
+
+        private void fail(Throwable cause) {
+            try {
+                job.getOutput().flush();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+            result.completeExceptionally(cause);
+        }
+
+    }
+
+}
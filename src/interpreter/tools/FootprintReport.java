@@ -0,0 +1,74 @@
+package interpreter.tools;
+
+import interpreter.ByteCodeLoader;
+import interpreter.CallStack;
+import interpreter.FrameSize;
+import interpreter.Program;
+import interpreter.ProgramLoadException;
+
+import java.io.IOException;
+
+/**
+ * FootprintReport prints the frame sizes of a program, without running it:
+ * for the main program and each function it calls, the arguments, locals and
+ * the most values its frame holds (see FrameSize), and then the most values
+ * the RunTimeStack holds during a run, with the bytes they take.
+ * For a program with recursive functions that number depends on the input; it
+ * is then bounded by the deepest nesting of calls allowed, since no frame is
+ * larger than the largest frame size.
+ *
+ * Usage: java interpreter.tools.FootprintReport [-m depth] <file>.x.cod
+ * where depth is the most nested calls allowed (default that of CallStack).
+ */
+public class FootprintReport {
+
+    public static void main(String[] args) throws IOException {
+        int maxCallDepth = CallStack.DEFAULT_MAX_DEPTH;
+        String file = null;
+        int i;
+        for (i = 0; i < args.length; i++) {
+            if (args[i].equals("-m") && i + 1 < args.length) {
+                maxCallDepth = Integer.parseInt(args[++i]);
+            } else {
+                file = args[i];
+            }
+        }
+        if (file == null || maxCallDepth < 1) {
+            System.out.println("Usage: java interpreter.tools.FootprintReport "
+                    + "[-m depth] <file>.x.cod");
+            System.exit(1);
+        }
+
+        Program program;
+        try {
+            ByteCodeLoader bcl = new ByteCodeLoader(file);
+            // a program the Verifier rejects has no frame sizes
+            bcl.setVerify(true);
+            program = bcl.loadCodes();
+        } catch (ProgramLoadException e) {
+            System.out.println("The frame sizes are unknown: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        System.out.println("Function                 Entry   Args  Locals  Max depth  Max operands");
+        int largest = 0;
+        for (FrameSize f : program.getFrameSizes()) {
+            System.out.printf("%-24s %5d  %5d  %6d  %9d  %12d%n", f.getName(), f.getEntry(),
+                    f.getArgumentCount(), f.getLocals(), f.getMaxDepth(),
+                    f.getMaxOperandDepth());
+            largest = Math.max(largest, f.getMaxDepth());
+        }
+        int maxStackSize = program.getMaxStackSize();
+        if (maxStackSize >= 0) {
+            System.out.printf("At most %d values on the RunTimeStack (%d bytes)%n",
+                    maxStackSize, 4L * maxStackSize);
+        } else {
+            int mainDepth = program.getFrameSizes().get(0).getMaxDepth();
+            long bound = mainDepth + (long) maxCallDepth * largest;
+            System.out.printf("Recursive; with at most %d nested calls, at most %d values "
+                    + "on the RunTimeStack (%d bytes)%n", maxCallDepth, bound, 4 * bound);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package interpreter.tools;
+
+import interpreter.CodeTable;
+import interpreter.SuperinstructionSelector;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * SequenceProfiler counts the sequences of byte codes in one or more bytecode
+ * files and prints the most frequent ones, to find candidates for new
+ * superinstructions (see SuperinstructionSelector).  The counts are the
+ * weights of its frequency table.
+ * Only byte codes that follow each other directly are counted, and a sequence
+ * never spans a LABEL, since a jump can land there.  Sequences that already
+ * have a superinstruction are marked with a *.
+ *
+ * Usage: java interpreter.tools.SequenceProfiler [-n top] [-l length] <file>.x.cod...
+ * where top is the number of sequences to print (default 10) and length the
+ * longest sequence to count (default 3); sequences of 2 up to that length are
+ * counted.
+ */
+public class SequenceProfiler {
+
+    public static void main(String[] args) throws IOException {
+        int top = 10;
+        int maxLength = 3;
+        List<String> files = new ArrayList<>();
+        int i;
+        for (i = 0; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                top = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-l") && i + 1 < args.length) {
+                maxLength = Integer.parseInt(args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.isEmpty() || maxLength < 2) {
+            System.out.println("Usage: java interpreter.tools.SequenceProfiler "
+                    + "[-n top] [-l length] <file>.x.cod...");
+            System.exit(1);
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String file : files) {
+            for (List<String> block : blocks(file)) {
+                count(block, maxLength, counts);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> sequences = new ArrayList<>(counts.entrySet());
+        sequences.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        System.out.println("Count  Sequence");
+        for (i = 0; i < top && i < sequences.size(); i++) {
+            String sequence = sequences.get(i).getKey();
+            System.out.printf("%5d  %s%s%n", sequences.get(i).getValue(), sequence,
+                    isFused(sequence) ? " *" : "");
+        }
+    }
+
+    /*
+     * Reads the names of the byte codes in a file, split into the blocks
+     * between LABELs.
+     */
+    private static List<List<String>> blocks(String file) throws IOException {
+        List<List<String>> blocks = new ArrayList<>();
+        List<String> block = new ArrayList<>();
+        for (String line : Files.readAllLines(Path.of(file))) {
+            StringTokenizer st = new StringTokenizer(line);
+            if (!st.hasMoreTokens()) continue;
+            String name = st.nextToken();
+            if (name.equals("LABEL")) {
+                blocks.add(block);
+                block = new ArrayList<>();
+            } else {
+                block.add(name);
+            }
+        }
+        blocks.add(block);
+        return blocks;
+    }
+
+    private static void count(List<String> block, int maxLength,
+            Map<String, Integer> counts) {
+        int start, length;
+        for (start = 0; start < block.size(); start++) {
+            for (length = 2; length <= maxLength && start + length <= block.size(); length++) {
+                String sequence = String.join(" ", block.subList(start, start + length));
+                counts.merge(sequence, 1, Integer::sum);
+            }
+        }
+    }
+
+    private static boolean isFused(String sequence) {
+        String[] names = sequence.split(" ");
+        int[] opcodes = new int[names.length];
+        int i;
+        for (i = 0; i < names.length; i++) {
+            opcodes[i] = CodeTable.opcodeOf(names[i]);
+        }
+        return SuperinstructionSelector.hasSuperinstruction(opcodes);
+    }
+
+}
@@ -0,0 +1,31 @@
+package interpreter.trace;
+
+import interpreter.ByteCode;
+import interpreter.VirtualMachine;
+
+/**
+ * An ExecutionTracer takes the place of the text dump.  While a tracer is set
+ * on a VirtualMachine, each byte code that runs with DUMP ON is reported to
+ * step() instead of being printed, and every integer READ obtains is reported
+ * to input(), whether DUMP is on or not, so that the run can be replayed.
+ */
+
+public interface ExecutionTracer {
+
+    /**
+     * Called after a byte code has run with DUMP ON.
+     *
+     * @param vm the VirtualMachine, in the state the dump would show
+     * @param pc the address of the byte code
+     * @param code the byte code
+     */
+    void step(VirtualMachine vm, int pc, ByteCode code);
+
+    /**
+     * Called when READ has obtained an integer.
+     *
+     * @param value the integer
+     */
+    void input(int value);
+
+}
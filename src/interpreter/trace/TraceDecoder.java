@@ -0,0 +1,178 @@
+package interpreter.trace;
+
+import interpreter.ByteCode;
+import interpreter.ByteCodeLoader;
+import interpreter.Program;
+import interpreter.RunTimeStack;
+import interpreter.VirtualMachine;
+import interpreter.io.EndOfInputException;
+import interpreter.io.InputSource;
+import interpreter.io.TextOutputSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TraceDecoder renders a binary trace as the text the dump would have printed.
+ * A record only holds the pc, opcode, top of stack and frame pointer, while
+ * the dump shows whole frames, so the decoder replays the run: it executes the
+ * program again on a VirtualMachine whose READs return the integers recorded
+ * in the trace, and prints each step with the byte code's print() and the
+ * RunTimeStack's dump(), as the VirtualMachine does with DUMP ON.  Each step
+ * of the replay is checked against its record.
+ * The program's own output, and the prompts of interactive mode, are not part
+ * of the trace and are not printed.
+ *
+ * Usage: java interpreter.trace.TraceDecoder <file>.x.cod <trace file>
+ */
+
+public class TraceDecoder implements ExecutionTracer, InputSource {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = TraceFile.allocate(BUFFER_SIZE);
+    private final long checksum;
+
+    /**
+     * Opens a trace and reads its header.
+     *
+     * @param file the trace file
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public TraceDecoder(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer.flip();
+        fill(TraceFile.HEADER_SIZE);
+        checksum = TraceFile.getHeader(buffer);
+    }
+
+    // The checksum of the .cod text of the traced program
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Replays the traced run of a Program, printing the dump text to
+     * System.out.
+     *
+     * @param program the Program, loaded from the .cod file that was traced
+     * @throws IllegalStateException if the run departs from the trace
+     */
+    public void replay(Program program) {
+        VirtualMachine vm = new VirtualMachine(program);
+        vm.setInputSource(this);
+        vm.setOutputSink(new TextOutputSink(OutputStream.nullOutputStream(), false));
+        vm.setTracer(this);
+        try {
+            vm.executeProgram();
+        } catch (EndOfInputException e) {
+            // the traced run ended at this READ too
+        }
+        if (nextKind() != -1) {
+            throw new IllegalStateException("The trace goes on after the program ends");
+        }
+    }
+
+    @Override
+    public void step(VirtualMachine vm, int pc, ByteCode code) {
+        if (nextKind() != TraceFile.STEP) {
+            throw new IllegalStateException("The trace has no step for address " + pc);
+        }
+        int recordedPc = buffer.getInt();
+        int top = buffer.getInt();
+        int framePointer = buffer.getInt();
+        buffer.getShort(); // the opcode follows from the pc
+        buffer.getShort();
+        RunTimeStack stack = vm.getRunStack();
+        boolean empty = stack.sizeOfRunStack() == 0;
+        if (recordedPc != pc || top != (empty ? 0 : stack.peek())
+                || framePointer != (empty ? -1 : stack.peekFrameStack())) {
+            throw new IllegalStateException("The trace does not match the program at address "
+                    + pc + "; was it recorded with another program?");
+        }
+        vm.dumpStep(code);
+    }
+
+    @Override
+    public void input(int value) {
+        // the value came from the trace in the first place
+    }
+
+    // Returns the integer of the next record, which must be an INPUT record
+    @Override
+    public int nextInt() {
+        int kind = nextKind();
+        if (kind == -1) {
+            throw new EndOfInputException();
+        }
+        if (kind != TraceFile.INPUT) {
+            throw new IllegalStateException("The trace has no input for this READ");
+        }
+        buffer.getInt();
+        int value = buffer.getInt();
+        buffer.position(buffer.position() + TraceFile.RECORD_SIZE - 8);
+        return value;
+    }
+
+    // Returns the kind of the next record without consuming it, or -1 at the end
+    private int nextKind() {
+        try {
+            if (!fill(TraceFile.RECORD_SIZE)) {
+                return -1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.getShort(buffer.position() + TraceFile.RECORD_SIZE - 2);
+    }
+
+    // Makes sure the buffer holds at least the given number of bytes
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java interpreter.trace.TraceDecoder "
+                    + "<file>.x.cod <trace file>");
+            System.exit(1);
+        }
+        try (TraceDecoder decoder = new TraceDecoder(Path.of(args[1]))) {
+            ByteCodeLoader bcl = new ByteCodeLoader(args[0]);
+            Program program = bcl.loadCodes();
+            if (bcl.getChecksum() != decoder.getChecksum()) {
+                System.out.println("The trace was recorded with another version of "
+                        + args[0]);
+                System.exit(1);
+            }
+            decoder.replay(program);
+            System.out.flush();
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            System.out.flush();
+            System.out.println("**** " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
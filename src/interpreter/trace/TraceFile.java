@@ -0,0 +1,70 @@
+package interpreter.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * TraceFile describes the binary trace written by TraceWriter and read by
+ * TraceDecoder.
+ *
+ * Layout of the file (all numbers little-endian):
+ *   int     magic number "XTRC"
+ *   short   format version
+ *   long    CRC-32 checksum of the .cod text of the traced program
+ *   int     size of a record in bytes
+ *   then one fixed-size record per event:
+ *           int pc, int top of stack, int frame pointer, short opcode,
+ *           short kind
+ * A STEP record is written for each byte code that runs with DUMP ON.  The
+ * top of stack is 0 and the frame pointer -1 when the stack is empty.  An
+ * INPUT record is written for each integer READ obtains; it holds the
+ * integer as its top of stack, and -1 as its pc and opcode.
+ */
+
+final class TraceFile {
+
+    static final int MAGIC = 0x58545243; // "XTRC"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 18;
+    static final int RECORD_SIZE = 16;
+
+    static final short STEP = 0;
+    static final short INPUT = 1;
+
+    private TraceFile() {
+    }
+
+    static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static void putHeader(ByteBuffer buffer, long checksum) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(checksum);
+        buffer.putInt(RECORD_SIZE);
+    }
+
+    /**
+     * Reads and checks the header of a trace.
+     *
+     * @param buffer the beginning of the trace
+     * @return the checksum recorded in the trace
+     * @throws IOException if the buffer does not hold a trace of this version
+     */
+    static long getHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a trace file");
+        }
+        if (buffer.getShort() != VERSION) {
+            throw new IOException("Unsupported trace file version");
+        }
+        long checksum = buffer.getLong();
+        if (buffer.getInt() != RECORD_SIZE) {
+            throw new IOException("Unexpected trace record size");
+        }
+        return checksum;
+    }
+
+}
@@ -0,0 +1,165 @@
+package interpreter.trace;
+
+import interpreter.ByteCode;
+import interpreter.CodeTable;
+import interpreter.Program;
+import interpreter.RunTimeStack;
+import interpreter.VirtualMachine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * TraceWriter records a run in the binary format of TraceFile.  The records
+ * are written into a ring of preallocated segments; a full segment is handed
+ * to a background thread that writes it to the file and puts it back in the
+ * ring, so the running program never waits for the file unless the writer
+ * falls a whole ring behind.  Recording a byte code costs a few stores into
+ * the current segment and creates no objects.
+ */
+
+public class TraceWriter implements ExecutionTracer, Closeable {
+
+    private static final int SEGMENT_SIZE = 1 << 16;
+    private static final int SEGMENTS = 8;
+    // handed to the background thread to make it stop
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final int[] opcodes; // the opcode of each address of the Program
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private final ArrayBlockingQueue<ByteBuffer> full;
+    private final Thread flusher;
+    private ByteBuffer segment;
+    private volatile IOException failure;
+    private boolean closed = false;
+
+    /**
+     * Creates the trace file, or empties it if it exists, and starts the
+     * background thread.
+     *
+     * @param program the Program that is traced
+     * @param file the trace file
+     * @param checksum the checksum of the .cod text the Program was loaded
+     * from, which the decoder checks
+     * @throws IOException if the file cannot be created
+     */
+    public TraceWriter(Program program, Path file, long checksum) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        opcodes = new int[program.getSize()];
+        int i;
+        for (i = 0; i < opcodes.length; i++) {
+            opcodes[i] = CodeTable.opcodeOf(program.getCode(i));
+        }
+        free = new ArrayBlockingQueue<>(SEGMENTS);
+        full = new ArrayBlockingQueue<>(SEGMENTS + 1);
+        for (i = 1; i < SEGMENTS; i++) {
+            free.add(TraceFile.allocate(SEGMENT_SIZE));
+        }
+        segment = TraceFile.allocate(SEGMENT_SIZE);
+        TraceFile.putHeader(segment, checksum);
+        flusher = new Thread(this::flushSegments, "trace writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void step(VirtualMachine vm, int pc, ByteCode code) {
+        RunTimeStack stack = vm.getRunStack();
+        if (stack.sizeOfRunStack() == 0) {
+            record(pc, opcodes[pc], 0, -1, TraceFile.STEP);
+        } else {
+            record(pc, opcodes[pc], stack.peek(), stack.peekFrameStack(), TraceFile.STEP);
+        }
+    }
+
+    @Override
+    public void input(int value) {
+        record(-1, -1, value, -1, TraceFile.INPUT);
+    }
+
+    private void record(int pc, int opcode, int top, int framePointer, short kind) {
+        if (segment.remaining() < TraceFile.RECORD_SIZE) {
+            handOff();
+        }
+        segment.putInt(pc);
+        segment.putInt(top);
+        segment.putInt(framePointer);
+        segment.putShort((short) opcode);
+        segment.putShort(kind);
+    }
+
+    // Passes the current segment to the background thread and takes a free one
+    private void handOff() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        try {
+            full.put(segment);
+            segment = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while tracing", e);
+        }
+    }
+
+    // The background thread: writes each full segment and returns it to the ring
+    private void flushSegments() {
+        while (true) {
+            ByteBuffer next;
+            try {
+                next = full.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (next == END) {
+                return;
+            }
+            next.flip();
+            try {
+                while (failure == null && next.hasRemaining()) {
+                    channel.write(next);
+                }
+            } catch (IOException e) {
+                // the segments keep circulating, so the program is not blocked
+                failure = e;
+            }
+            next.clear();
+            free.add(next);
+        }
+    }
+
+    /**
+     * Writes the records still in the ring, stops the background thread and
+     * closes the file.
+     *
+     * @throws IOException if writing the trace failed at any point
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            full.put(segment);
+            full.put(END);
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package interpreter;
+
+import interpreter.trace.TraceRoundTripTest;
+
+/**
+ * AllTests runs every test; see TestSupport for how to build and run them.
+ */
+
+public class AllTests {
+
+    public static void main(String[] args) throws Exception {
+        EngineConformanceTest.main(args);
+        BinaryProgramFileTest.main(args);
+        TraceRoundTripTest.main(args);
+        System.out.println("All tests passed");
+    }
+
+}
@@ -0,0 +1,70 @@
+package interpreter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static interpreter.TestSupport.*;
+
+/**
+ * BinaryProgramFileTest checks the binary form the ByteCodeLoader keeps next
+ * to a bytecode file: that reading it and writing it again gives the same
+ * bytes, that a program loaded from it runs as one parsed from the text, and
+ * that a stale or damaged file is ignored.
+ */
+
+public class BinaryProgramFileTest {
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("codb");
+        try {
+            for (Map.Entry<Path, int[]> sample : SAMPLES.entrySet()) {
+                roundTrip(dir, sample.getKey(), sample.getValue());
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+        System.out.println("BinaryProgramFileTest passed");
+    }
+
+    private static void roundTrip(Path dir, Path sample, int[] input) throws IOException {
+        Path cod = dir.resolve(sample.getFileName());
+        Files.copy(sample, cod);
+        Path codb = BinaryProgramFile.binaryFileFor(cod.toString());
+
+        // the first load parses the text and writes the binary form
+        ByteCodeLoader parsing = loader(cod);
+        int[] parsed = run(new VirtualMachine(parsing.loadCodes()), input);
+        check(Files.isRegularFile(codb), "No binary form was written for " + sample);
+        long checksum = parsing.getChecksum();
+
+        Program read = BinaryProgramFile.read(codb, checksum, CodeTable.INTERPRETER);
+        check(read != null, "The binary form of " + sample + " cannot be read");
+        Path again = dir.resolve(sample.getFileName() + ".again");
+        BinaryProgramFile.write(read, again, checksum);
+        check(Arrays.equals(Files.readAllBytes(codb), Files.readAllBytes(again)),
+                "Writing the binary form of " + sample + " again changes it");
+        check(BinaryProgramFile.read(codb, checksum + 1, CodeTable.INTERPRETER) == null,
+                "The binary form of " + sample + " is read for other text");
+
+        // the second load reads the binary form
+        checkEquals(parsed, run(new VirtualMachine(loader(cod).loadCodes()), input),
+                sample + " loaded from its binary form");
+
+        // a damaged binary form is parsed again from the text
+        byte[] bytes = Files.readAllBytes(codb);
+        Files.write(codb, Arrays.copyOf(bytes, bytes.length / 2));
+        check(BinaryProgramFile.read(codb, checksum, CodeTable.INTERPRETER) == null,
+                "The damaged binary form of " + sample + " is read");
+        checkEquals(parsed, run(new VirtualMachine(loader(cod).loadCodes()), input),
+                sample + " loaded beside a damaged binary form");
+    }
+
+}
@@ -0,0 +1,67 @@
+package interpreter;
+
+import interpreter.compiler.CompiledVirtualMachine;
+import interpreter.compiler.TieredVirtualMachine;
+import interpreter.register.RegisterVirtualMachine;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Function;
+
+import static interpreter.TestSupport.*;
+
+/**
+ * EngineConformanceTest runs each sample program on every engine, with the
+ * PeepholeOptimizer and the Verifier off and on, and checks that each engine
+ * writes what the standard VirtualMachine writes.  The output of the standard
+ * VirtualMachine is checked against the known answers first.
+ */
+
+public class EngineConformanceTest {
+
+    // The output of each sample on its input
+    private static final Map<String, int[]> EXPECTED = Map.of(
+        "factorial.x.cod", new int[] {120, 1, 3628800},
+        "fib.x.cod", new int[] {610},
+        "gcd.x.cod", new int[] {12},
+        "primes.x.cod", new int[] {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37,
+            41, 43, 47, 34},
+        "sum.x.cod", new int[] {5050});
+
+    // The engines besides the standard one
+    private static final Map<String, Function<Program, VirtualMachine>> ENGINES = Map.of(
+        "fast", FastVirtualMachine::new,
+        "compiled", CompiledVirtualMachine::new,
+        "tiered", p -> new TieredVirtualMachine(p, 1),
+        "register", RegisterVirtualMachine::new);
+
+    public static void main(String[] args) {
+        for (Map.Entry<Path, int[]> sample : SAMPLES.entrySet()) {
+            Path file = sample.getKey();
+            int[] input = sample.getValue();
+            for (int options = 0; options < 4; options++) {
+                boolean optimize = (options & 1) != 0;
+                boolean verify = (options & 2) != 0;
+                String how = (optimize ? ", optimized" : "") + (verify ? ", verified" : "");
+                Program program = load(file, optimize, verify);
+                int[] standard = run(new VirtualMachine(program), input);
+                checkEquals(EXPECTED.get(file.getFileName().toString()), standard,
+                        file + " on the standard engine" + how);
+                for (Map.Entry<String, Function<Program, VirtualMachine>> engine
+                        : ENGINES.entrySet()) {
+                    checkEquals(standard, run(engine.getValue().apply(program), input),
+                            file + " on the " + engine.getKey() + " engine" + how);
+                }
+            }
+        }
+        System.out.println("EngineConformanceTest passed");
+    }
+
+    private static Program load(Path file, boolean optimize, boolean verify) {
+        ByteCodeLoader loader = loader(file);
+        loader.setOptimize(optimize);
+        loader.setVerify(verify);
+        return loader.loadCodes();
+    }
+
+}
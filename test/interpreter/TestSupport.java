@@ -0,0 +1,83 @@
+package interpreter;
+
+import interpreter.io.ArrayInputSource;
+import interpreter.io.ArrayOutputSink;
+import interpreter.io.EndOfInputException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TestSupport holds what the tests share: the sample programs, a way to run
+ * a program on input held in memory, and the checks.  The tests are plain
+ * classes with a main method, so they need nothing but the JDK.  From the top
+ * of the repository, where the sample programs are:
+ *
+ *     javac -d out $(find src test -name '*.java')
+ *     java -cp out interpreter.AllTests
+ *
+ * A check that fails throws an AssertionError, which ends the run.
+ */
+
+public final class TestSupport {
+
+    // The sample programs, each with the input it is run on
+    public static final Map<Path, int[]> SAMPLES = samples();
+
+    private TestSupport() {
+    }
+
+    private static Map<Path, int[]> samples() {
+        LinkedHashMap<Path, int[]> samples = new LinkedHashMap<>();
+        samples.put(Path.of("factorial.x.cod"), new int[] {5, 1, 10});
+        samples.put(Path.of("samples", "fib.x.cod"), new int[] {15});
+        samples.put(Path.of("samples", "gcd.x.cod"), new int[] {84, 36});
+        samples.put(Path.of("samples", "primes.x.cod"), new int[] {50});
+        samples.put(Path.of("samples", "sum.x.cod"), new int[] {100});
+        return samples;
+    }
+
+    /**
+     * Runs a program to its end on the given input.  A READ past the end of
+     * the input ends the run, as it does in batch mode.
+     *
+     * @param vm the VirtualMachine of the program
+     * @param input the integers READ returns
+     * @return the integers the program wrote
+     */
+    public static int[] run(VirtualMachine vm, int... input) {
+        ArrayOutputSink output = new ArrayOutputSink();
+        vm.setInputSource(new ArrayInputSource(input));
+        vm.setOutputSink(output);
+        try {
+            vm.executeProgram();
+        } catch (EndOfInputException e) {
+            // the input has been used up
+        }
+        return output.toArray();
+    }
+
+    // A loader of a bytecode file in interpreter mode, with the default options
+    public static ByteCodeLoader loader(Path file) {
+        try {
+            return new ByteCodeLoader(file.toString());
+        } catch (IOException e) {
+            throw new AssertionError("Cannot load " + file, e);
+        }
+    }
+
+    public static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public static void checkEquals(int[] expected, int[] actual, String what) {
+        check(Arrays.equals(expected, actual), what + ": expected "
+                + Arrays.toString(expected) + " but got " + Arrays.toString(actual));
+    }
+
+}
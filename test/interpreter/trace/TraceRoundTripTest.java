@@ -0,0 +1,82 @@
+package interpreter.trace;
+
+import interpreter.ByteCodeLoader;
+import interpreter.Program;
+import interpreter.VirtualMachine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static interpreter.TestSupport.*;
+
+/**
+ * TraceRoundTripTest records a run of each sample program with DUMP ON as a
+ * binary trace, and checks that the TraceDecoder renders the trace as the
+ * very text the dump prints when the program runs without a trace.
+ */
+
+public class TraceRoundTripTest {
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("trace");
+        try {
+            for (Map.Entry<Path, int[]> sample : SAMPLES.entrySet()) {
+                roundTrip(dir, sample.getKey(), sample.getValue());
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+        System.out.println("TraceRoundTripTest passed");
+    }
+
+    private static void roundTrip(Path dir, Path sample, int[] input) throws IOException {
+        // the sample with the dump turned on from the start
+        Path cod = dir.resolve(sample.getFileName());
+        Files.writeString(cod, "DUMP ON\n" + Files.readString(sample));
+        ByteCodeLoader loader = loader(cod);
+        Program program = loader.loadCodes();
+
+        String dump = printed(() -> run(new VirtualMachine(program), input));
+
+        Path trace = dir.resolve(sample.getFileName() + ".trace");
+        try (TraceWriter writer = new TraceWriter(program, trace, loader.getChecksum())) {
+            VirtualMachine vm = new VirtualMachine(program);
+            vm.setTracer(writer);
+            String printed = printed(() -> run(vm, input));
+            check(printed.isEmpty(), "A traced run of " + sample + " prints " + printed);
+        }
+
+        try (TraceDecoder decoder = new TraceDecoder(trace)) {
+            check(decoder.getChecksum() == loader.getChecksum(),
+                    "The trace of " + sample + " has another checksum");
+            String decoded = printed(() -> decoder.replay(program));
+            check(dump.equals(decoded), "The trace of " + sample
+                    + " decodes to other text than the dump");
+        }
+    }
+
+    // The text the work prints to System.out
+    private static String printed(Runnable work) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            work.run();
+        } finally {
+            System.out.flush();
+            System.setOut(out);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+}